@@ -31,6 +31,9 @@ public final class AdapterJavadocs {
   static final String GET_DEPENDENCIES_METHOD = ""
       + "Used internally obtain dependency information, such as for cyclical\n"
       + "graph detection.";
+  static final String GET_BINDING_METHOD = ""
+      + "Creates the binding for the {@code @Provides} method whose key is at {@code index}\n"
+      + "in {@code PROVIDES}, once the linker first requests it.";
   static final String ATTACH_METHOD = ""
       + "Used internally to link bindings/providers together at run time\n"
       + "according to their dependency graph.";
@@ -42,6 +45,8 @@ public final class AdapterJavadocs {
       + "instance provision of types served by {@code @Provides} methods.";
   static final String STATIC_INJECTION_TYPE = ""
       + "A manager for {@code %s}'s injections into static fields.";
+  static final String ADAPTER_REGISTRY_TYPE = ""
+      + "Creates the adapters generated for this package without reflection.";
   static final String PARENT_ADAPTER_TYPE = ""
       + "An internal adapter used to provide InjectAdapters with access to their injected\n"
       + "type's inheritance hierarchy allowing members injection, linker attachment,/n"
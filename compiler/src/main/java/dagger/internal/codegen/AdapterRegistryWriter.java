@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.codegen;
+
+import com.squareup.javawriter.JavaWriter;
+import dagger.internal.AdapterRegistry;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import static dagger.internal.codegen.Util.getPackage;
+import static dagger.internal.loaders.GeneratedAdapters.REGISTRY_PREFIX;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PROTECTED;
+import static javax.lang.model.element.Modifier.PUBLIC;
+
+/**
+ * Writes an {@link AdapterRegistry} for the adapters a processor generates in each package, and
+ * the index that lists those registries. Registries are written at the end of each round so that
+ * they are compiled with the adapters they create; the index is written once processing is over.
+ */
+final class AdapterRegistryWriter {
+  private final ProcessingEnvironment processingEnv;
+  private final String indexName;
+  private final Map<String, Package> pendingPackages = new LinkedHashMap<String, Package>();
+  private final Set<String> registryNames = new LinkedHashSet<String>();
+
+  /**
+   * @param indexName the resource that lists the registries written, like {@link
+   *     dagger.internal.loaders.GeneratedAdapters#INJECT_ADAPTER_REGISTRY_INDEX}.
+   */
+  AdapterRegistryWriter(ProcessingEnvironment processingEnv, String indexName) {
+    this.processingEnv = processingEnv;
+    this.indexName = indexName;
+  }
+
+  /** Registers the adapter {@code adapterName}, generated for {@code type}. */
+  void add(String adapterName, Element type) {
+    String packageName = getPackage(type).getQualifiedName().toString();
+    Package pending = pendingPackages.get(packageName);
+    if (pending == null) {
+      pending = new Package(packageName);
+      pendingPackages.put(packageName, pending);
+    }
+    pending.adapterNames.add(adapterName);
+    pending.types.add(type);
+  }
+
+  /** Writes a registry for each package with adapters added since the last call. */
+  void writeRegistries() throws IOException {
+    try {
+      for (Package pending : pendingPackages.values()) {
+        writeRegistry(pending);
+      }
+    } finally {
+      pendingPackages.clear();
+    }
+  }
+
+  /** Writes the index of every registry written so far. */
+  void writeIndex() throws IOException {
+    if (registryNames.isEmpty()) {
+      return;
+    }
+    FileObject index = processingEnv.getFiler()
+        .createResource(StandardLocation.CLASS_OUTPUT, "", indexName);
+    Writer writer = index.openWriter();
+    try {
+      for (String registryName : registryNames) {
+        writer.write(registryName);
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the registry for {@code pending}. Registries are named for the adapters they create,
+   * so that separately compiled registries for the same package don't collide.
+   */
+  private void writeRegistry(Package pending) throws IOException {
+    String simpleName =
+        REGISTRY_PREFIX + Integer.toHexString(pending.adapterNames.hashCode() & 0x7fffffff);
+    String registryName = pending.packageName.length() != 0
+        ? pending.packageName + "." + simpleName
+        : simpleName;
+    JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(registryName,
+        pending.types.toArray(new Element[pending.types.size()]));
+    JavaWriter writer = new JavaWriter(sourceFile.openWriter());
+    writer.emitSingleLineComment(AdapterJavadocs.GENERATED_BY_DAGGER);
+    writer.emitPackage(pending.packageName);
+    writer.emitImports(AdapterRegistry.class.getName());
+    writer.emitEmptyLine();
+    writer.emitJavadoc(AdapterJavadocs.ADAPTER_REGISTRY_TYPE);
+    writer.beginType(simpleName, "class", EnumSet.of(PUBLIC, FINAL),
+        AdapterRegistry.class.getSimpleName());
+    writer.beginConstructor(EnumSet.of(PUBLIC));
+    StringBuilder names = new StringBuilder();
+    for (String adapterName : pending.adapterNames) {
+      names.append(names.length() != 0 ? ",\n" : "\n");
+      names.append(JavaWriter.stringLiteral(adapterName));
+    }
+    writer.emitStatement("super(%s)", names);
+    writer.endConstructor();
+    writer.emitEmptyLine();
+    writer.emitAnnotation(Override.class);
+    writer.beginMethod("Object", "newAdapter", EnumSet.of(PROTECTED), "int", "index");
+    writer.beginControlFlow("switch (index)");
+    int prefixLength = pending.packageName.length() != 0 ? pending.packageName.length() + 1 : 0;
+    for (int i = 0; i < pending.adapterNames.size(); i++) {
+      writer.emitStatement("case %s: return new %s()",
+          i, pending.adapterNames.get(i).substring(prefixLength));
+    }
+    writer.emitStatement("default: throw new IndexOutOfBoundsException(String.valueOf(index))");
+    writer.endControlFlow();
+    writer.endMethod();
+    writer.endType();
+    writer.close();
+    registryNames.add(registryName);
+  }
+
+  private static final class Package {
+    final String packageName;
+    final List<String> adapterNames = new ArrayList<String>();
+    final List<Element> types = new ArrayList<Element>();
+
+    Package(String packageName) {
+      this.packageName = packageName;
+    }
+  }
+}
@@ -95,6 +95,12 @@ abstract class ComponentDescriptor {
    */
   abstract ImmutableList<FrameworkKey> initializationOrdering();
 
+  /**
+   * True if the component's scoped bindings are memoized using locks, as selected by
+   * {@link Component#lockingScopes}.
+   */
+  abstract boolean lockingScopes();
+
   static final class Factory {
     private final Elements elements;
     private final Types types;
@@ -214,7 +220,18 @@ abstract class ComponentDescriptor {
         } else { // all other requests are provision requests
           if (!resolvedProvisionBindings.containsKey(key)) {
             ImmutableSet<ProvisionBinding> explicitBindingsForKey = explicitBindings.get(key);
-            if (explicitBindingsForKey.isEmpty()) {
+            Optional<DependencyRequest> contributionsRequest =
+                dependencyRequestFactory.forProviderSetContributions(requestToResolve)
+                    .or(dependencyRequestFactory.forProviderMapContributions(requestToResolve));
+            if (explicitBindingsForKey.isEmpty() && contributionsRequest.isPresent()
+                && isMultibindingCollection(
+                    explicitBindings.get(contributionsRequest.get().key()))) {
+              // A Set<Provider<T>> is backed by the contributions to Set<T>, and a
+              // Map<String, Provider<V>> by the contributions to Map<String, V>.
+              resolvedProvisionBindings.putAll(
+                  key, explicitBindings.get(contributionsRequest.get().key()));
+              requestsToResolve.addLast(contributionsRequest.get());
+            } else if (explicitBindingsForKey.isEmpty()) {
               Optional<ProvisionBinding> injectBinding =
                   injectBindingRegistry.getProvisionBindingForKey(key);
               if (injectBinding.isPresent()) {
@@ -249,7 +266,13 @@ abstract class ComponentDescriptor {
           moduleTypes,
           ImmutableSetMultimap.copyOf(resolvedProvisionBindings),
           ImmutableMap.copyOf(resolvedMembersInjectionBindings),
-          resolutionOrder.build().asList().reverse());
+          resolutionOrder.build().asList().reverse(),
+          componentDefinitionType.getAnnotation(Component.class).lockingScopes());
     }
   }
+
+  private static boolean isMultibindingCollection(ImmutableSet<ProvisionBinding> bindings) {
+    return !bindings.isEmpty() && (ProvisionBinding.isSetBindingCollection(bindings)
+        || ProvisionBinding.isMapBindingCollection(bindings));
+  }
 }
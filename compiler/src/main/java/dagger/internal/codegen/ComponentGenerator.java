@@ -15,6 +15,7 @@
  */
 package dagger.internal.codegen;
 
+import com.google.auto.common.MoreElements;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
@@ -33,10 +34,20 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.squareup.javawriter.JavaWriter;
 import dagger.Component;
+import dagger.MapKey;
 import dagger.MembersInjector;
+import dagger.PerThread;
+import dagger.Provides;
+import dagger.Reusable;
+import dagger.internal.DoubleCheckLazy;
 import dagger.internal.InstanceFactory;
+import dagger.internal.LockingLazy;
+import dagger.internal.LockingScopedProvider;
+import dagger.internal.MapFactory;
+import dagger.internal.ReusableProvider;
 import dagger.internal.ScopedProvider;
 import dagger.internal.SetFactory;
+import dagger.internal.ThreadConfinedProvider;
 import java.io.IOException;
 import java.util.EnumSet;
 import java.util.List;
@@ -52,6 +63,7 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
@@ -60,6 +72,7 @@ import javax.lang.model.util.Types;
 import static com.google.common.base.CaseFormat.LOWER_CAMEL;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.squareup.javawriter.JavaWriter.stringLiteral;
+import static dagger.Provides.Type.MAP;
 import static dagger.Provides.Type.SET;
 import static dagger.Provides.Type.SET_VALUES;
 import static dagger.internal.codegen.DependencyRequest.Kind.MEMBERS_INJECTOR;
@@ -149,9 +162,11 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
     writeMembersInjectorFields(writer, membersInjectorNames);
 
     writeConstructor(writer, input.initializationOrdering(), resolvedProvisionBindings,
-        resolvedMembersInjectionBindings, providerNames, moduleNames, membersInjectorNames);
+        resolvedMembersInjectionBindings, providerNames, moduleNames, membersInjectorNames,
+        input.lockingScopes());
 
-    writeInterfaceMethods(writer, input.interfaceRequests(), providerNames, membersInjectorNames);
+    writeInterfaceMethods(writer, input.interfaceRequests(), providerNames, membersInjectorNames,
+        input.lockingScopes());
 
     writer.endType();
   }
@@ -161,7 +176,8 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
 
     ImmutableSortedSet.Builder<ClassName> importsBuilder =
         ImmutableSortedSet.<ClassName>naturalOrder()
-            .addAll(collectImportsFromDependencies(factoryClassName, input.interfaceRequests()))
+            .addAll(collectImportsFromDependencies(
+                factoryClassName, input.interfaceRequests(), lazyClass(input.lockingScopes())))
             .add(ClassName.fromClass(Generated.class))
             .add(ClassName.fromClass(Provider.class));
 
@@ -170,9 +186,14 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
       importsBuilder.add(componentClassName);
     }
 
-    for (ProvisionBinding binding : input.resolvedProvisionBindings().values()) {
+    for (Entry<Key, ProvisionBinding> entry : input.resolvedProvisionBindings().entries()) {
+      ProvisionBinding binding = entry.getValue();
+      if (!binding.providedKey().equals(entry.getKey()) && !binding.provisionType().equals(MAP)) {
+        importsBuilder.add(ClassName.fromClass(Provides.class));
+      }
       if (binding.scope().isPresent()) {
-        importsBuilder.add(ClassName.fromClass(ScopedProvider.class));
+        importsBuilder.add(
+            ClassName.fromClass(scopedProviderClass(binding, input.lockingScopes())));
       }
       if (binding.bindingKind().equals(COMPONENT)) {
         importsBuilder.add(ClassName.fromClass(InstanceFactory.class));
@@ -180,6 +201,9 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
       if (binding.provisionType().equals(SET) || binding.provisionType().equals(SET_VALUES)) {
         importsBuilder.add(ClassName.fromClass(SetFactory.class));
       }
+      if (binding.provisionType().equals(MAP)) {
+        importsBuilder.add(ClassName.fromClass(MapFactory.class));
+      }
       if (binding.requiresMemberInjection()) {
         importsBuilder.add(ClassName.fromClass(MembersInjector.class));
       }
@@ -233,7 +257,8 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
       ImmutableMap<Key, MembersInjectionBinding> resolvedMembersInjectionBindings,
       ImmutableBiMap<Key, String> providerNames,
       ImmutableBiMap<TypeElement, String> moduleNames,
-      ImmutableBiMap<Key, String> membersInjectorNames)
+      ImmutableBiMap<Key, String> membersInjectorNames,
+      boolean lockingScopes)
           throws IOException {
     Map<String, String> variableMap =
         Maps.transformValues(moduleNames.inverse(), new Function<TypeElement, String>() {
@@ -256,21 +281,49 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
       Key key = frameworkKey.key();
       if (frameworkKey.frameworkClass().equals(Provider.class)) {
         Set<ProvisionBinding> bindings = resolvedProvisionBindings.get(key);
-        if (ProvisionBinding.isSetBindingCollection(bindings)) {
+        Key contributedKey = bindings.iterator().next().providedKey();
+        if (!contributedKey.equals(key) && ProvisionBinding.isMapBindingCollection(bindings)) {
+          // A Map<String, Provider<V>> backed by the contributions to Map<String, V>.
+          writer.emitStatement("this.%s = MapFactory.providersOf(%s)",
+              providerNames.get(key), providerNames.get(contributedKey));
+        } else if (!contributedKey.equals(key)) {
+          // A Set<Provider<T>> backed by the contributions to Set<T>.
+          ImmutableList.Builder<String> setFactoryParameters = ImmutableList.builder();
+          setFactoryParameters.add(providerNames.get(contributedKey));
+          for (ProvisionBinding binding : bindings) {
+            setFactoryParameters.add("Provides.Type." + binding.provisionType());
+          }
+          writer.emitStatement("this.%s = SetFactory.providersOf(%s)",
+              providerNames.get(key),
+              Joiner.on(", ").join(setFactoryParameters.build()));
+        } else if (ProvisionBinding.isSetBindingCollection(bindings)) {
           ImmutableList.Builder<String> setFactoryParameters = ImmutableList.builder();
           for (ProvisionBinding binding : bindings) {
-            setFactoryParameters.add(initializeFactoryForBinding(
-                writer, binding, moduleNames, providerNames,membersInjectorNames));
+            setFactoryParameters.add(initializeFactoryForBinding(writer, binding, moduleNames,
+                providerNames, membersInjectorNames, lockingScopes));
           }
           writer.emitStatement("this.%s = SetFactory.create(%n%s)",
               providerNames.get(key),
               Joiner.on(",\n").join(setFactoryParameters.build()));
+        } else if (ProvisionBinding.isMapBindingCollection(bindings)) {
+          // The entries are known here, so the map is sized once and never rehashed.
+          TypeMirror valueType = ((DeclaredType) key.type()).getTypeArguments().get(1);
+          StringBuilder mapFactory = new StringBuilder().append(String.format(
+              "MapFactory.<%s>builder(%s)",
+              writer.compressType(Util.typeToString(valueType)), bindings.size()));
+          for (ProvisionBinding binding : bindings) {
+            mapFactory.append(String.format("%n.put(%s, %s)",
+                stringLiteral(binding.bindingElement().getAnnotation(MapKey.class).value()),
+                initializeFactoryForBinding(writer, binding, moduleNames, providerNames,
+                    membersInjectorNames, lockingScopes)));
+          }
+          writer.emitStatement("this.%s = %s%n.build()", providerNames.get(key), mapFactory);
         } else {
           ProvisionBinding binding = Iterables.getOnlyElement(bindings);
           writer.emitStatement("this.%s = %s",
               providerNames.get(key),
-              initializeFactoryForBinding(
-                  writer, binding, moduleNames, providerNames, membersInjectorNames));
+              initializeFactoryForBinding(writer, binding, moduleNames, providerNames,
+                  membersInjectorNames, lockingScopes));
         }
       } else if (frameworkKey.frameworkClass().equals(MembersInjector.class)) {
         writer.emitStatement("this.%s = %s",
@@ -289,7 +342,7 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
   private String initializeFactoryForBinding(JavaWriter writer, ProvisionBinding binding,
       ImmutableBiMap<TypeElement, String> moduleNames,
       ImmutableBiMap<Key, String> providerNames,
-      ImmutableBiMap<Key, String> membersInjectorNames) {
+      ImmutableBiMap<Key, String> membersInjectorNames, boolean lockingScopes) {
     if (binding.bindingKind().equals(COMPONENT)) {
       return String.format("InstanceFactory.<%s>create(this)",
           writer.compressType(Util.typeToString(binding.providedKey().type())));
@@ -309,10 +362,39 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
       }
       parameters.addAll(
           getDependencyParameters(binding.dependencies(), providerNames, membersInjectorNames));
-      return String.format(
-          binding.scope().isPresent() ? "ScopedProvider.create(new %s(%s))" : "new %s(%s)",
+      String factory = String.format("new %s(%s)",
           writer.compressType(factoryNameForProvisionBinding(binding).toString()),
           Joiner.on(", ").join(parameters));
+      return binding.scope().isPresent()
+          ? String.format("%s.create(%s)",
+              scopedProviderClass(binding, lockingScopes).getSimpleName(), factory)
+          : factory;
+    }
+  }
+
+  /**
+   * Returns the lazy that the component's methods return, guarded by a lock if {@code
+   * lockingScopes}.
+   */
+  private static Class<?> lazyClass(boolean lockingScopes) {
+    return lockingScopes ? LockingLazy.class : DoubleCheckLazy.class;
+  }
+
+  /**
+   * Returns the provider that memoizes instances of a scoped binding, guarded by a lock if
+   * {@code lockingScopes}.
+   */
+  private static Class<?> scopedProviderClass(ProvisionBinding binding, boolean lockingScopes) {
+    Name scope = MoreElements.asType(binding.scope().get().getAnnotationType().asElement())
+        .getQualifiedName();
+    if (scope.contentEquals(PerThread.class.getCanonicalName())) {
+      return ThreadConfinedProvider.class;
+    } else if (scope.contentEquals(Reusable.class.getCanonicalName())) {
+      return ReusableProvider.class;
+    } else if (lockingScopes) {
+      return LockingScopedProvider.class;
+    } else {
+      return ScopedProvider.class;
     }
   }
 
@@ -342,7 +424,8 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
   private void writeInterfaceMethods(JavaWriter writer,
       ImmutableList<DependencyRequest> interfaceRequests,
       ImmutableBiMap<Key, String> providerNames,
-      ImmutableBiMap<Key, String> membersInjectorNames) throws IOException {
+      ImmutableBiMap<Key, String> membersInjectorNames,
+      boolean lockingScopes) throws IOException {
     for (DependencyRequest interfaceRequest : interfaceRequests) {
       ExecutableElement requestElement = (ExecutableElement) interfaceRequest.requestElement();
       beginMethodOverride(writer, requestElement);
@@ -360,7 +443,8 @@ final class ComponentGenerator extends SourceFileGenerator<ComponentDescriptor>
 
         // look up the provider in the Key->name map and invoke.  Done.
         writer.emitStatement("return "
-            + providerUsageStatement(providerName, interfaceRequest.kind()));
+            + providerUsageStatement(
+                providerName, interfaceRequest.kind(), lazyClass(lockingScopes)));
       }
       writer.endMethod();
     }
@@ -25,6 +25,8 @@ import dagger.Lazy;
 import dagger.MembersInjector;
 import dagger.Provides;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.lang.model.element.AnnotationMirror;
@@ -117,6 +119,52 @@ abstract class DependencyRequest {
           types.asElement(type));
     }
 
+    /**
+     * Returns a request for the {@code Set<T>} whose contributions back a request for a
+     * {@code Set<Provider<T>>}, or absent if {@code request} isn't for a set of providers.
+     */
+    Optional<DependencyRequest> forProviderSetContributions(DependencyRequest request) {
+      TypeMirror type = request.key().type();
+      if (!isTypeOf(Set.class, type)) {
+        return Optional.absent();
+      }
+      TypeMirror elementType =
+          Iterables.getOnlyElement(((DeclaredType) type).getTypeArguments());
+      if (!isTypeOf(Provider.class, elementType)) {
+        return Optional.absent();
+      }
+      TypeMirror providedType =
+          Iterables.getOnlyElement(((DeclaredType) elementType).getTypeArguments());
+      TypeMirror setType = types.getDeclaredType(
+          elements.getTypeElement(Set.class.getCanonicalName()), providedType);
+      return Optional.<DependencyRequest>of(new AutoValue_DependencyRequest(Kind.INSTANCE,
+          keyFactory.forQualifiedType(request.key().qualifier(), setType),
+          request.requestElement()));
+    }
+
+    /**
+     * Returns a request for the {@code Map<String, V>} whose contributions back a request for a
+     * {@code Map<String, Provider<V>>}, or absent if {@code request} isn't for a map of providers.
+     */
+    Optional<DependencyRequest> forProviderMapContributions(DependencyRequest request) {
+      TypeMirror type = request.key().type();
+      if (!isTypeOf(Map.class, type)) {
+        return Optional.absent();
+      }
+      List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+      if (typeArguments.size() != 2 || !isTypeOf(Provider.class, typeArguments.get(1))) {
+        return Optional.absent();
+      }
+      TypeMirror providedType =
+          Iterables.getOnlyElement(((DeclaredType) typeArguments.get(1)).getTypeArguments());
+      TypeMirror mapType = types.getDeclaredType(
+          elements.getTypeElement(Map.class.getCanonicalName()), typeArguments.get(0),
+          providedType);
+      return Optional.<DependencyRequest>of(new AutoValue_DependencyRequest(Kind.INSTANCE,
+          keyFactory.forQualifiedType(request.key().qualifier(), mapType),
+          request.requestElement()));
+    }
+
     private DependencyRequest newDependencyRequest(Element requestElement, TypeMirror type,
         Optional<AnnotationMirror> qualifier) {
       if (isTypeOf(Provider.class, type)) {
@@ -91,6 +91,9 @@ final class ErrorMessages {
   static final String PROVIDES_METHOD_SET_VALUES_RETURN_SET =
       "@Provides methods of type set values must return a Set";
 
+  static final String PROVIDES_METHOD_MAP_KEY =
+      "@Provides methods of type map must be annotated with @MapKey";
+
   static final String PROVIDES_METHOD_MUST_RETURN_A_VALUE =
       "@Provides methods must return a value (not void).";
 
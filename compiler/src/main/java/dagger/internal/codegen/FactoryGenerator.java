@@ -42,6 +42,7 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
@@ -95,6 +96,10 @@ final class FactoryGenerator extends SourceFileGenerator<ProvisionBinding> {
   void write(ClassName factoryClassName, JavaWriter writer, ProvisionBinding binding)
       throws IOException {
     TypeMirror providedType = binding.providedKey().type();
+    if (binding.provisionType().equals(Provides.Type.MAP)) {
+      // Each contribution to a Map<String, V> provides one of its values.
+      providedType = ((DeclaredType) providedType).getTypeArguments().get(1);
+    }
     String providedTypeString = Util.typeToString(providedType);
 
     writer.emitPackage(factoryClassName.packageName());
@@ -103,7 +108,7 @@ final class FactoryGenerator extends SourceFileGenerator<ProvisionBinding> {
 
     writer.emitAnnotation(Generated.class, stringLiteral(ComponentProcessor.class.getName()))
         .beginType(factoryClassName.simpleName(), "class", EnumSet.of(PUBLIC, FINAL), null,
-            type(Factory.class, Util.typeToString(binding.providedKey().type())));
+            type(Factory.class, providedTypeString));
 
     final ImmutableBiMap<Key, String> providerNames =
         generateProviderNamesForDependencies(binding.dependencies());
@@ -218,6 +223,7 @@ final class FactoryGenerator extends SourceFileGenerator<ProvisionBinding> {
       switch (binding.provisionType()) {
         case UNIQUE:
         case SET_VALUES:
+        case MAP:
           writer.emitStatement("return module.%s(%s)",
               binding.bindingElement().getSimpleName(), parameterString);
           break;
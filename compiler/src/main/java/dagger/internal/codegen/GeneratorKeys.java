@@ -18,6 +18,7 @@ package dagger.internal.codegen;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.inject.Provider;
 import javax.inject.Qualifier;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -34,6 +35,8 @@ import static dagger.internal.codegen.Util.typeToString;
  */
 final class GeneratorKeys {
   private static final String SET_PREFIX = Set.class.getCanonicalName() + "<";
+  private static final String MAP_ENTRIES_PREFIX = SET_PREFIX + Map.Entry.class.getName()
+      + "<" + String.class.getName() + ", " + Provider.class.getCanonicalName() + "<";
 
   private GeneratorKeys() {
   }
@@ -78,6 +81,22 @@ final class GeneratorKeys {
     return result.toString();
   }
 
+  /**
+   * Returns the key of the set of map entries that {@code method}, a
+   * {@code @Provides(type = MAP)} method, contributes to.
+   */
+  public static String getMapEntriesKey(ExecutableElement method) {
+    StringBuilder result = new StringBuilder();
+    AnnotationMirror qualifier = getQualifier(method.getAnnotationMirrors());
+    if (qualifier != null) {
+      qualifierToString(qualifier, result);
+    }
+    result.append(MAP_ENTRIES_PREFIX);
+    typeToString(method.getReturnType(), result, '$');
+    result.append(">>>");
+    return result.toString();
+  }
+
   /** Returns the provider key for {@code variable}. */
   public static String get(VariableElement variable) {
     StringBuilder result = new StringBuilder();
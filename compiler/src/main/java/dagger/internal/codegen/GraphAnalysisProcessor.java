@@ -15,12 +15,14 @@
  */
 package dagger.internal.codegen;
 
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
 import dagger.internal.Binding.InvalidBindingException;
 import dagger.internal.BindingsGroup;
 import dagger.internal.Linker;
+import dagger.internal.MapBinding;
 import dagger.internal.ProblemDetector;
 import dagger.internal.ProvidesBinding;
 import dagger.internal.SetBinding;
@@ -56,6 +58,7 @@ import javax.tools.FileObject;
 import javax.tools.JavaFileManager;
 import javax.tools.StandardLocation;
 
+import static dagger.Provides.Type.MAP;
 import static dagger.Provides.Type.SET;
 import static dagger.Provides.Type.SET_VALUES;
 import static dagger.internal.codegen.Util.className;
@@ -225,8 +228,8 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
 
           Binding<?> previous = addTo.get(key);
           if (previous != null) {
-            if ((provides.type() == SET || provides.type() == SET_VALUES)
-                && previous instanceof SetBinding) {
+            if ((provides.type() == SET || provides.type() == SET_VALUES
+                || provides.type() == MAP) && previous instanceof SetBinding) {
               // No duplicate bindings error if both bindings are set bindings.
             } else {
               String message = "Duplicate bindings for " + key;
@@ -259,6 +262,11 @@ public final class GraphAnalysisProcessor extends AbstractProcessor {
               SetBinding.add(addTo, key, binding);
               break;
 
+            case MAP:
+              MapBinding.add(addTo, GeneratorKeys.getMapEntriesKey(providerMethod),
+                  providerMethod.getAnnotation(MapKey.class).value(), binding);
+              break;
+
             default:
               throw new AssertionError("Unknown @Provides type " + provides.type());
           }
@@ -31,6 +31,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.inject.Inject;
@@ -50,12 +51,14 @@ import javax.tools.JavaFileObject;
 import static dagger.internal.Keys.isPlatformType;
 import static dagger.internal.codegen.AdapterJavadocs.bindingTypeDocs;
 import static dagger.internal.codegen.Util.adapterName;
+import static dagger.internal.codegen.Util.customScope;
 import static dagger.internal.codegen.Util.elementToString;
 import static dagger.internal.codegen.Util.getNoArgsConstructor;
 import static dagger.internal.codegen.Util.getPackage;
 import static dagger.internal.codegen.Util.isCallableConstructor;
 import static dagger.internal.codegen.Util.rawTypeToString;
 import static dagger.internal.codegen.Util.typeToString;
+import static dagger.internal.loaders.GeneratedAdapters.INJECT_ADAPTER_REGISTRY_INDEX;
 import static dagger.internal.loaders.GeneratedAdapters.INJECT_ADAPTER_SUFFIX;
 import static dagger.internal.loaders.GeneratedAdapters.STATIC_INJECTION_SUFFIX;
 import static javax.lang.model.element.Modifier.ABSTRACT;
@@ -71,6 +74,7 @@ import static javax.lang.model.element.Modifier.STATIC;
 @SupportedAnnotationTypes("javax.inject.Inject")
 public final class InjectAdapterProcessor extends AbstractProcessor {
   private final Set<String> remainingTypeNames = new LinkedHashSet<String>();
+  private AdapterRegistryWriter registryWriter;
 
   public static final String PARENT_ADAPTER_INFIX = "$$ParentAdapter$$";
 
@@ -78,6 +82,11 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
     return SourceVersion.latestSupported();
   }
 
+  @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    registryWriter = new AdapterRegistryWriter(processingEnv, INJECT_ADAPTER_REGISTRY_INDEX);
+  }
+
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
     remainingTypeNames.addAll(findInjectedClassNames(env));
     for (Iterator<String> i = remainingTypeNames.iterator(); i.hasNext();) {
@@ -97,6 +106,15 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
         i.remove();
       }
     }
+    try {
+      registryWriter.writeRegistries();
+      if (env.processingOver()) {
+        registryWriter.writeIndex();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Code gen failed for adapter registries: " + e);
+    }
     if (env.processingOver() && !remainingTypeNames.isEmpty()) {
       processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
           "Could not find injection type required by " + remainingTypeNames);
@@ -285,6 +303,7 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
     }
     writer.endType();
     writer.close();
+    registryWriter.add(adapterName, type);
     if (supertype != null) {
       generateParentBindings(type,
           ((TypeElement) processingEnv.getTypeUtils().asElement(supertype)));
@@ -373,6 +392,7 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
     writeStaticInjectMethod(writer, fields, typeName);
     writer.endType();
     writer.close();
+    registryWriter.add(adapterName, type);
   }
 
   private void writeMemberBindingsFields(
@@ -412,6 +432,10 @@ public final class InjectAdapterProcessor extends AbstractProcessor {
     boolean singleton = type.getAnnotation(Singleton.class) != null;
     writer.emitStatement("super(%s, %s, %s, %s.class)",
         key, membersKey, (singleton ? "IS_SINGLETON" : "NOT_SINGLETON"), strippedTypeName);
+    String scope = customScope(type);
+    if (scope != null) {
+      writer.emitStatement("setScope(%s.class)", writer.compressType(scope));
+    }
     writer.endMethod();
     writer.emitEmptyLine();
   }
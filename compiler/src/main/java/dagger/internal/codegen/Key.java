@@ -21,6 +21,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import dagger.Provides;
+import java.util.Map;
 import java.util.Set;
 import javax.inject.Qualifier;
 import javax.lang.model.element.AnnotationMirror;
@@ -106,6 +107,10 @@ abstract class Key {
       return elements.getTypeElement(Set.class.getCanonicalName());
     }
 
+    private TypeElement getMapElement() {
+      return elements.getTypeElement(Map.class.getCanonicalName());
+    }
+
     Key forProvidesMethod(ExecutableElement e) {
       checkNotNull(e);
       checkArgument(e.getKind().equals(METHOD));
@@ -124,6 +129,10 @@ abstract class Key {
           checkArgument(returnType.getKind().equals(DECLARED));
           checkArgument(((DeclaredType) returnType).asElement().equals(getSetElement()));
           return new AutoValue_Key(rewrap(qualifier), MoreTypes.equivalence().wrap(returnType));
+        case MAP:
+          TypeMirror mapType = types.getDeclaredType(getMapElement(),
+              elements.getTypeElement(String.class.getCanonicalName()).asType(), returnType);
+          return new AutoValue_Key(rewrap(qualifier), MoreTypes.equivalence().wrap(mapType));
         default:
           throw new AssertionError();
       }
@@ -17,11 +17,13 @@ package dagger.internal.codegen;
 
 import com.squareup.javawriter.JavaWriter;
 import dagger.Lazy;
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
 import dagger.internal.BindingsGroup;
 import dagger.internal.Linker;
+import dagger.internal.MapBinding;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.ProvidesBinding;
 import dagger.internal.SetBinding;
@@ -41,6 +43,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.inject.Provider;
@@ -59,10 +62,13 @@ import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 
+import static dagger.Provides.Type.MAP;
 import static dagger.Provides.Type.SET;
 import static dagger.Provides.Type.SET_VALUES;
+import static dagger.Provides.Type.UNIQUE;
 import static dagger.internal.codegen.AdapterJavadocs.bindingTypeDocs;
 import static dagger.internal.codegen.Util.adapterName;
+import static dagger.internal.codegen.Util.customScope;
 import static dagger.internal.codegen.Util.elementToString;
 import static dagger.internal.codegen.Util.getAnnotation;
 import static dagger.internal.codegen.Util.getNoArgsConstructor;
@@ -70,10 +76,12 @@ import static dagger.internal.codegen.Util.getPackage;
 import static dagger.internal.codegen.Util.isCallableConstructor;
 import static dagger.internal.codegen.Util.isInterface;
 import static dagger.internal.codegen.Util.typeToString;
+import static dagger.internal.loaders.GeneratedAdapters.MODULE_ADAPTER_REGISTRY_INDEX;
 import static dagger.internal.loaders.GeneratedAdapters.MODULE_ADAPTER_SUFFIX;
 import static javax.lang.model.element.Modifier.ABSTRACT;
 import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PROTECTED;
 import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
 
@@ -89,11 +97,17 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
 
   private final LinkedHashMap<String, List<ExecutableElement>> remainingTypes =
       new LinkedHashMap<String, List<ExecutableElement>>();
+  private AdapterRegistryWriter registryWriter;
 
   @Override public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
   }
 
+  @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    registryWriter = new AdapterRegistryWriter(processingEnv, MODULE_ADAPTER_REGISTRY_INDEX);
+  }
+
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
     try {
       remainingTypes.putAll(providerMethodsByClass(env));
@@ -120,6 +134,7 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
         Writer sourceWriter = sourceFile.openWriter();
         sourceWriter.append(stringWriter.getBuffer());
         sourceWriter.close();
+        registryWriter.add(adapterName, type);
       } catch (CodeGenerationIncompleteException e) {
         continue; // A dependent type was not defined, we'll try to catch it on another pass.
       } catch (IOException e) {
@@ -127,6 +142,15 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       }
       i.remove();
     }
+    try {
+      registryWriter.writeRegistries();
+      if (env.processingOver()) {
+        registryWriter.writeIndex();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Code gen failed for adapter registries: " + e);
+    }
     if (env.processingOver() && remainingTypes.size() > 0) {
       processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
           "Could not find types required by provides methods for " + remainingTypes.keySet());
@@ -267,7 +291,8 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     writer.emitSingleLineComment(AdapterJavadocs.GENERATED_BY_DAGGER);
     writer.emitPackage(getPackage(type).getQualifiedName().toString());
     writer.emitImports(
-        findImports(multibindings, !providerMethods.isEmpty(), providerMethodDependencies));
+        findImports(multibindings, !providerMethods.isEmpty(), providerMethodDependencies,
+            hasUniqueProvides(providerMethods), hasMapProvides(providerMethods)));
 
     String typeName = type.getQualifiedName().toString();
     writer.emitEmptyLine();
@@ -311,10 +336,48 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     writer.emitField(
         "Class<?>[]", "INCLUDES", EnumSet.of(PRIVATE, STATIC, FINAL), includesField.toString());
 
+    // caches
+    Map<ExecutableElement, String> methodToClassName
+        = new LinkedHashMap<ExecutableElement, String>();
+    Map<String, AtomicInteger> methodNameToNextId = new LinkedHashMap<String, AtomicInteger>();
+    for (ExecutableElement providerMethod : providerMethods) {
+      bindingClassName(providerMethod, methodToClassName, methodNameToNextId);
+    }
+
+    // Unique bindings are created on demand by getBinding(), so only their keys and the names
+    // of their methods, which describe them until then, are listed.
+    List<ExecutableElement> uniqueMethods = new ArrayList<ExecutableElement>();
+    StringBuilder providesField = new StringBuilder().append("{ ");
+    StringBuilder providesMethodsField = new StringBuilder().append("{ ");
+    for (ExecutableElement providerMethod : providerMethods) {
+      if (providerMethod.getAnnotation(Provides.class).type() == UNIQUE) {
+        uniqueMethods.add(providerMethod);
+        providesField.append(JavaWriter.stringLiteral(GeneratorKeys.get(providerMethod)))
+            .append(", ");
+        providesMethodsField
+            .append(JavaWriter.stringLiteral(providerMethod.getSimpleName().toString()))
+            .append(", ");
+      }
+    }
+    providesField.append("}");
+    providesMethodsField.append("}");
+    if (!uniqueMethods.isEmpty()) {
+      writer.emitField("String[]", "PROVIDES", EnumSet.of(PRIVATE, STATIC, FINAL),
+          providesField.toString());
+      writer.emitField("String[]", "PROVIDES_METHODS", EnumSet.of(PRIVATE, STATIC, FINAL),
+          providesMethodsField.toString());
+    }
+
     writer.emitEmptyLine();
     writer.beginMethod(null, adapterName, EnumSet.of(PUBLIC));
-    writer.emitStatement("super(%s.class, INJECTS, STATIC_INJECTIONS, %s /*overrides*/, "
-        + "INCLUDES, %s /*complete*/, %s /*library*/)", typeName,  overrides, complete, library);
+    if (uniqueMethods.isEmpty()) {
+      writer.emitStatement("super(%s.class, INJECTS, STATIC_INJECTIONS, %s /*overrides*/, "
+          + "INCLUDES, %s /*complete*/, %s /*library*/)", typeName,  overrides, complete, library);
+    } else {
+      writer.emitStatement("super(%s.class, INJECTS, STATIC_INJECTIONS, %s /*overrides*/, "
+          + "INCLUDES, %s /*complete*/, %s /*library*/, PROVIDES, PROVIDES_METHODS)", typeName,
+          overrides, complete, library);
+    }
     writer.endMethod();
 
     ExecutableElement noArgsConstructor = getNoArgsConstructor(type);
@@ -325,12 +388,8 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       writer.emitStatement("return new %s()", typeName);
       writer.endMethod();
     }
-    // caches
-    Map<ExecutableElement, String> methodToClassName
-        = new LinkedHashMap<ExecutableElement, String>();
-    Map<String, AtomicInteger> methodNameToNextId = new LinkedHashMap<String, AtomicInteger>();
 
-    if (!providerMethods.isEmpty()) {
+    if (multibindings) {
       writer.emitEmptyLine();
       writer.emitJavadoc(AdapterJavadocs.GET_DEPENDENCIES_METHOD);
       writer.emitAnnotation(Override.class);
@@ -340,13 +399,8 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       for (ExecutableElement providerMethod : providerMethods) {
         Provides provides = providerMethod.getAnnotation(Provides.class);
         switch (provides.type()) {
-          case UNIQUE: {
-            String key = GeneratorKeys.get(providerMethod);
-            writer.emitStatement("bindings.contributeProvidesBinding(%s, new %s(module))",
-                JavaWriter.stringLiteral(key),
-                bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
+          case UNIQUE:
             break;
-          }
           case SET: {
             String key = GeneratorKeys.getSetKey(providerMethod);
             writer.emitStatement("SetBinding.add(bindings, %s, new %s(module))",
@@ -361,6 +415,14 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
                 bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
             break;
           }
+          case MAP: {
+            String key = GeneratorKeys.getMapEntriesKey(providerMethod);
+            writer.emitStatement("MapBinding.add(bindings, %s, %s, new %s(module))",
+                JavaWriter.stringLiteral(key),
+                JavaWriter.stringLiteral(providerMethod.getAnnotation(MapKey.class).value()),
+                bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
+            break;
+          }
           default:
             throw new AssertionError("Unknown @Provides type " + provides.type());
         }
@@ -368,6 +430,22 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
       writer.endMethod();
     }
 
+    if (!uniqueMethods.isEmpty()) {
+      writer.emitEmptyLine();
+      writer.emitJavadoc(AdapterJavadocs.GET_BINDING_METHOD);
+      writer.emitAnnotation(Override.class);
+      writer.beginMethod("Binding<?>", "getBinding", EnumSet.of(PROTECTED), "int", "index",
+          typeName, "module");
+      writer.beginControlFlow("switch (index)");
+      for (int i = 0; i < uniqueMethods.size(); i++) {
+        writer.emitStatement("case %s: return new %s(module)", i,
+            bindingClassName(uniqueMethods.get(i), methodToClassName, methodNameToNextId));
+      }
+      writer.emitStatement("default: throw new IndexOutOfBoundsException(String.valueOf(index))");
+      writer.endControlFlow();
+      writer.endMethod();
+    }
+
     for (ExecutableElement providerMethod : providerMethods) {
       generateProvidesAdapter(
           writer, providerMethod, methodToClassName, methodNameToNextId, library);
@@ -377,11 +455,17 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     writer.close();
   }
 
-  private Set<String> findImports(boolean multibindings, boolean providers, boolean dependencies) {
+  private Set<String> findImports(boolean multibindings, boolean providers, boolean dependencies,
+      boolean uniqueProviders, boolean mapProviders) {
     Set<String> imports = new LinkedHashSet<String>();
     imports.add(ModuleAdapter.class.getCanonicalName());
-    if (providers) {
+    if (uniqueProviders) {
+      imports.add(Binding.class.getCanonicalName());
+    }
+    if (multibindings) {
       imports.add(BindingsGroup.class.getCanonicalName());
+    }
+    if (providers) {
       imports.add(Provider.class.getCanonicalName());
       imports.add(ProvidesBinding.class.getCanonicalName());
     }
@@ -393,9 +477,30 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
     if (multibindings) {
       imports.add(SetBinding.class.getCanonicalName());
     }
+    if (mapProviders) {
+      imports.add(MapBinding.class.getCanonicalName());
+    }
     return imports;
   }
 
+  private boolean hasUniqueProvides(List<ExecutableElement> providerMethods) {
+    for (ExecutableElement element : providerMethods) {
+      if (element.getAnnotation(Provides.class).type() == UNIQUE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean hasMapProvides(List<ExecutableElement> providerMethods) {
+    for (ExecutableElement element : providerMethods) {
+      if (element.getAnnotation(Provides.class).type() == MAP) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private boolean checkForDependencies(List<ExecutableElement> providerMethods) {
     for (ExecutableElement element : providerMethods) {
       if (!element.getParameters().isEmpty()) {
@@ -408,7 +513,7 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
   private boolean checkForMultibindings(List<ExecutableElement> providerMethods) {
     for (ExecutableElement element : providerMethods) {
       Provides.Type providesType = element.getAnnotation(Provides.class).type();
-      if (providesType == SET || providesType == SET_VALUES) {
+      if (providesType == SET || providesType == SET_VALUES || providesType == MAP) {
         return true;
       }
     }
@@ -471,6 +576,10 @@ public final class ModuleAdapterProcessor extends AbstractProcessor {
         JavaWriter.stringLiteral(methodName));
     writer.emitStatement("this.module = module");
     writer.emitStatement("setLibrary(%s)", library);
+    String scope = customScope(providerMethod);
+    if (scope != null) {
+      writer.emitStatement("setScope(%s.class)", writer.compressType(scope));
+    }
     writer.endMethod();
 
     if (dependent) {
@@ -16,6 +16,7 @@
 package dagger.internal.codegen;
 
 import com.google.common.collect.Iterables;
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import java.util.Set;
@@ -31,6 +32,7 @@ import javax.lang.model.util.Elements;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static dagger.internal.codegen.ErrorMessages.PROVIDES_METHOD_ABSTRACT;
+import static dagger.internal.codegen.ErrorMessages.PROVIDES_METHOD_MAP_KEY;
 import static dagger.internal.codegen.ErrorMessages.PROVIDES_METHOD_MUST_RETURN_A_VALUE;
 import static dagger.internal.codegen.ErrorMessages.PROVIDES_METHOD_NOT_IN_MODULE;
 import static dagger.internal.codegen.ErrorMessages.PROVIDES_METHOD_PRIVATE;
@@ -104,6 +106,12 @@ final class ProvidesMethodValidator implements Validator<ExecutableElement> {
       case SET:
         validateKeyType(builder, returnType);
         break;
+      case MAP:
+        validateKeyType(builder, returnType);
+        if (providesMethodElement.getAnnotation(MapKey.class) == null) {
+          builder.addItem(PROVIDES_METHOD_MAP_KEY, providesMethodElement);
+        }
+        break;
       case SET_VALUES:
         if (!returnTypeKind.equals(DECLARED)) {
           builder.addItem(PROVIDES_METHOD_SET_VALUES_RETURN_SET, providesMethodElement);
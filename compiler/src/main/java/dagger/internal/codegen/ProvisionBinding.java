@@ -36,6 +36,7 @@ import javax.lang.model.util.Types;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Sets.immutableEnumSet;
+import static dagger.Provides.Type.MAP;
 import static dagger.Provides.Type.SET;
 import static dagger.Provides.Type.SET_VALUES;
 import static dagger.internal.codegen.InjectionAnnotations.getScopeAnnotation;
@@ -80,6 +81,7 @@ abstract class ProvisionBinding extends Binding {
   abstract boolean requiresMemberInjection();
 
   private static ImmutableSet<Provides.Type> SET_BINDING_TYPES = immutableEnumSet(SET, SET_VALUES);
+  private static ImmutableSet<Provides.Type> MAP_BINDING_TYPES = immutableEnumSet(MAP);
 
   /**
    * Returns {@code true} if the given bindings are all contributors to a set binding.
@@ -87,17 +89,33 @@ abstract class ProvisionBinding extends Binding {
    * @throws IllegalArgumentException if some of the bindings are set bindings and some are not.
    */
   static boolean isSetBindingCollection(Iterable<ProvisionBinding> bindings) {
+    return isBindingCollection(bindings, SET_BINDING_TYPES, "set");
+  }
+
+  /**
+   * Returns {@code true} if the given bindings are all contributors to a map binding.
+   *
+   * @throws IllegalArgumentException if some of the bindings are map bindings and some are not.
+   */
+  static boolean isMapBindingCollection(Iterable<ProvisionBinding> bindings) {
+    return isBindingCollection(bindings, MAP_BINDING_TYPES, "map");
+  }
+
+  private static boolean isBindingCollection(Iterable<ProvisionBinding> bindings,
+      ImmutableSet<Provides.Type> collectionTypes, String collectionName) {
     checkNotNull(bindings);
     Iterator<ProvisionBinding> iterator = bindings.iterator();
     checkArgument(iterator.hasNext(), "no bindings");
-    boolean setBinding = SET_BINDING_TYPES.contains(iterator.next().provisionType());
+    Provides.Type firstType = iterator.next().provisionType();
+    boolean collectionBinding = collectionTypes.contains(firstType);
     while (iterator.hasNext()) {
-      checkArgument(setBinding,
-          "more than one binding present, but found a non-set binding");
-      checkArgument(SET_BINDING_TYPES.contains(iterator.next().provisionType()),
-          "more than one binding present, but found a non-set binding");
+      Provides.Type type = iterator.next().provisionType();
+      checkArgument(!firstType.equals(Provides.Type.UNIQUE) && !type.equals(Provides.Type.UNIQUE),
+          "more than one binding present, but found a unique binding");
+      checkArgument(collectionBinding == collectionTypes.contains(type),
+          "more than one binding present, but found a non-%s binding", collectionName);
     }
-    return setBinding;
+    return collectionBinding;
   }
 
   static final class Factory {
@@ -72,6 +72,15 @@ class SourceFiles {
    */
   static ImmutableSortedSet<ClassName> collectImportsFromDependencies(ClassName topLevelClassName,
       Iterable<? extends DependencyRequest> dependencies) {
+    return collectImportsFromDependencies(topLevelClassName, dependencies, DoubleCheckLazy.class);
+  }
+
+  /**
+   * Returns the sorted set of all classes required to satisfy {@code dependencies}, where lazy
+   * dependencies are created by {@code lazyClass}.
+   */
+  static ImmutableSortedSet<ClassName> collectImportsFromDependencies(ClassName topLevelClassName,
+      Iterable<? extends DependencyRequest> dependencies, Class<?> lazyClass) {
     ImmutableSortedSet.Builder<ClassName> builder = ImmutableSortedSet.<ClassName>naturalOrder();
     ImmutableSet<String> packagesToSkip  =
         ImmutableSet.of("java.lang", topLevelClassName.packageName());
@@ -80,7 +89,7 @@ class SourceFiles {
           MoreTypes.referencedTypes(dependency.key().type());
       switch (dependency.kind()) {
         case LAZY:
-          builder.add(ClassName.fromClass(Lazy.class), ClassName.fromClass(DoubleCheckLazy.class));
+          builder.add(ClassName.fromClass(Lazy.class), ClassName.fromClass(lazyClass));
           // fall through
         case INSTANCE:
         case PROVIDER:
@@ -194,7 +203,8 @@ class SourceFiles {
     for (Entry<Key, Collection<ProvisionBinding>> entry : bindings.asMap().entrySet()) {
       Collection<ProvisionBinding> bindingsForKey = entry.getValue();
       final String name;
-      if (ProvisionBinding.isSetBindingCollection(bindingsForKey)) {
+      if (ProvisionBinding.isSetBindingCollection(bindingsForKey)
+          || ProvisionBinding.isMapBindingCollection(bindingsForKey)) {
         name = new KeyVariableNamer().apply(entry.getKey()) + "Provider";
       } else {
         ProvisionBinding binding = Iterables.getOnlyElement(bindingsForKey);
@@ -236,10 +246,15 @@ class SourceFiles {
 
   static String providerUsageStatement(String providerName,
       DependencyRequest.Kind dependencyKind) {
+    return providerUsageStatement(providerName, dependencyKind, DoubleCheckLazy.class);
+  }
+
+  /** Returns the expression that gets a dependency, creating lazies with {@code lazyClass}. */
+  static String providerUsageStatement(String providerName,
+      DependencyRequest.Kind dependencyKind, Class<?> lazyClass) {
     switch (dependencyKind) {
       case LAZY:
-        return String.format("%s.create(%s)",
-            DoubleCheckLazy.class.getSimpleName(), providerName);
+        return String.format("%s.create(%s)", lazyClass.getSimpleName(), providerName);
       case INSTANCE:
         return String.format("%s.get()", providerName);
       case PROVIDER:
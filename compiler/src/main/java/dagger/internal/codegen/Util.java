@@ -22,6 +22,8 @@ import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import javax.inject.Singleton;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.AnnotationValueVisitor;
@@ -350,6 +352,21 @@ final class Util {
         && ((DeclaredType) typeMirror).asElement().getKind() == ElementKind.INTERFACE;
   }
 
+  /**
+   * Returns the name of the scope annotation of {@code element} if it has exactly one and it is
+   * not {@code @Singleton}, or null otherwise.
+   */
+  static String customScope(Element element) {
+    Set<? extends AnnotationMirror> scopes = InjectionAnnotations.getScopes(element);
+    if (scopes.size() != 1) {
+      return null;
+    }
+    TypeElement scope =
+        (TypeElement) scopes.iterator().next().getAnnotationType().asElement();
+    String name = scope.getQualifiedName().toString();
+    return name.equals(Singleton.class.getName()) ? null : name;
+  }
+
   static boolean isStatic(Element element) {
     for (Modifier modifier : element.getModifiers()) {
       if (modifier.equals(Modifier.STATIC)) {
@@ -18,9 +18,11 @@ package dagger.internal.codegen;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
 import com.google.testing.compile.CompilationRule;
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Qualifier;
@@ -39,6 +41,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import static dagger.Provides.Type.MAP;
 import static dagger.Provides.Type.SET;
 import static dagger.Provides.Type.SET_VALUES;
 import static org.truth0.Truth.ASSERT;
@@ -167,6 +170,31 @@ public class KeyTest {
     }
   }
 
+  @Test public void forProvidesMethod_maps() {
+    TypeElement mapElement = elements.getTypeElement(Map.class.getCanonicalName());
+    TypeMirror stringType = elements.getTypeElement(String.class.getCanonicalName()).asType();
+    TypeMirror integerType = elements.getTypeElement(Integer.class.getCanonicalName()).asType();
+    DeclaredType mapOfIntegersType = types.getDeclaredType(mapElement, stringType, integerType);
+    TypeElement moduleElement =
+        elements.getTypeElement(MapProvidesMethodsModule.class.getCanonicalName());
+    for (ExecutableElement providesMethod
+        : ElementFilter.methodsIn(moduleElement.getEnclosedElements())) {
+      ASSERT.that(keyFactory.forProvidesMethod(providesMethod))
+          .isEqualTo(keyFactory.forType(mapOfIntegersType));
+    }
+  }
+
+  @Module(library = true)
+  static final class MapProvidesMethodsModule {
+    @Provides(type = MAP) @MapKey("one") int provideOne() {
+      return 1;
+    }
+
+    @Provides(type = MAP) @MapKey("two") Integer provideTwo() {
+      return 2;
+    }
+  }
+
   interface PrimitiveTypes {
     int foo();
     Integer bar();
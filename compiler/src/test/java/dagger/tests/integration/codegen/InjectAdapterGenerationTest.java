@@ -18,12 +18,14 @@ package dagger.tests.integration.codegen;
 
 import com.google.common.base.Joiner;
 import com.google.testing.compile.JavaFileObjects;
+import java.util.Arrays;
 import javax.tools.JavaFileObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+import static dagger.internal.loaders.GeneratedAdapters.REGISTRY_PREFIX;
 import static dagger.tests.integration.ProcessorTestUtils.daggerProcessors;
 import static org.truth0.Truth.ASSERT;
 
@@ -76,4 +78,96 @@ public final class InjectAdapterGenerationTest {
         .generatesSources(expectedModuleAdapter, expectedInjectAdapter);
 
   }
+
+  @Test public void customScopedInjectAdapter() {
+    JavaFileObject sourceFile = JavaFileObjects.forSourceString("Basic", Joiner.on("\n").join(
+        "import dagger.Module;",
+        "import java.lang.annotation.Retention;",
+        "import java.lang.annotation.RetentionPolicy;",
+        "import javax.inject.Inject;",
+        "import javax.inject.Scope;",
+        "class Basic {",
+        "  @Scope @Retention(RetentionPolicy.RUNTIME) @interface RequestScoped { }",
+        "  @RequestScoped static class A { @Inject A() { } }",
+        "  @Module(injects = A.class)",
+        "  static class AModule { }",
+        "}"));
+
+    JavaFileObject expectedInjectAdapter =
+        JavaFileObjects.forSourceString("Basic$A$$InjectAdapter", Joiner.on("\n").join(
+            "import dagger.internal.Binding;",
+            "import javax.inject.Provider;",
+            "public final class Basic$A$$InjectAdapter",
+            "    extends Binding<Basic.A> implements Provider<Basic.A> {",
+            "  public Basic$A$$InjectAdapter() {",
+            "    super(\"Basic$A\", \"members/Basic$A\", NOT_SINGLETON, Basic.A.class);",
+            "    setScope(Basic.RequestScoped.class);",
+            "  }",
+            "  @Override public Basic.A get() {",
+            "    Basic.A result = new Basic.A();",
+            "    return result;",
+            "  }",
+            "}"));
+
+    ASSERT.about(javaSource()).that(sourceFile).processedWith(daggerProcessors())
+        .compilesWithoutError().and()
+        .generatesSources(expectedInjectAdapter);
+  }
+
+  @Test public void adapterRegistries() {
+    JavaFileObject sourceFile = JavaFileObjects.forSourceString("Basic", Joiner.on("\n").join(
+        "import dagger.Module;",
+        "import javax.inject.Inject;",
+        "class Basic {",
+        "  static class A { @Inject A() { } }",
+        "  static class B { @Inject static A a; }",
+        "  @Module(injects = A.class, staticInjections = B.class)",
+        "  static class AModule { }",
+        "}"));
+
+    String injectRegistry = registryName(
+        "Basic$A$$InjectAdapter", "Basic$B$$InjectAdapter", "Basic$B$$StaticInjection");
+    JavaFileObject expectedInjectRegistry =
+        JavaFileObjects.forSourceString(injectRegistry, Joiner.on("\n").join(
+            "import dagger.internal.AdapterRegistry;",
+            "public final class " + injectRegistry + " extends AdapterRegistry {",
+            "  public " + injectRegistry + "() {",
+            "    super(\"Basic$A$$InjectAdapter\", \"Basic$B$$InjectAdapter\",",
+            "        \"Basic$B$$StaticInjection\");",
+            "  }",
+            "  @Override protected Object newAdapter(int index) {",
+            "    switch (index) {",
+            "      case 0: return new Basic$A$$InjectAdapter();",
+            "      case 1: return new Basic$B$$InjectAdapter();",
+            "      case 2: return new Basic$B$$StaticInjection();",
+            "      default: throw new IndexOutOfBoundsException(String.valueOf(index));",
+            "    }",
+            "  }",
+            "}"));
+
+    String moduleRegistry = registryName("Basic$AModule$$ModuleAdapter");
+    JavaFileObject expectedModuleRegistry =
+        JavaFileObjects.forSourceString(moduleRegistry, Joiner.on("\n").join(
+            "import dagger.internal.AdapterRegistry;",
+            "public final class " + moduleRegistry + " extends AdapterRegistry {",
+            "  public " + moduleRegistry + "() {",
+            "    super(\"Basic$AModule$$ModuleAdapter\");",
+            "  }",
+            "  @Override protected Object newAdapter(int index) {",
+            "    switch (index) {",
+            "      case 0: return new Basic$AModule$$ModuleAdapter();",
+            "      default: throw new IndexOutOfBoundsException(String.valueOf(index));",
+            "    }",
+            "  }",
+            "}"));
+
+    ASSERT.about(javaSource()).that(sourceFile).processedWith(daggerProcessors())
+        .compilesWithoutError().and()
+        .generatesSources(expectedInjectRegistry, expectedModuleRegistry);
+  }
+
+  private static String registryName(String... adapterNames) {
+    return REGISTRY_PREFIX
+        + Integer.toHexString(Arrays.asList(adapterNames).hashCode() & 0x7fffffff);
+  }
 }
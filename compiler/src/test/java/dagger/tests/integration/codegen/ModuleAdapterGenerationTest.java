@@ -38,8 +38,8 @@ public final class ModuleAdapterGenerationTest {
    * <ul>
    *   <li>{@code ProvidesAdapter} invokes the module's provides method on
    *   {@code get}</li>
-   *   <li>On {@code getBindings}, the above is newed up and linked to its type
-   *   key.
+   *   <li>On {@code getBinding}, the above is newed up for its type key the
+   *   first time the key is requested.
    *   <li>{@code InjectAdapter} contains a field for the parameter binding,
    *   referenced in {@code getDependencies} and set on {@code attach}</li>
    *   <li>On {@code get}, the injected constructor is called with the value of
@@ -59,7 +59,7 @@ public final class ModuleAdapterGenerationTest {
 
     JavaFileObject expectedModuleAdapter =
         JavaFileObjects.forSourceString("Field$AModule$$ModuleAdapter", Joiner.on("\n").join(
-        "import dagger.internal.BindingsGroup;",
+        "import dagger.internal.Binding;",
         "import dagger.internal.ModuleAdapter;",
         "import dagger.internal.ProvidesBinding;",
         "import javax.inject.Provider;",
@@ -69,15 +69,20 @@ public final class ModuleAdapterGenerationTest {
         "      {\"members/Field$A\", \"members/java.lang.String\"};",
         "  private static final Class<?>[] STATIC_INJECTIONS = {};",
         "  private static final Class<?>[] INCLUDES = {};",
+        "  private static final String[] PROVIDES = {\"java.lang.String\"};",
+        "  private static final String[] PROVIDES_METHODS = {\"name\"};",
         "  public Field$AModule$$ModuleAdapter() {",
-        "    super(Field.AModule.class, INJECTS, STATIC_INJECTIONS, false, INCLUDES, true, false);",
+        "    super(Field.AModule.class, INJECTS, STATIC_INJECTIONS, false, INCLUDES, true, false,",
+        "        PROVIDES, PROVIDES_METHODS);",
         "  }",
         "  @Override public Field.AModule newModule() {",
         "    return new Field.AModule();",
         "  }",
-        "  @Override public void getBindings(BindingsGroup bindings, Field.AModule module) {",
-        "    bindings.contributeProvidesBinding(\"java.lang.String\",",
-        "        new NameProvidesAdapter(module));", // eager new!
+        "  @Override protected Binding<?> getBinding(int index, Field.AModule module) {",
+        "    switch (index) {",
+        "      case 0: return new NameProvidesAdapter(module);", // new only when requested
+        "      default: throw new IndexOutOfBoundsException(String.valueOf(index));",
+        "    }",
         "  }",
         "  public static final class NameProvidesAdapter", // corresponds to method name
         "      extends ProvidesBinding<String> implements Provider<String> {",
@@ -141,7 +146,7 @@ public final class ModuleAdapterGenerationTest {
 
     JavaFileObject expectedModuleAdapter =
         JavaFileObjects.forSourceString("Field$AModule$$ModuleAdapter", Joiner.on("\n").join(
-        "import dagger.internal.BindingsGroup;",
+        "import dagger.internal.Binding;",
         "import dagger.internal.ModuleAdapter;",
         "import dagger.internal.ProvidesBinding;",
         "import javax.inject.Provider;",
@@ -150,15 +155,20 @@ public final class ModuleAdapterGenerationTest {
         "      {\"members/Field$A\", \"members/java.lang.String\", \"members/Field$B\"};",
         "  private static final Class<?>[] STATIC_INJECTIONS = {};",
         "  private static final Class<?>[] INCLUDES = {};",
+        "  private static final String[] PROVIDES = {\"java.lang.String\"};",
+        "  private static final String[] PROVIDES_METHODS = {\"name\"};",
         "  public Field$AModule$$ModuleAdapter() {",
-        "    super(Field.AModule.class, INJECTS, STATIC_INJECTIONS, false, INCLUDES, true, false);",
+        "    super(Field.AModule.class, INJECTS, STATIC_INJECTIONS, false, INCLUDES, true, false,",
+        "        PROVIDES, PROVIDES_METHODS);",
         "  }",
         "  @Override public Field.AModule newModule() {",
         "    return new Field.AModule();",
         "  }",
-        "  @Override public void getBindings(BindingsGroup bindings, Field.AModule module) {",
-        "    bindings.contributeProvidesBinding(\"java.lang.String\",",
-        "        new NameProvidesAdapter(module));", // eager new!
+        "  @Override protected Binding<?> getBinding(int index, Field.AModule module) {",
+        "    switch (index) {",
+        "      case 0: return new NameProvidesAdapter(module);", // new only when requested
+        "      default: throw new IndexOutOfBoundsException(String.valueOf(index));",
+        "    }",
         "  }",
         "  public static final class NameProvidesAdapter", // corresponds to method name
         "      extends ProvidesBinding<String> implements Provider<String> {",
@@ -258,4 +268,28 @@ public final class ModuleAdapterGenerationTest {
         .compilesWithoutError();
   }
 
+  @Test public void providesMapEntries() {
+    JavaFileObject a = JavaFileObjects.forSourceString("A", Joiner.on("\n").join(
+        "import java.util.Map;",
+        "import javax.inject.Inject;",
+        "import javax.inject.Provider;",
+        "class A {",
+        "  @Inject Map<String, Integer> values;",
+        "  @Inject Map<String, Provider<Integer>> providers;",
+        "}"));
+    JavaFileObject module = JavaFileObjects.forSourceString("AModule", Joiner.on("\n").join(
+        "import static dagger.Provides.Type.MAP;",
+        "import dagger.MapKey;",
+        "import dagger.Module;",
+        "import dagger.Provides;",
+        "@Module(injects = A.class)",
+        "class AModule {",
+        "  @Provides(type = MAP) @MapKey(\"one\") Integer one() { return 1; }",
+        "  @Provides(type = MAP) @MapKey(\"two\") Integer two() { return 2; }",
+        "}"));
+
+    ASSERT.about(javaSources()).that(asList(a, module)).processedWith(daggerProcessors())
+        .compilesWithoutError();
+  }
+
 }
@@ -63,4 +63,13 @@ public @interface Component {
    * component implementation.
    */
   Class<?>[] modules() default {};
+
+  /**
+   * True to memoize the component's scoped bindings and the lazies its methods return using
+   * {@link java.util.concurrent.locks.ReentrantLock}s instead of monitors, as the system property
+   * {@code dagger.scoping=locks} does for every component. Lazies injected into other types are
+   * made by generated factories that components share, so only the system property selects
+   * locks for them.
+   */
+  boolean lockingScopes() default false;
 }
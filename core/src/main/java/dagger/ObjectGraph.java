@@ -26,13 +26,25 @@ import dagger.internal.ModuleAdapter;
 import dagger.internal.Modules;
 import dagger.internal.Modules.ModuleWithAdapter;
 import dagger.internal.ProblemDetector;
+import dagger.internal.Scoping;
 import dagger.internal.SetBinding;
+import dagger.internal.SingletonInitializer;
 import dagger.internal.StaticInjection;
 import dagger.internal.ThrowingErrorHandler;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -98,6 +110,43 @@ public abstract class ObjectGraph {
    */
   public abstract ObjectGraph plus(Object... modules);
 
+  /**
+   * Returns a template for graphs that extend this graph with modules of the
+   * given classes, and the modules they include. Use it instead of {@link
+   * #plus} to create many graphs with the same modules, such as one graph per
+   * request: the modules are loaded and the template's bindings are linked
+   * only once, and bindings that don't depend on the template's modules or
+   * singletons are shared by every graph created from it.
+   *
+   * <p>This links this graph and a prototype of the template's graphs, so
+   * problems that would make their bindings fail to link are reported here.
+   *
+   * @throws IllegalStateException if the template's bindings can't be linked.
+   */
+  public abstract Template template(Class<?>... moduleClasses);
+
+  /**
+   * Creates graphs that extend a graph with the same modules. See {@link
+   * ObjectGraph#template}.
+   */
+  public abstract static class Template {
+    Template() {
+    }
+
+    /**
+     * Returns a new graph that extends the template's graph, equivalent to
+     * calling {@link ObjectGraph#plus} with the template's modules. Each of
+     * {@code modules} must be an instance of one of the template's module
+     * classes or of a module they include. Modules that aren't given are
+     * created with their no-arguments constructors. The returned graph has its
+     * own instances of the template's singletons.
+     *
+     * @throws IllegalArgumentException if a module isn't one of the template's
+     *     modules.
+     */
+    public abstract ObjectGraph create(Object... modules);
+  }
+
   /**
    * Do runtime graph problem detection. For fastest graph creation, rely on
    * build time tools for graph validation.
@@ -112,6 +161,43 @@ public abstract class ObjectGraph {
    */
   public abstract void injectStatics();
 
+  /**
+   * Starts linking all of this graph's bindings, injectable types and static
+   * injections on {@code executor}, so that later calls to {@link #get} and
+   * {@link #inject} find their bindings already linked. The returned future
+   * completes with this graph once linking is done, or fails with the problem
+   * that prevented linking.
+   *
+   * <p>Only the first call starts linking; later calls return the same future.
+   * Threads that use this graph while it is warming up don't wait for the
+   * whole graph: they link the bindings they need themselves, and wait only
+   * for bindings that the warm up is already linking.
+   */
+  public abstract Future<ObjectGraph> warmUp(Executor executor);
+
+  /**
+   * Links this graph and creates all of its singletons, so that the first
+   * requests don't pay for them. Singletons are created after the singletons
+   * they depend on; singletons that don't depend on each other are created
+   * concurrently on {@code executor}. This blocks until all are created.
+   * Singletons of the graphs this graph extends are created only as they are
+   * needed.
+   *
+   * @return the nanoseconds spent creating each singleton, keyed by binding
+   *     key in the order the singletons were created.
+   * @throws RuntimeException the first exception thrown creating a singleton.
+   */
+  public abstract Map<String, Long> initializeSingletons(Executor executor);
+
+  /**
+   * Releases the instances of this graph's {@link PerThread} bindings on
+   * every thread, so that each thread's next request creates a new one.
+   * Threads that outlive a graph, like pool threads, otherwise keep their
+   * instances until their stale thread-local entries are expunged. The
+   * graphs this graph extends keep their instances.
+   */
+  public abstract void releasePerThreadInstances();
+
   /**
    * Returns a new dependency graph using the {@literal @}{@link
    * Module}-annotated modules.
@@ -124,9 +210,35 @@ public abstract class ObjectGraph {
    * <p>This <strong>does not</strong> validate the graph. Rely on build time
    * tools for graph validation, or call {@link #validate} to find problems in
    * the graph at runtime.
+   *
+   * <p>Graphs created this way share one {@linkplain FailoverLoader#shared
+   * loader}, so modules and classes are only looked up and scanned by the
+   * first graph that uses them. It holds class loaders weakly, so sharing it
+   * doesn't keep them from being unloaded.
    */
   public static ObjectGraph create(Object... modules) {
-    return DaggerObjectGraph.makeGraph(null, new FailoverLoader(), modules);
+    return DaggerObjectGraph.makeGraph(
+        null, FailoverLoader.shared(), false, Scoping.DEFAULT, modules);
+  }
+
+  /**
+   * Returns a future dependency graph using the {@literal @}{@link
+   * Module}-annotated modules. The graph is created and all of its bindings are
+   * linked on {@code executor}, so that the graph is ready to use when the
+   * future completes. See {@link #create} and {@link #warmUp}.
+   */
+  public static Future<ObjectGraph> createAsync(Executor executor, final Object... modules) {
+    FutureTask<ObjectGraph> task = new FutureTask<ObjectGraph>(new Callable<ObjectGraph>() {
+      @Override public ObjectGraph call() {
+        DaggerObjectGraph graph =
+            (DaggerObjectGraph) DaggerObjectGraph.makeGraph(
+                null, FailoverLoader.shared(), false, Scoping.DEFAULT, modules);
+        graph.linkEverything();
+        return graph;
+      }
+    });
+    executor.execute(task);
+    return task;
   }
 
   /**
@@ -138,7 +250,79 @@ public abstract class ObjectGraph {
    */
   @Deprecated
   public static ObjectGraph createWith(Loader loader, Object... modules) {
-    return DaggerObjectGraph.makeGraph(null, loader, modules);
+    return DaggerObjectGraph.makeGraph(null, loader, false, Scoping.DEFAULT, modules);
+  }
+
+  /**
+   * Returns a builder of graphs that use options other than the defaults of
+   * {@link #create}.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Creates graphs with options. See {@link ObjectGraph#builder}. */
+  public static final class Builder {
+    private boolean generatedCodeOnly;
+    private boolean scopeContexts;
+    private boolean lockingScopes;
+
+    Builder() {
+    }
+
+    /**
+     * Requires generated adapters for all modules, injected classes and
+     * static injections rather than falling back to reflection. Graphs that
+     * would need reflection fail when they are created, as do the graphs that
+     * {@link ObjectGraph#plus} adds to them. This links each graph as soon as
+     * it is created. Classes that needed reflection are reported by {@link
+     * FailoverLoader#reflectionFallbacks} of {@link
+     * FailoverLoader#sharedGeneratedOnly}.
+     */
+    public Builder generatedCodeOnly() {
+      generatedCodeOnly = true;
+      return this;
+    }
+
+    /**
+     * Keeps the instances of bindings annotated with a custom {@linkplain
+     * javax.inject.Scope scope} in the {@link ScopeContext} of that scope
+     * that is entered when they are requested. Getting such a binding's
+     * instance while no context of its scope is entered throws {@code
+     * IllegalStateException}. Graphs created without this option ignore
+     * custom scope annotations, as they always have, so that such bindings
+     * create a new instance each time.
+     */
+    public Builder scopeContexts() {
+      scopeContexts = true;
+      return this;
+    }
+
+    /**
+     * Memoizes the graph's singletons, lazy injections and modules using
+     * {@link java.util.concurrent.locks.ReentrantLock}s instead of monitors,
+     * as the system property {@code dagger.scoping=locks} does for every
+     * graph. Locks don't pin a virtual thread to its carrier thread while it
+     * blocks in a provision.
+     */
+    public Builder lockingScopes() {
+      lockingScopes = true;
+      return this;
+    }
+
+    /**
+     * Returns a new dependency graph using the {@literal @}{@link
+     * Module}-annotated modules. See {@link ObjectGraph#create}.
+     *
+     * @throws IllegalStateException if the graph uses only generated code and
+     *     a module, class or static injection has no generated adapter.
+     */
+    public ObjectGraph create(Object... modules) {
+      Loader loader =
+          generatedCodeOnly ? FailoverLoader.sharedGeneratedOnly() : FailoverLoader.shared();
+      return DaggerObjectGraph.makeGraph(null, loader, generatedCodeOnly,
+          new Scoping(lockingScopes || Scoping.DEFAULT.locks(), scopeContexts), modules);
+    }
   }
 
   // TODO(cgruber): Move this internal implementation of ObjectGraph into the internal package.
@@ -148,14 +332,39 @@ public abstract class ObjectGraph {
     private final Loader plugin;
     private final Map<Class<?>, StaticInjection> staticInjections;
     private final Map<String, Class<?>> injectableTypes;
-    private final List<SetBinding<?>> setBindings;
+    private final Map<String, SetBinding<?>> setBindings;
+
+    /**
+     * Fully linked bindings used by {@link #get}, keyed by the requested type. Once a type has
+     * been resolved, lookups neither build keys nor take the linker's lock.
+     */
+    private final ConcurrentHashMap<Class<?>, Binding<?>> getBindings =
+        new ConcurrentHashMap<Class<?>, Binding<?>>();
+
+    /** Fully linked bindings used by {@link #inject}, keyed by the injected instance's type. */
+    private final ConcurrentHashMap<Class<?>, Binding<?>> injectBindings =
+        new ConcurrentHashMap<Class<?>, Binding<?>>();
+
+    /** The task linking this graph in the background, or null if {@link #warmUp} wasn't called. */
+    private final AtomicReference<FutureTask<ObjectGraph>> warmUp =
+        new AtomicReference<FutureTask<ObjectGraph>>();
+
+    /** True to link this graph, and the graphs that extend it, when they are created. */
+    private final boolean linkOnCreate;
+
+    /**
+     * The injectable types of this graph and all of its ancestors, so that graphs created by
+     * {@link #plus} find an inherited type with one lookup. Built when a child first needs it.
+     */
+    private volatile Map<String, Class<?>> inheritedInjectableTypes;
 
     DaggerObjectGraph(DaggerObjectGraph base,
         Linker linker,
         Loader plugin,
         Map<Class<?>, StaticInjection> staticInjections,
         Map<String, Class<?>> injectableTypes,
-        List<SetBinding<?>> setBindings) {
+        Map<String, SetBinding<?>> setBindings,
+        boolean linkOnCreate) {
 
       this.base = base;
       this.linker = checkNotNull(linker, "linker");
@@ -163,6 +372,7 @@ public abstract class ObjectGraph {
       this.staticInjections = checkNotNull(staticInjections, "staticInjections");
       this.injectableTypes = checkNotNull(injectableTypes, "injectableTypes");
       this.setBindings = checkNotNull(setBindings, "setBindings");
+      this.linkOnCreate = linkOnCreate;
     }
 
     private static <T> T checkNotNull(T object, String label) {
@@ -170,49 +380,88 @@ public abstract class ObjectGraph {
       return object;
     }
 
-    private static ObjectGraph makeGraph(DaggerObjectGraph base, Loader plugin, Object... modules) {
+    /**
+     * @param scoping how the graph scopes its bindings. Graphs that extend {@code base} scope
+     *     them like it does.
+     */
+    private static ObjectGraph makeGraph(DaggerObjectGraph base, Loader plugin,
+        boolean linkOnCreate, Scoping scoping, Object... modules) {
       Map<String, Class<?>> injectableTypes = new LinkedHashMap<String, Class<?>>();
       Map<Class<?>, StaticInjection> staticInjections
           = new LinkedHashMap<Class<?>, StaticInjection>();
-      StandardBindings baseBindings =
-          (base == null) ? new StandardBindings() : new StandardBindings(base.setBindings);
+      StandardBindings baseBindings = (base == null)
+          ? new StandardBindings(scoping)
+          : new StandardBindings(base.setBindings, scoping);
       BindingsGroup overrideBindings = new OverridesBindings();
 
-      ArrayList<ModuleWithAdapter> loadedModules = Modules.loadModules(plugin, modules);
+      ArrayList<ModuleWithAdapter> loadedModules = Modules.loadModules(plugin, modules, scoping);
       int loadedModulesCount = loadedModules.size();
       for (int moduleIndex = 0; moduleIndex < loadedModulesCount; moduleIndex++) {
         ModuleWithAdapter loadedModule = loadedModules.get(moduleIndex);
-        @SuppressWarnings("unchecked")
-        ModuleAdapter<Object> moduleAdapter =
-            (ModuleAdapter<Object>) loadedModule.getModuleAdapter();
-        for (int i = 0; i < moduleAdapter.injectableTypes.length; i++) {
-          injectableTypes.put(moduleAdapter.injectableTypes[i], moduleAdapter.moduleClass);
-        }
-        for (int i = 0; i < moduleAdapter.staticInjections.length; i++) {
-          staticInjections.put(moduleAdapter.staticInjections[i], null);
-        }
-        try {
-          BindingsGroup addTo = moduleAdapter.overrides ? overrideBindings : baseBindings;
+        ModuleAdapter<?> moduleAdapter = loadedModule.getModuleAdapter();
+        addInjections(moduleAdapter, injectableTypes, staticInjections);
+        addBindings(loadedModule, baseBindings, overrideBindings);
+      }
+
+      Linker linker = newLinker((base != null) ? base.linker : null, plugin, scoping,
+          baseBindings, overrideBindings);
+      DaggerObjectGraph result = new DaggerObjectGraph(base, linker, plugin, staticInjections,
+          injectableTypes, baseBindings.setBindings, linkOnCreate);
+      if (linkOnCreate) {
+        result.linkEverything();
+      }
+      return result;
+    }
+
+    private static void addInjections(ModuleAdapter<?> moduleAdapter,
+        Map<String, Class<?>> injectableTypes, Map<Class<?>, StaticInjection> staticInjections) {
+      for (int i = 0; i < moduleAdapter.injectableTypes.length; i++) {
+        injectableTypes.put(moduleAdapter.injectableTypes[i], moduleAdapter.moduleClass);
+      }
+      for (int i = 0; i < moduleAdapter.staticInjections.length; i++) {
+        staticInjections.put(moduleAdapter.staticInjections[i], null);
+      }
+    }
+
+    private static void addBindings(ModuleWithAdapter loadedModule,
+        BindingsGroup baseBindings, BindingsGroup overrideBindings) {
+      @SuppressWarnings("unchecked")
+      ModuleAdapter<Object> moduleAdapter = (ModuleAdapter<Object>) loadedModule.getModuleAdapter();
+      try {
+        BindingsGroup addTo = moduleAdapter.overrides ? overrideBindings : baseBindings;
+        if (moduleAdapter.eagerBindings) {
           moduleAdapter.getBindings(addTo, loadedModule.getModule());
-        } catch (IllegalArgumentException e) {
-          throw new IllegalArgumentException(
-              moduleAdapter.moduleClass.getSimpleName() + ": " + e.getMessage(), e);
         }
+        for (int i = 0; i < moduleAdapter.providesKeys.length; i++) {
+          addTo.contributeProvidesBinding(loadedModule, i);
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            moduleAdapter.moduleClass.getSimpleName() + ": " + e.getMessage(), e);
       }
+    }
 
-      // Create a linker and install all of the user's bindings
-      Linker linker =
-          new Linker((base != null) ? base.linker : null, plugin, new ThrowingErrorHandler());
+    /**
+     * Creates a linker extending {@code baseLinker}, and installs all of the user's bindings.
+     * The linker is concurrent so that threads looking up unrelated types don't wait for each
+     * other to link them.
+     */
+    private static Linker newLinker(Linker baseLinker, Loader plugin, Scoping scoping,
+        BindingsGroup baseBindings, BindingsGroup overrideBindings) {
+      Linker linker = new Linker(baseLinker, plugin, new ThrowingErrorHandler(), true, scoping);
       linker.installBindings(baseBindings);
       linker.installBindings(overrideBindings);
-
-      return new DaggerObjectGraph(
-          base, linker, plugin, staticInjections, injectableTypes, baseBindings.setBindings);
+      return linker;
     }
 
     @Override public ObjectGraph plus(Object... modules) {
-      linkEverything();
-      return makeGraph(this, plugin, modules);
+      linkEverything(false);
+      return makeGraph(this, plugin, linkOnCreate, linker.scoping(), modules);
+    }
+
+    @Override public Template template(Class<?>... moduleClasses) {
+      linkEverything(false);
+      return new DaggerTemplate(this, moduleClasses);
     }
 
     private void linkStaticInjections() {
@@ -242,18 +491,60 @@ public abstract class ObjectGraph {
      * Links all bindings, injectable types and static injections.
      */
     private Map<String, Binding<?>> linkEverything() {
+      return linkEverything(true);
+    }
+
+    /**
+     * Links all bindings, injectable types and static injections.
+     *
+     * @param includePending true to also create and link the {@code @Provides} bindings that
+     *     nothing has requested yet. Otherwise they are created when first requested.
+     */
+    private Map<String, Binding<?>> linkEverything(boolean includePending) {
       Map<String, Binding<?>> bindings = linker.fullyLinkedBindings();
-      if (bindings != null) {
+      if (bindings != null && !includePending) {
         return bindings;
       }
       synchronized (linker) {
-        if ((bindings = linker.fullyLinkedBindings()) != null) {
-          return bindings;
+        if (linker.fullyLinkedBindings() == null) {
+          linkStaticInjections();
+          linkInjectableTypes();
         }
-        linkStaticInjections();
-        linkInjectableTypes();
-        return linker.linkAll(); // Linker.linkAll() implicitly does Linker.linkRequested().
+        // Linker.linkAll() implicitly does Linker.linkRequested().
+        return linker.linkAll(includePending);
+      }
+    }
+
+    @Override public Future<ObjectGraph> warmUp(Executor executor) {
+      FutureTask<ObjectGraph> task = warmUp.get();
+      if (task != null) {
+        return task;
       }
+      task = new FutureTask<ObjectGraph>(new Callable<ObjectGraph>() {
+        @Override public ObjectGraph call() {
+          linkEverything();
+          return DaggerObjectGraph.this;
+        }
+      });
+      if (!warmUp.compareAndSet(null, task)) {
+        return warmUp.get(); // Another thread started warming up first.
+      }
+      try {
+        executor.execute(task);
+      } catch (RuntimeException e) {
+        warmUp.set(null); // Let a later call try again.
+        throw e;
+      }
+      return task;
+    }
+
+    @Override public void releasePerThreadInstances() {
+      linker.releasePerThreadInstances();
+    }
+
+    @Override public Map<String, Long> initializeSingletons(Executor executor) {
+      Map<String, Binding<?>> allBindings = linkEverything();
+      return new SingletonInitializer().initialize(allBindings.values(), executor);
     }
 
     @Override public void injectStatics() {
@@ -274,25 +565,51 @@ public abstract class ObjectGraph {
     }
 
     @Override public <T> T get(Class<T> type) {
-      String key = Keys.get(type);
-      String injectableTypeKey = type.isInterface() ? key : Keys.getMembersKey(type);
-      ClassLoader classLoader = type.getClassLoader();
       @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
-      Binding<T> binding =
-          (Binding<T>) getInjectableTypeBinding(classLoader, injectableTypeKey, key);
+      Binding<T> binding = (Binding<T>) getBindings.get(type);
+      if (binding == null) {
+        String key = Keys.get(type);
+        String injectableTypeKey = type.isInterface() ? key : Keys.getMembersKey(type);
+        ClassLoader classLoader = type.getClassLoader();
+        @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
+        Binding<T> linked =
+            (Binding<T>) getInjectableTypeBinding(classLoader, injectableTypeKey, key);
+        getBindings.putIfAbsent(type, linked);
+        binding = linked;
+      }
       return binding.get();
     }
 
     @Override public <T> T inject(T instance) {
-      String membersKey = Keys.getMembersKey(instance.getClass());
-      ClassLoader classLoader = instance.getClass().getClassLoader();
+      Class<?> type = instance.getClass();
       @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
-      Binding<T> binding =
-          (Binding<T>) getInjectableTypeBinding(classLoader, membersKey, membersKey);
+      Binding<T> binding = (Binding<T>) injectBindings.get(type);
+      if (binding == null) {
+        String membersKey = Keys.getMembersKey(type);
+        ClassLoader classLoader = type.getClassLoader();
+        @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
+        Binding<T> linked =
+            (Binding<T>) getInjectableTypeBinding(classLoader, membersKey, membersKey);
+        injectBindings.putIfAbsent(type, linked);
+        binding = linked;
+      }
       binding.injectMembers(instance);
       return instance;
     }
 
+    private Map<String, Class<?>> inheritedInjectableTypes() {
+      Map<String, Class<?>> result = inheritedInjectableTypes;
+      if (result == null) {
+        result = new HashMap<String, Class<?>>();
+        if (base != null) {
+          result.putAll(base.inheritedInjectableTypes());
+        }
+        result.putAll(injectableTypes);
+        inheritedInjectableTypes = result;
+      }
+      return result;
+    }
+
     /**
      * @param classLoader the {@code ClassLoader} used to load dependent bindings.
      * @param injectableKey the key used to store the injectable type. This
@@ -301,54 +618,153 @@ public abstract class ObjectGraph {
      *     has no injectable constructor.
      * @param key the key to use when retrieving the binding. This may be a
      *     regular (provider) key or a members key.
+     * @return a fully linked binding, safe to cache for subsequent requests.
      */
     private Binding<?> getInjectableTypeBinding(
         ClassLoader classLoader, String injectableKey, String key) {
-      Class<?> moduleClass = null;
-      for (DaggerObjectGraph graph = this; graph != null; graph = graph.base) {
-        moduleClass = graph.injectableTypes.get(injectableKey);
-        if (moduleClass != null) break;
+      Class<?> moduleClass = injectableTypes.get(injectableKey);
+      if (moduleClass == null && base != null) {
+        moduleClass = base.inheritedInjectableTypes().get(injectableKey);
       }
       if (moduleClass == null) {
         throw new IllegalArgumentException("No inject registered for " + injectableKey
             + ". You must explicitly add it to the 'injects' option in one of your modules.");
       }
 
-      synchronized (linker) {
-        Binding<?> binding = linker.requestBinding(key, moduleClass, classLoader, false, true);
-        if (binding == null || !binding.isLinked()) {
-          linker.linkRequested();
-          binding = linker.requestBinding(key, moduleClass, classLoader, false, true);
-        }
-        return binding;
+      Binding<?> binding = linker.requestBinding(key, moduleClass, classLoader, false, true);
+      if (binding == null || !binding.isLinked()) {
+        linker.linkRequested();
+        binding = linker.requestBinding(key, moduleClass, classLoader, false, true);
       }
+      return binding;
     }
   }
 
 
+  /**
+   * Loads a template's modules once, and links a prototype of its graphs to find the bindings
+   * that all of them can share.
+   */
+  private static final class DaggerTemplate extends Template {
+    private final DaggerObjectGraph base;
+    private final List<ModuleAdapter<?>> moduleAdapters;
+    private final Map<Class<?>, Integer> moduleIndexes = new HashMap<Class<?>, Integer>();
+    private final Map<String, Class<?>> injectableTypes = new LinkedHashMap<String, Class<?>>();
+    private final Map<Class<?>, StaticInjection> staticInjections =
+        new LinkedHashMap<Class<?>, StaticInjection>();
+
+    /** Holds the shared bindings. The linkers of the template's graphs extend it. */
+    private final Linker sharedLinker;
+
+    DaggerTemplate(DaggerObjectGraph base, Class<?>[] moduleClasses) {
+      this.base = base;
+      this.moduleAdapters = Modules.loadModuleAdapters(base.plugin, moduleClasses);
+      StandardBindings baseBindings =
+          new StandardBindings(base.setBindings, base.linker.scoping());
+      BindingsGroup overrideBindings = new OverridesBindings();
+      // Linking doesn't call modules, so the prototype doesn't need module instances.
+      List<ModuleWithAdapter> prototypeModules = Modules.withoutModules(moduleAdapters);
+      for (int i = 0; i < moduleAdapters.size(); i++) {
+        ModuleAdapter<?> moduleAdapter = moduleAdapters.get(i);
+        moduleIndexes.put(moduleAdapter.moduleClass, i);
+        DaggerObjectGraph.addInjections(moduleAdapter, injectableTypes, staticInjections);
+        DaggerObjectGraph.addBindings(prototypeModules.get(i), baseBindings, overrideBindings);
+      }
+
+      Linker prototypeLinker =
+          DaggerObjectGraph.newLinker(base.linker, base.plugin, base.linker.scoping(),
+              baseBindings, overrideBindings);
+      DaggerObjectGraph prototype = new DaggerObjectGraph(base, prototypeLinker, base.plugin,
+          new LinkedHashMap<Class<?>, StaticInjection>(staticInjections), injectableTypes,
+          baseBindings.setBindings, base.linkOnCreate);
+      prototype.linkEverything();
+
+      Set<String> installedKeys = new HashSet<String>();
+      for (Map.Entry<String, ? extends Binding<?>> entry : baseBindings.entrySet()) {
+        installedKeys.add(entry.getKey());
+      }
+      for (Map.Entry<String, ? extends Binding<?>> entry : overrideBindings.entrySet()) {
+        installedKeys.add(entry.getKey());
+      }
+      this.sharedLinker = prototypeLinker.newSharedLinker(installedKeys);
+    }
+
+    @Override public ObjectGraph create(Object... modules) {
+      Object[] instances = new Object[moduleAdapters.size()];
+      for (Object module : modules) {
+        Integer index = moduleIndexes.get(module.getClass());
+        if (index == null) {
+          throw new IllegalArgumentException(
+              module.getClass().getName() + " is not one of this template's modules.");
+        }
+        instances[index] = module;
+      }
+
+      StandardBindings baseBindings =
+          new StandardBindings(base.setBindings, base.linker.scoping());
+      BindingsGroup overrideBindings = new OverridesBindings();
+      ArrayList<ModuleWithAdapter> loadedModules =
+          Modules.instantiate(moduleAdapters, instances, base.linker.scoping());
+      int loadedModulesCount = loadedModules.size();
+      for (int moduleIndex = 0; moduleIndex < loadedModulesCount; moduleIndex++) {
+        ModuleWithAdapter loadedModule = loadedModules.get(moduleIndex);
+        DaggerObjectGraph.addBindings(loadedModule, baseBindings, overrideBindings);
+      }
+
+      Linker linker =
+          DaggerObjectGraph.newLinker(sharedLinker, base.plugin, base.linker.scoping(),
+              baseBindings, overrideBindings);
+      return new DaggerObjectGraph(base, linker, base.plugin,
+          new LinkedHashMap<Class<?>, StaticInjection>(staticInjections), injectableTypes,
+          baseBindings.setBindings, base.linkOnCreate);
+    }
+  }
+
   /**
    * A BindingsGroup which fails when existing values are clobbered and sets aside
-   * {@link SetBinding}.
+   * {@link SetBinding}. The set bindings of the base graph are used as they are, unless this
+   * graph contributes to them: then this graph gets a set binding of its own that extends the
+   * base graph's.
    */
   private static final class StandardBindings extends BindingsGroup {
-    private final List<SetBinding<?>> setBindings;
+    private final Map<String, SetBinding<?>> baseSetBindings;
+
+    /**
+     * The set bindings of the graph, keyed by their provide keys. This is the base graph's map
+     * until this graph contributes to a set.
+     */
+    private Map<String, SetBinding<?>> setBindings;
 
-    public StandardBindings() {
-      setBindings = new ArrayList<SetBinding<?>>();
+    public StandardBindings(Scoping scoping) {
+      this(Collections.<String, SetBinding<?>>emptyMap(), scoping);
     }
 
-    public StandardBindings(List<SetBinding<?>> baseSetBindings) {
-      setBindings = new ArrayList<SetBinding<?>>(baseSetBindings.size());
-      for (SetBinding<?> sb : baseSetBindings) {
+    public StandardBindings(Map<String, SetBinding<?>> baseSetBindings, Scoping scoping) {
+      super(scoping);
+      this.baseSetBindings = baseSetBindings;
+      this.setBindings = baseSetBindings;
+    }
+
+    @Override public Binding<?> contributeSetBinding(String key, SetBinding<?> value) {
+      SetBinding<?> base = baseSetBindings.get(key);
+      if (base != null) {
         @SuppressWarnings({ "rawtypes", "unchecked" })
-        SetBinding<?> child = new SetBinding(sb);
-        setBindings.add(child);
-        put(child.provideKey, child);
+        SetBinding<?> child = new SetBinding(base);
+        child.setLibrary(base.library() && value.library());
+        value = child;
       }
+      if (setBindings == baseSetBindings) {
+        setBindings = new LinkedHashMap<String, SetBinding<?>>(baseSetBindings);
+      }
+      setBindings.put(key, value);
+      return super.put(key, value);
     }
 
-    @Override public Binding<?> contributeSetBinding(String key, SetBinding<?> value) {
-      setBindings.add(value);
+    @Override protected Binding<?> put(String key, Binding<?> value) {
+      SetBinding<?> base = baseSetBindings.get(key);
+      if (base != null && !(value instanceof SetBinding)) {
+        throw new IllegalArgumentException("Duplicate:\n    " + base + "\n    " + value);
+      }
       return super.put(key, value);
     }
   }
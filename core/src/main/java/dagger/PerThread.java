@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import javax.inject.Scope;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Identifies a type or {@code @Provides} method whose instances are confined to one thread.
+ * Each thread that requests the binding gets its own instance, which is reused for every later
+ * request on that thread without locking. This suits objects like formatters and parsers that
+ * are expensive to create but not thread-safe.
+ *
+ * <p>Instances are held per graph or component, by a thread-local of that graph or component.
+ * Once it is discarded, a thread that outlives it, like a pool thread, keeps its instance until
+ * its stale thread-local entry happens to be expunged. Call {@link
+ * ObjectGraph#releasePerThreadInstances} to release a graph's instances on every thread at once.
+ */
+@Scope @Documented @Retention(RUNTIME)
+public @interface PerThread {
+}
@@ -53,7 +53,16 @@ public @interface Provides {
      * contributed to the set. An example use is to provide a default empty set binding, which is
      * otherwise not possible using {@link #SET}.
      */
-    SET_VALUES;
+    SET_VALUES,
+
+    /**
+     * The method's return type forms the value type argument of a {@code Map<String, V>}, and the
+     * returned value is contributed to the map under the key given by the method's
+     * {@link MapKey} annotation. The map produced from the accumulation of entries will be
+     * immutable. Inject {@code Map<String, Provider<V>>} to look up values without creating
+     * the values of the other entries.
+     */
+    MAP;
   }
 
   Type type() default Type.UNIQUE;
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import javax.inject.Scope;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Identifies a type or {@code @Provides} method whose instance may be reused for every request,
+ * but need not be unique. Unlike a {@link javax.inject.Singleton} binding, a reusable binding never
+ * makes a thread wait for another thread's provision: threads that request it before it has been
+ * provided may each create an instance, and the first one to finish is kept for every later
+ * request. This suits stateless or idempotent objects that are cheap to discard.
+ */
+@Scope @Documented @Retention(RUNTIME)
+public @interface Reusable {
+}
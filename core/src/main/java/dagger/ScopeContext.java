@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.lang.annotation.Annotation;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import javax.inject.Provider;
+import javax.inject.Scope;
+import javax.inject.Singleton;
+
+/**
+ * Holds the instances of the bindings in a custom {@linkplain Scope scope}, like a request scope.
+ * While a context is entered on a thread, object graphs that use contexts provide bindings
+ * annotated with the context's scope annotation from the context, creating each instance once per
+ * context.
+ * Creating a context allocates only a small instance table; no modules are loaded and no
+ * bindings are linked, as they would be by {@link ObjectGraph#plus}.
+ *
+ * <pre><code>
+ *   ScopeContext request = new ScopeContext(RequestScoped.class);
+ *   request.enter();
+ *   try {
+ *     objectGraph.get(RequestHandler.class).handle(...);
+ *   } finally {
+ *     request.exit();
+ *   }
+ * </code></pre>
+ *
+ * <p>Only graphs created with {@link ObjectGraph.Builder#scopeContexts} use contexts; other
+ * graphs ignore custom scope annotations.
+ *
+ * <p>A context may be entered on several threads at once, and contexts of different scopes may
+ * be nested. No lock is held while an instance is created: threads that request an instance
+ * while another thread creates it wait for that instance, and requests for other instances
+ * proceed. If creating an instance fails, the waiting threads get the same exception and a later
+ * request tries again.
+ */
+public final class ScopeContext {
+  /** The contexts entered on each thread, innermost first. */
+  private static final ThreadLocal<Frame> ENTERED = new ThreadLocal<Frame>();
+
+  private final Class<? extends Annotation> scope;
+
+  /** Stands in for a null instance. */
+  private static final Object NULL = new Object();
+
+  /** Maps keys to instances, or to the {@link Creation} getting them. */
+  private final ConcurrentHashMap<Object, Object> instances =
+      new ConcurrentHashMap<Object, Object>();
+
+  /**
+   * @param scope an annotation annotated with {@link Scope}, other than {@link Singleton},
+   *     {@link PerThread} and {@link Reusable}.
+   */
+  public ScopeContext(Class<? extends Annotation> scope) {
+    if (scope == null) {
+      throw new NullPointerException("scope");
+    }
+    if (!scope.isAnnotationPresent(Scope.class)
+        || scope == Singleton.class || scope == PerThread.class || scope == Reusable.class) {
+      throw new IllegalArgumentException("Not a custom scope annotation: " + scope.getName());
+    }
+    this.scope = scope;
+  }
+
+  public Class<? extends Annotation> scope() {
+    return scope;
+  }
+
+  /** Makes this the current context of its scope on the calling thread until {@link #exit}. */
+  public void enter() {
+    ENTERED.set(new Frame(this, ENTERED.get()));
+  }
+
+  /**
+   * Restores the context that was current on the calling thread before {@link #enter}.
+   *
+   * @throws IllegalStateException if this is not the context most recently entered on the
+   *     calling thread.
+   */
+  public void exit() {
+    Frame frame = ENTERED.get();
+    if (frame == null || frame.context != this) {
+      throw new IllegalStateException("@" + scope.getSimpleName()
+          + " context is not the innermost context entered on this thread.");
+    }
+    if (frame.previous != null) {
+      ENTERED.set(frame.previous);
+    } else {
+      ENTERED.remove();
+    }
+  }
+
+  /**
+   * Returns the innermost context of {@code scope} entered on the calling thread.
+   *
+   * @throws IllegalStateException if no such context is entered.
+   */
+  public static ScopeContext current(Class<? extends Annotation> scope) {
+    for (Frame frame = ENTERED.get(); frame != null; frame = frame.previous) {
+      if (frame.context.scope == scope) {
+        return frame.context;
+      }
+    }
+    throw new IllegalStateException("No @" + scope.getName()
+        + " context is entered on this thread.");
+  }
+
+  /**
+   * Returns this context's instance for {@code key}, first getting it from {@code provider} if
+   * this context has none. Scoped bindings use themselves as keys; keys are compared with {@code
+   * equals}.
+   *
+   * @throws IllegalStateException if {@code provider} requests its own key from this context.
+   */
+  public <T> T get(Object key, Provider<T> provider) {
+    Object instance = instances.get(key);
+    if (instance == null) {
+      Creation created = new Creation();
+      Object raced = instances.putIfAbsent(key, created);
+      instance = raced == null ? created.run(key, provider) : raced;
+    }
+    if (instance instanceof Creation) {
+      instance = ((Creation) instance).await();
+    }
+    @SuppressWarnings("unchecked") // Each key is only ever used with providers of one type.
+    T result = (T) (instance == NULL ? null : instance);
+    return result;
+  }
+
+  @Override public String toString() {
+    return "ScopeContext[@" + scope.getName() + "]";
+  }
+
+  /** An instance being created by one thread, and awaited by any others that need it. */
+  private final class Creation {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Thread creator = Thread.currentThread();
+    private Object instance;
+    private Throwable failure;
+
+    Object run(Object key, Provider<?> provider) {
+      try {
+        Object newInstance = provider.get(); // May reenter for scoped dependencies.
+        instance = newInstance != null ? newInstance : NULL;
+        instances.replace(key, this, instance);
+        return instance;
+      } catch (RuntimeException e) {
+        failure = e;
+        instances.remove(key, this);
+        throw e;
+      } catch (Error e) {
+        failure = e;
+        instances.remove(key, this);
+        throw e;
+      } finally {
+        done.countDown();
+      }
+    }
+
+    Object await() {
+      if (creator == Thread.currentThread() && done.getCount() != 0) {
+        throw new IllegalStateException("Recursive request for a @" + scope.getSimpleName()
+            + " instance while creating it.");
+      }
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            done.await();
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      return instance;
+    }
+
+    @Override public String toString() {
+      return "Creation";
+    }
+  }
+
+  private static final class Frame {
+    final ScopeContext context;
+    final Frame previous;
+
+    Frame(ScopeContext context, Frame previous) {
+      this.context = context;
+      this.previous = previous;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+/**
+ * Creates generated adapters without reflection. The annotation processors generate a registry
+ * for the adapters of each package they process, and list the registries in the {@linkplain
+ * dagger.internal.loaders.GeneratedAdapters#INJECT_ADAPTER_REGISTRY_INDEX registry indexes}.
+ * {@link FailoverLoader} consults the registries before looking for adapter classes by name.
+ */
+public abstract class AdapterRegistry {
+  private final String[] adapterNames;
+
+  /**
+   * @param adapterNames the binary names of the adapter classes created by {@link #newAdapter},
+   *     in the order of their indexes.
+   */
+  protected AdapterRegistry(String... adapterNames) {
+    this.adapterNames = adapterNames;
+  }
+
+  /** Returns the number of adapters this registry creates. */
+  public final int size() {
+    return adapterNames.length;
+  }
+
+  /** Returns the binary name of the adapter class created for {@code index}. */
+  public final String adapterName(int index) {
+    return adapterNames[index];
+  }
+
+  /** Returns a new instance of the adapter class named at {@code index}. */
+  protected abstract Object newAdapter(int index);
+}
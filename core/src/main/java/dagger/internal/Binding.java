@@ -16,7 +16,9 @@
 package dagger.internal;
 
 import dagger.MembersInjector;
+import java.lang.annotation.Annotation;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import javax.inject.Provider;
 
 /**
@@ -56,11 +58,21 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
   /** The key used to inject members of 'T', or null if this binding cannot inject members. */
   public final String membersKey;
 
-  /** Bitfield of states like SINGLETON and LINKED. */
-  private int bits;
+  /**
+   * Bitfield of states like SINGLETON and LINKED. Updates are atomic so that threads linking
+   * different bindings concurrently never lose each other's flags.
+   */
+  private volatile int bits;
+
+  @SuppressWarnings("rawtypes") // Field updaters cannot be created for parameterized types.
+  private static final AtomicIntegerFieldUpdater<Binding> BITS =
+      AtomicIntegerFieldUpdater.newUpdater(Binding.class, "bits");
 
   public final Object requiredBy;
 
+  /** The custom scope annotation of this binding, or null if it is unscoped or a singleton. */
+  private Class<? extends Annotation> scope;
+
   protected Binding(String provideKey, String membersKey, boolean singleton, Object requiredBy) {
     if (singleton && provideKey == null) {
       throw new InvalidBindingException(Keys.getClassName(membersKey),
@@ -102,8 +114,16 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
     // Do nothing.  No override == no dependencies to contribute.
   }
 
+  /**
+   * Populates {@code linkedBindings} with all bindings requested by {@link #attach}. Unlike
+   * {@link #getDependencies} this includes bindings that are only used lazily.
+   */
+  void getLinkedDependencies(Set<Binding<?>> linkedBindings) {
+    getDependencies(linkedBindings, linkedBindings);
+  }
+
   void setLinked() {
-    bits |= LINKED;
+    setBit(LINKED, true);
   }
 
   public boolean isLinked() {
@@ -119,7 +139,7 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
   }
 
   public void setVisiting(boolean visiting) {
-    this.bits = visiting ? (bits | VISITING) : (bits & ~VISITING);
+    setBit(VISITING, visiting);
   }
 
   public boolean isCycleFree() {
@@ -127,25 +147,51 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
   }
 
   public void setCycleFree(boolean cycleFree) {
-    this.bits = cycleFree ? (bits | CYCLE_FREE) : (bits & ~CYCLE_FREE);
+    setBit(CYCLE_FREE, cycleFree);
   }
 
   public void setLibrary(boolean library) {
-    this.bits = library ? (bits | LIBRARY) : (bits & ~LIBRARY);
+    setBit(LIBRARY, library);
   }
 
   public boolean library() {
     return (bits & LIBRARY) != 0;
   }
 
+  /**
+   * Scopes this binding's instances to the {@link dagger.ScopeContext} of {@code scope} that is
+   * entered when they are requested, rather than to the graph.
+   */
+  public void setScope(Class<? extends Annotation> scope) {
+    if (provideKey == null) {
+      throw new InvalidBindingException(Keys.getClassName(membersKey),
+          "is exclusively members injected and therefore cannot be scoped");
+    }
+    this.scope = scope;
+  }
+
+  /** Returns the custom scope annotation of this binding, or null if it has none. */
+  public Class<? extends Annotation> scope() {
+    return scope;
+  }
+
   public void setDependedOn(boolean dependedOn) {
-    this.bits = dependedOn ? (bits | DEPENDED_ON) : (bits & ~DEPENDED_ON);
+    setBit(DEPENDED_ON, dependedOn);
   }
 
   public boolean dependedOn() {
     return (bits & DEPENDED_ON) != 0;
   }
 
+  private void setBit(int bit, boolean set) {
+    int current;
+    int updated;
+    do {
+      current = bits;
+      updated = set ? (current | bit) : (current & ~bit);
+    } while (current != updated && !BITS.compareAndSet(this, current, updated));
+  }
+
   @Override public String toString() {
     return getClass().getSimpleName()
             + "[provideKey=\"" + provideKey + "\", memberskey=\"" + membersKey + "\"]";
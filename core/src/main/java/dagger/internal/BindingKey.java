@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A parsed, interned binding key. Keys are created from the strings produced by {@link Keys}
+ * and generated adapters, and are parsed only once while they are in use. Because keys are
+ * interned, two keys are equal only if they are the same instance.
+ *
+ * <p>Interned keys are held weakly, so the keys of discarded graphs are collected with them.
+ */
+public final class BindingKey {
+  /** What a key's binding injects. */
+  public enum Kind {
+    /** A value of a type, like {@code Foo}. */
+    PLAIN,
+    /** The members of a type, like {@code members/Foo}. */
+    MEMBERS,
+    /** A {@code Provider<Foo>}, which delegates to {@code Foo}. */
+    PROVIDER,
+    /** A {@code Lazy<Foo>}, which delegates to {@code Foo}. */
+    LAZY,
+    /** A {@code MembersInjector<Foo>}, which delegates to {@code members/Foo}. */
+    MEMBERS_INJECTOR,
+    /** A {@code Set<Provider<Foo>>}, which delegates to {@code Set<Foo>}. */
+    PROVIDER_SET,
+    /** A {@code Map<String, Foo>}, which delegates to {@code Map<String, Provider<Foo>>}. */
+    MAP,
+    /**
+     * A {@code Map<String, Provider<Foo>>}, which delegates to the set of its entries,
+     * {@code Set<Map.Entry<String, Provider<Foo>>>}.
+     */
+    PROVIDER_MAP
+  }
+
+  private static final ConcurrentMap<String, InternedKey> INTERNED =
+      new ConcurrentHashMap<String, InternedKey>();
+  private static final ReferenceQueue<BindingKey> COLLECTED = new ReferenceQueue<BindingKey>();
+
+  /** The key in its string form, as returned by {@link Keys#get}. */
+  public final String name;
+
+  public final Kind kind;
+
+  /** The qualifier annotation of this key, like {@code @javax.inject.Named(value=foo)}, or null. */
+  public final String qualifier;
+
+  /** The class name of the type bound by this key, or null if it is a generic or array type. */
+  public final String className;
+
+  /** The key of the binding that keys of every kind but plain and members keys delegate to. */
+  public final BindingKey delegate;
+
+  private final int hashCode;
+
+  private BindingKey(String name) {
+    this.name = name;
+    this.hashCode = name.hashCode();
+    this.qualifier = Keys.isAnnotated(name) ? name.substring(0, name.lastIndexOf('/')) : null;
+    this.className = Keys.getClassName(name);
+
+    String builtInKey = Keys.getBuiltInBindingsKey(name);
+    String lazyKey = builtInKey == null ? Keys.getLazyKey(name) : null;
+    String providerSetKey =
+        builtInKey == null && lazyKey == null ? Keys.getProviderSetKey(name) : null;
+    String mapOfProvidersKey = Keys.getMapOfProvidersKey(name);
+    String mapEntriesKey = mapOfProvidersKey == null ? Keys.getMapEntriesKey(name) : null;
+    if (builtInKey != null) {
+      this.kind = builtInKey.startsWith("members/") ? Kind.MEMBERS_INJECTOR : Kind.PROVIDER;
+      this.delegate = get(builtInKey);
+    } else if (lazyKey != null) {
+      this.kind = Kind.LAZY;
+      this.delegate = get(lazyKey);
+    } else if (providerSetKey != null) {
+      this.kind = Kind.PROVIDER_SET;
+      this.delegate = get(providerSetKey);
+    } else if (mapOfProvidersKey != null) {
+      this.kind = Kind.MAP;
+      this.delegate = get(mapOfProvidersKey);
+    } else if (mapEntriesKey != null) {
+      this.kind = Kind.PROVIDER_MAP;
+      this.delegate = get(mapEntriesKey);
+    } else {
+      this.kind = name.startsWith("members/") ? Kind.MEMBERS : Kind.PLAIN;
+      this.delegate = null;
+    }
+  }
+
+  /** Returns the interned key for {@code name}. */
+  public static BindingKey get(String name) {
+    BindingKey result = find(name);
+    if (result != null) {
+      return result;
+    }
+    expungeCollected();
+    BindingKey created = new BindingKey(name);
+    InternedKey reference = new InternedKey(created);
+    while (true) {
+      InternedKey existing = INTERNED.putIfAbsent(name, reference);
+      if (existing == null) {
+        return created;
+      }
+      result = existing.get();
+      if (result != null) {
+        return result;
+      }
+      if (INTERNED.replace(name, existing, reference)) {
+        return created; // The existing key was collected.
+      }
+    }
+  }
+
+  /** Returns the interned key for {@code name}, or null if no such key is in use. */
+  static BindingKey find(String name) {
+    InternedKey reference = INTERNED.get(name);
+    return reference != null ? reference.get() : null;
+  }
+
+  private static void expungeCollected() {
+    InternedKey collected;
+    while ((collected = (InternedKey) COLLECTED.poll()) != null) {
+      INTERNED.remove(collected.name, collected);
+    }
+  }
+
+  @Override public int hashCode() {
+    return hashCode;
+  }
+
+  @Override public String toString() {
+    return name;
+  }
+
+  /** A weak reference to an interned key, which remembers its name to be removed. */
+  private static final class InternedKey extends WeakReference<BindingKey> {
+    final String name;
+
+    InternedKey(BindingKey key) {
+      super(key, COLLECTED);
+      this.name = key.name;
+    }
+  }
+}
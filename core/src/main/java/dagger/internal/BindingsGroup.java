@@ -27,6 +27,16 @@ import java.util.Set;
  */
 public abstract class BindingsGroup {
   private final Map<String, Binding<?>> bindings = new LinkedHashMap<String, Binding<?>>();
+  private final Scoping scoping;
+
+  public BindingsGroup() {
+    this(Scoping.DEFAULT);
+  }
+
+  /** @param scoping how to scope the bindings contributed to sets and maps. */
+  protected BindingsGroup(Scoping scoping) {
+    this.scoping = scoping;
+  }
 
   public abstract Binding<?> contributeSetBinding(String key, SetBinding<?> value);
 
@@ -34,6 +44,15 @@ public abstract class BindingsGroup {
     return put(key, value);
   }
 
+  /**
+   * Contributes the binding for {@code providesKeys[index]} of {@code module}'s adapter, which
+   * the adapter will create only once a linker requests it.
+   */
+  public Binding<?> contributeProvidesBinding(Modules.ModuleWithAdapter module, int index) {
+    return put(module.getModuleAdapter().providesKeys[index],
+        new PendingProvidesBinding(module, index));
+  }
+
   protected Binding<?> put(String key, Binding<?> value) {
     Binding<?> clobbered = bindings.put(key, value);
     if (clobbered != null) {
@@ -43,6 +62,11 @@ public abstract class BindingsGroup {
     return null;
   }
 
+  /** Returns a scoped binding for {@code binding}, which contributes to a set or map. */
+  final <T> Binding<T> scope(Binding<T> binding) {
+    return Linker.scope(binding, scoping);
+  }
+
   public Binding<?> get(String key) {
     return bindings.get(key);
   }
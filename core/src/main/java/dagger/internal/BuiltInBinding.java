@@ -15,17 +15,18 @@
  */
 package dagger.internal;
 
+import java.util.Set;
 
 /**
  * Injects a Provider or a MembersInjector.
  */
 final class BuiltInBinding<T> extends Binding<T> {
-  private final String delegateKey;
+  private final BindingKey delegateKey;
   private final ClassLoader classLoader;
   private Binding<?> delegate;
 
   public BuiltInBinding(
-      String key, Object requiredBy, ClassLoader classLoader, String delegateKey) {
+      String key, Object requiredBy, ClassLoader classLoader, BindingKey delegateKey) {
     super(key, null, false, requiredBy);
     this.classLoader = classLoader;
     this.delegateKey = delegateKey;
@@ -50,4 +51,10 @@ final class BuiltInBinding<T> extends Binding<T> {
 
   // public void getDependencies() not overridden.
   // We don't add 'delegate' because it isn't actually used by get() or injectMembers().
+
+  @Override void getLinkedDependencies(Set<Binding<?>> linkedBindings) {
+    if (delegate != null) {
+      linkedBindings.add(delegate);
+    }
+  }
 }
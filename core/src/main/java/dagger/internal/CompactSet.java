@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set that keeps its elements in insertion order in a single array. Small sets are
+ * searched linearly; larger sets also have an open addressing table of indexes into the array,
+ * so a set has two arrays and no per-element objects. Null elements are permitted.
+ */
+final class CompactSet<E> extends AbstractSet<E> {
+  /** Sets with at most this many elements have no hash table. */
+  private static final int LINEAR_SEARCH_MAX = 8;
+
+  private final Object[] elements;
+  private final int size;
+  /** One more than the index of each element, in open addressing order, or null. */
+  private final int[] table;
+
+  private CompactSet(Object[] elements, int size, int[] table) {
+    this.elements = elements;
+    this.size = size;
+    this.table = table;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public boolean contains(Object o) {
+    if (table == null) {
+      for (int i = 0; i < size; i++) {
+        if (equal(elements[i], o)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    int mask = table.length - 1;
+    for (int i = hash(o) & mask; table[i] != 0; i = (i + 1) & mask) {
+      if (equal(elements[table[i] - 1], o)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int next;
+
+      @Override public boolean hasNext() {
+        return next < size;
+      }
+
+      @SuppressWarnings("unchecked") // Only elements of type E are added.
+      @Override public E next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return (E) elements[next++];
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  private static int hash(Object o) {
+    if (o == null) {
+      return 0;
+    }
+    int h = o.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /** Collects the elements of a {@link CompactSet}, dropping duplicates as they are added. */
+  static final class Builder<E> {
+    private Object[] elements;
+    private int size;
+    private int[] table;
+
+    /** @param expectedSize the number of elements to make room for up front. */
+    Builder(int expectedSize) {
+      elements = new Object[Math.max(expectedSize, 1)];
+      if (expectedSize > LINEAR_SEARCH_MAX) {
+        table = new int[tableSize(elements.length)];
+      }
+    }
+
+    Builder<E> add(E element) {
+      if (table == null) {
+        for (int i = 0; i < size; i++) {
+          if (equal(elements[i], element)) {
+            return this;
+          }
+        }
+        append(element);
+        if (size > LINEAR_SEARCH_MAX) {
+          rehash();
+        }
+        return this;
+      }
+      int mask = table.length - 1;
+      int i = hash(element) & mask;
+      for (; table[i] != 0; i = (i + 1) & mask) {
+        if (equal(elements[table[i] - 1], element)) {
+          return this;
+        }
+      }
+      if (size == elements.length) {
+        append(element);
+        rehash(); // The table is sized for the old capacity.
+      } else {
+        append(element);
+        table[i] = size;
+      }
+      return this;
+    }
+
+    private void append(Object element) {
+      if (size == elements.length) {
+        Object[] grown = new Object[size * 2];
+        System.arraycopy(elements, 0, grown, 0, size);
+        elements = grown;
+      }
+      elements[size++] = element;
+    }
+
+    /** Rebuilds the table for the current capacity. */
+    private void rehash() {
+      table = new int[tableSize(elements.length)];
+      int mask = table.length - 1;
+      for (int index = 0; index < size; index++) {
+        int i = hash(elements[index]) & mask;
+        while (table[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        table[i] = index + 1;
+      }
+    }
+
+    /** Returns a table size that keeps the table at most half full. */
+    private static int tableSize(int capacity) {
+      int result = 2;
+      while (result < capacity * 2) {
+        result <<= 1;
+      }
+      return result;
+    }
+
+    Set<E> build() {
+      return new CompactSet<E>(elements, size, size > LINEAR_SEARCH_MAX ? table : null);
+    }
+  }
+}
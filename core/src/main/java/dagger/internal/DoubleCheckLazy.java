@@ -20,7 +20,8 @@ import javax.inject.Provider;
 
 /**
  * A basic {@link Lazy} implementation that memoizes the value returned from a {@link Provider}
- * using the double-check idiom described in Effective Java 2: Item 71.
+ * using the double-check idiom described in Effective Java 2: Item 71. {@link #create} returns a
+ * lock-based lazy instead if selected by {@link Scoping}.
  *
  * @author Gregory Kick
  * @since 2.0
@@ -55,6 +56,9 @@ public final class DoubleCheckLazy<T> implements Lazy<T> {
     if (provider == null) {
       throw new NullPointerException();
     }
+    if (Scoping.USE_LOCKS) {
+      return new LockingLazy<T>(provider, false);
+    }
     return new DoubleCheckLazy<T>(provider);
   }
 }
@@ -16,12 +16,29 @@
  */
 package dagger.internal;
 
+import dagger.internal.Binding.InvalidBindingException;
 import dagger.internal.loaders.ReflectiveAtInjectBinding;
 import dagger.internal.loaders.ReflectiveStaticInjection;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static dagger.internal.loaders.GeneratedAdapters.INJECT_ADAPTER_REGISTRY_INDEX;
 import static dagger.internal.loaders.GeneratedAdapters.INJECT_ADAPTER_SUFFIX;
+import static dagger.internal.loaders.GeneratedAdapters.MODULE_ADAPTER_REGISTRY_INDEX;
 import static dagger.internal.loaders.GeneratedAdapters.MODULE_ADAPTER_SUFFIX;
 import static dagger.internal.loaders.GeneratedAdapters.STATIC_INJECTION_SUFFIX;
 
@@ -29,6 +46,10 @@ import static dagger.internal.loaders.GeneratedAdapters.STATIC_INJECTION_SUFFIX;
  * Handles loading/finding of modules, injection bindings, and static injections by use of a
  * strategy of "load the appropriate generated code" or, if no such code is found, create a
  * reflective equivalent.
+ *
+ * <p>Each class injected by reflection is counted in {@link #reflectionFallbacks}. A loader
+ * created to use generated code only reports those classes as errors instead, so that a build
+ * which skipped the annotation processor fails rather than quietly running slower.
  */
 public final class FailoverLoader extends Loader {
   /*
@@ -37,71 +58,256 @@ public final class FailoverLoader extends Loader {
    * be wasteful in terms of both CPU and memory allocated.
    */
 
-  private final Memoizer<Class<?>, ModuleAdapter<?>> loadedAdapters =
-      new Memoizer<Class<?>, ModuleAdapter<?>>() {
-        @Override protected ModuleAdapter<?> create(Class<?> type) {
-          ModuleAdapter<?> result =
-              instantiate(type.getName().concat(MODULE_ADAPTER_SUFFIX), type.getClassLoader());
-          if (result == null) {
-            throw new IllegalStateException("Module adapter for " + type + " could not be loaded. "
-                + "Please ensure that code generation was run for this module.");
-          }
-          return result;
-        }
-      };
+  /** The most entries kept by each cache of the {@linkplain #shared shared loader}. */
+  private static final int SHARED_CACHE_SIZE = 8192;
+
+  private static final FailoverLoader SHARED = new FailoverLoader(SHARED_CACHE_SIZE);
+
+  private static final FailoverLoader SHARED_GENERATED_ONLY =
+      new FailoverLoader(SHARED_CACHE_SIZE, true);
+
+  /*
+   * Caches are keyed weakly by class or class loader, so that caching doesn't keep a class loader
+   * reachable. Adapters, constructors and reflective factories refer to their classes, and so to
+   * those keys. They are held strongly for class loaders that are never unloaded, like the
+   * application's, and weakly for other class loaders, to be looked up again once collected.
+   */
+
+  /** The adapter of each module class. */
+  private final Memoizer<Class<?>, ModuleAdapter<?>> loadedAdapters;
+
+  /** How to create the {@code @Inject} binding of each class, by class name, per class loader. */
+  private final Memoizer<ClassLoader, Memoizer<String, AtInjectBindingInfo>> atInjectBindings;
+
+  /** The generated adapters listed by registries, by adapter class name, for each class loader. */
+  private final Memoizer<ClassLoader, Map<String, RegisteredAdapter>> registries;
+
+  private final boolean generatedOnly;
+
+  /** The classes injected by reflection, by class name. */
+  private final ConcurrentHashMap<String, FallbackCounter> fallbacks =
+      new ConcurrentHashMap<String, FallbackCounter>();
+
+  public FailoverLoader() {
+    this(Integer.MAX_VALUE);
+  }
 
   /**
-   * Obtains a module adapter for {@code module} from the first responding resolver.
+   * @param maxCacheSize the most adapters, {@code @Inject} bindings and classes to cache. Once
+   *     a cache is full, arbitrary entries are evicted to make room.
    */
-  @SuppressWarnings("unchecked") // cache ensures types match
-  @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<T> type) {
-    return (ModuleAdapter<T>) loadedAdapters.get(type);
+  public FailoverLoader(int maxCacheSize) {
+    this(maxCacheSize, false);
   }
 
-  private final Memoizer<AtInjectBindingKey, AtInjectBindingInfo> atInjectBindings =
-      new Memoizer<AtInjectBindingKey, AtInjectBindingInfo>() {
-        @Override protected AtInjectBindingInfo create(AtInjectBindingKey key) {
-          return getAtInjectBindingInfo(key.classLoader, key.className);
+  /**
+   * @param maxCacheSize the most adapters, {@code @Inject} bindings and classes to cache. Once
+   *     a cache is full, arbitrary entries are evicted to make room.
+   * @param generatedOnly true to fail rather than inject a class by reflection when it has no
+   *     generated adapter. Graphs that need such a class fail to link, and static injections of
+   *     such a class throw {@code IllegalStateException}.
+   */
+  public FailoverLoader(final int maxCacheSize, boolean generatedOnly) {
+    super(maxCacheSize);
+    this.generatedOnly = generatedOnly;
+    loadedAdapters = new Memoizer<Class<?>, ModuleAdapter<?>>(maxCacheSize, true) {
+      @Override boolean holdsWeakly(Class<?> type) {
+        return !neverUnloaded(type.getClassLoader());
+      }
+
+      @Override protected ModuleAdapter<?> create(Class<?> type) {
+        String adapterName = type.getName().concat(MODULE_ADAPTER_SUFFIX);
+        RegisteredAdapter registered = getRegisteredAdapter(adapterName, type.getClassLoader());
+        ModuleAdapter<?> result = (registered != null)
+            ? (ModuleAdapter<?>) registered.newInstance()
+            : (ModuleAdapter<?>) instantiate(adapterName, type.getClassLoader());
+        if (result == null) {
+          throw new IllegalStateException("Module adapter for " + type + " could not be loaded. "
+              + "Please ensure that code generation was run for this module.");
         }
-      };
+        return result;
+      }
+    };
+    atInjectBindings = new Memoizer<ClassLoader, Memoizer<String, AtInjectBindingInfo>>(
+        maxCacheSize, true) {
+      @Override protected Memoizer<String, AtInjectBindingInfo> create(ClassLoader classLoader) {
+        final WeakReference<ClassLoader> classLoaderReference =
+            new WeakReference<ClassLoader>(classLoader);
+        return new Memoizer<String, AtInjectBindingInfo>(
+            maxCacheSize, false, !neverUnloaded(classLoader)) {
+          @Override protected AtInjectBindingInfo create(String className) {
+            return getAtInjectBindingInfo(classLoaderReference.get(), className);
+          }
+        };
+      }
+    };
+    registries = new Memoizer<ClassLoader, Map<String, RegisteredAdapter>>(maxCacheSize, true) {
+      @Override protected Map<String, RegisteredAdapter> create(ClassLoader classLoader) {
+        return loadRegistries(classLoader);
+      }
+    };
+  }
 
-  private static final class AtInjectBindingKey {
-    // classLoader can be null
-    private final ClassLoader classLoader;
-    private final String className;
+  /**
+   * Returns the loader used by {@link dagger.ObjectGraph#create}. Its caches are shared by all
+   * graphs created that way, so only the first graph to use a module or class pays to load it.
+   * Classes of any {@code ClassLoader} may be loaded; each cache holds at most 8192 entries.
+   * Class loaders are held weakly, so caching doesn't prevent unloading them after redeploying.
+   */
+  public static FailoverLoader shared() {
+    return SHARED;
+  }
 
-    AtInjectBindingKey(ClassLoader classLoader, String className) {
-      this.classLoader = classLoader;
-      this.className = className;
-    }
+  /**
+   * Returns the loader used by graphs {@linkplain dagger.ObjectGraph.Builder#generatedCodeOnly
+   * that use only generated code}. It is shared like {@link #shared}, and refuses to inject by
+   * reflection. Its {@link #reflectionFallbacks} are the classes it refused.
+   */
+  public static FailoverLoader sharedGeneratedOnly() {
+    return SHARED_GENERATED_ONLY;
+  }
+
+  @Override public void clearCaches() {
+    super.clearCaches();
+    loadedAdapters.clear();
+    atInjectBindings.clear();
+    registries.clear();
+  }
+
+  /**
+   * Returns the registered adapter named {@code adapterName}, or null if no registry visible to
+   * {@code classLoader} lists it. Adapters that aren't registered may still be found by name.
+   */
+  private RegisteredAdapter getRegisteredAdapter(String adapterName, ClassLoader classLoader) {
+    classLoader = (classLoader != null) ? classLoader : ClassLoader.getSystemClassLoader();
+    return registries.get(classLoader).get(adapterName);
+  }
 
-    @Override
-    public int hashCode() {
-      // It is highly unlikely for the same class name to be present in multiple class loaders. If
-      // this does happen, we'll just let those keys collide.
-      return className.hashCode();
+  /**
+   * Reads the registry indexes visible to {@code classLoader}, and indexes the adapters of each
+   * registry they list. Registries only save looking adapters up by name, so indexes that can't
+   * be read and registries that can't be loaded are skipped.
+   */
+  private Map<String, RegisteredAdapter> loadRegistries(ClassLoader classLoader) {
+    Map<String, RegisteredAdapter> result = new HashMap<String, RegisteredAdapter>();
+    for (String index : new String[] { INJECT_ADAPTER_REGISTRY_INDEX,
+        MODULE_ADAPTER_REGISTRY_INDEX }) {
+      Enumeration<URL> urls;
+      try {
+        urls = classLoader.getResources(index);
+      } catch (IOException e) {
+        continue;
+      }
+      while (urls.hasMoreElements()) {
+        for (String registryName : readIndex(urls.nextElement())) {
+          AdapterRegistry instance;
+          try {
+            instance = instantiate(registryName, classLoader);
+          } catch (RuntimeException e) {
+            continue;
+          }
+          if (instance == null) {
+            continue; // Listed by a stale index.
+          }
+          Registry registry = new Registry(instance);
+          for (int i = 0; i < instance.size(); i++) {
+            result.put(instance.adapterName(i), new RegisteredAdapter(registry, i));
+          }
+        }
+      }
     }
+    return result;
+  }
 
-    @Override
-    public boolean equals(Object object) {
-      if (object == this) {
-        return true;
+  /** Returns the class names listed by the index at {@code url}, or none if it can't be read. */
+  private static List<String> readIndex(URL url) {
+    List<String> result = new ArrayList<String>();
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+      for (String line; (line = reader.readLine()) != null; ) {
+        line = line.trim();
+        if (line.length() != 0 && !line.startsWith("#")) {
+          result.add(line);
+        }
       }
-      if (object instanceof AtInjectBindingKey) {
-        AtInjectBindingKey other = (AtInjectBindingKey) object;
-        return (classLoader == other.classLoader) && className.equals(other.className);
+    } catch (IOException e) {
+      return Collections.emptyList();
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException ignored) {
+        }
       }
-      return false;
+    }
+    return result;
+  }
+
+  /**
+   * A registry, held weakly so that it doesn't keep its class loader reachable. It is created
+   * again from its class once collected; the class stays reachable through its class loader.
+   */
+  private static final class Registry {
+    private final WeakReference<Class<? extends AdapterRegistry>> type;
+    private volatile WeakReference<AdapterRegistry> instance;
 
+    Registry(AdapterRegistry instance) {
+      this.type = new WeakReference<Class<? extends AdapterRegistry>>(instance.getClass());
+      this.instance = new WeakReference<AdapterRegistry>(instance);
+    }
+
+    AdapterRegistry get() {
+      AdapterRegistry result = instance.get();
+      if (result == null) {
+        Class<? extends AdapterRegistry> registryClass = type.get();
+        if (registryClass == null) {
+          throw new IllegalStateException("Adapter registry was unloaded");
+        }
+        try {
+          result = registryClass.newInstance();
+        } catch (InstantiationException e) {
+          throw new RuntimeException("Failed to initialize " + registryClass.getName(), e);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException("Failed to initialize " + registryClass.getName(), e);
+        }
+        instance = new WeakReference<AdapterRegistry>(result);
+      }
+      return result;
     }
   }
 
+  private static final class RegisteredAdapter {
+    private final Registry registry;
+    private final int index;
+
+    RegisteredAdapter(Registry registry, int index) {
+      this.registry = registry;
+      this.index = index;
+    }
+
+    Object newInstance() {
+      return registry.get().newAdapter(index);
+    }
+  }
+
+  /**
+   * Obtains a module adapter for {@code module} from the first responding resolver.
+   */
+  @SuppressWarnings("unchecked") // cache ensures types match
+  @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<T> type) {
+    return (ModuleAdapter<T>) loadedAdapters.get(type);
+  }
+
   private static final class AtInjectBindingInfo {
+    private final RegisteredAdapter registeredAdapter;
     private final Constructor<Binding<?>> adapterConstructor;
     private final ReflectiveAtInjectBinding.Factory<?> reflectiveBindingFactory;
 
-    AtInjectBindingInfo(Constructor<Binding<?>> adapterConstructor,
+    AtInjectBindingInfo(RegisteredAdapter registeredAdapter,
+        Constructor<Binding<?>> adapterConstructor,
         ReflectiveAtInjectBinding.Factory<?> reflectiveBindingFactory) {
+      this.registeredAdapter = registeredAdapter;
       this.adapterConstructor = adapterConstructor;
       this.reflectiveBindingFactory = reflectiveBindingFactory;
     }
@@ -109,8 +315,17 @@ public final class FailoverLoader extends Loader {
 
   @Override public Binding<?> getAtInjectBinding(
       String key, String className, ClassLoader classLoader, boolean mustHaveInjections) {
-    AtInjectBindingInfo info = atInjectBindings.get(new AtInjectBindingKey(classLoader, className));
-    if (info.adapterConstructor != null) {
+    return getAtInjectBinding(key, className, classLoader, mustHaveInjections, null);
+  }
+
+  @Override public Binding<?> getAtInjectBinding(String key, String className,
+      ClassLoader classLoader, boolean mustHaveInjections, Object requiredBy) {
+    // A null classloader is the system classloader.
+    classLoader = (classLoader != null) ? classLoader : ClassLoader.getSystemClassLoader();
+    AtInjectBindingInfo info = atInjectBindings.get(classLoader).get(className);
+    if (info.registeredAdapter != null) {
+      return (Binding<?>) info.registeredAdapter.newInstance();
+    } else if (info.adapterConstructor != null) {
       try {
         return info.adapterConstructor.newInstance();
         // Duplicated catch statements becase: android.
@@ -128,6 +343,11 @@ public final class FailoverLoader extends Loader {
             "Could not create an instance of the inject adapter for class " + className, e);
       }
     } else if (info.reflectiveBindingFactory != null) {
+      countFallback(className, key, requiredBy);
+      if (generatedOnly) {
+        throw new InvalidBindingException(className, "has no generated inject adapter. "
+            + "Please ensure that code generation was run for this class.");
+      }
       return info.reflectiveBindingFactory.create(mustHaveInjections);
     } else {
       return null;
@@ -135,14 +355,19 @@ public final class FailoverLoader extends Loader {
   }
 
   private AtInjectBindingInfo getAtInjectBindingInfo(ClassLoader classLoader, String className) {
-    Class<?> adapterClass = loadClass(classLoader, className.concat(INJECT_ADAPTER_SUFFIX));
+    String adapterName = className.concat(INJECT_ADAPTER_SUFFIX);
+    RegisteredAdapter registered = getRegisteredAdapter(adapterName, classLoader);
+    if (registered != null) {
+      return new AtInjectBindingInfo(registered, null, null);
+    }
+    Class<?> adapterClass = loadClass(classLoader, adapterName);
     if (!adapterClass.equals(Void.class)) {
       // Found loadable adapter, using it.
       try {
         @SuppressWarnings("unchecked")
         Constructor<Binding<?>> constructor
             = (Constructor<Binding<?>>) adapterClass.getConstructor();
-        return new AtInjectBindingInfo(constructor, null);
+        return new AtInjectBindingInfo(null, constructor, null);
       } catch (NoSuchMethodException e) {
         throw new IllegalStateException(
             "Couldn't find default constructor in the generated inject adapter for class "
@@ -155,19 +380,94 @@ public final class FailoverLoader extends Loader {
     }
     if (type.isInterface()) {
       // Short-circuit since we can't build reflective bindings for interfaces.
-      return new AtInjectBindingInfo(null, null);
+      return new AtInjectBindingInfo(null, null, null);
     }
     ReflectiveAtInjectBinding.Factory<?> reflectiveBindingFactory
         = ReflectiveAtInjectBinding.createFactory(type);
-    return new AtInjectBindingInfo(null, reflectiveBindingFactory);
+    return new AtInjectBindingInfo(null, null, reflectiveBindingFactory);
   }
 
   @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
-    StaticInjection result = instantiate(
-          injectedClass.getName().concat(STATIC_INJECTION_SUFFIX), injectedClass.getClassLoader());
+    String adapterName = injectedClass.getName().concat(STATIC_INJECTION_SUFFIX);
+    RegisteredAdapter registered =
+        getRegisteredAdapter(adapterName, injectedClass.getClassLoader());
+    if (registered != null) {
+      return (StaticInjection) registered.newInstance();
+    }
+    StaticInjection result = instantiate(adapterName, injectedClass.getClassLoader());
     if (result != null) {
       return result;
     }
+    countFallback(injectedClass.getName(), null, null);
+    if (generatedOnly) {
+      throw new IllegalStateException("Static injection for " + injectedClass + " could not be "
+          + "loaded. Please ensure that code generation was run for this class.");
+    }
     return ReflectiveStaticInjection.create(injectedClass);
   }
+
+  /**
+   * Returns the classes this loader has injected by reflection, or that it refused to inject
+   * because it uses generated code only, by class name.
+   */
+  public Map<String, Fallback> reflectionFallbacks() {
+    Map<String, Fallback> result = new LinkedHashMap<String, Fallback>();
+    for (FallbackCounter counter : fallbacks.values()) {
+      result.put(counter.className, new Fallback(
+          counter.className, counter.key, counter.requiredBy, counter.count.get()));
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  private void countFallback(String className, String key, Object requiredBy) {
+    FallbackCounter counter = fallbacks.get(className);
+    if (counter == null) {
+      FallbackCounter created = new FallbackCounter(
+          className, key, requiredBy != null ? requiredBy.toString() : null);
+      counter = fallbacks.putIfAbsent(className, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    counter.count.incrementAndGet();
+  }
+
+  private static final class FallbackCounter {
+    final String className;
+    final String key;
+    final String requiredBy;
+    final AtomicInteger count = new AtomicInteger();
+
+    FallbackCounter(String className, String key, String requiredBy) {
+      this.className = className;
+      this.key = key;
+      this.requiredBy = requiredBy;
+    }
+  }
+
+  /** A class injected by reflection because no generated adapter was found for it. */
+  public static final class Fallback {
+    /** The name of the class injected by reflection. */
+    public final String className;
+
+    /** The key of the first reflective binding of the class, or null for static injections. */
+    public final String key;
+
+    /** What required the first reflective binding of the class, or null if unknown. */
+    public final String requiredBy;
+
+    /** How many reflective bindings and static injections were made for the class. */
+    public final int count;
+
+    Fallback(String className, String key, String requiredBy, int count) {
+      this.className = className;
+      this.key = key;
+      this.requiredBy = requiredBy;
+      this.count = count;
+    }
+
+    @Override public String toString() {
+      return className + " x" + count + " (" + key + " required by " + requiredBy + ")";
+    }
+  }
 }
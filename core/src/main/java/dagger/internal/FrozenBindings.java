@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A compact binding table for a fully linked graph. Bindings are stored in two parallel arrays
+ * indexed by open addressing on the interned key, so lookups compare keys by identity and the
+ * table has no per-entry objects. Bindings added after freezing, such as JIT bindings requested
+ * later, are kept in a separate map that is only allocated if needed.
+ */
+final class FrozenBindings extends AbstractMap<BindingKey, Binding<?>>
+    implements ConcurrentMap<BindingKey, Binding<?>> {
+  private final BindingKey[] keys;
+  private final Binding<?>[] values;
+  private final int mask;
+  private final int frozenSize;
+  private final AtomicInteger additions;
+  private volatile ConcurrentHashMap<BindingKey, Binding<?>> added;
+
+  /**
+   * @param bindings the bindings to freeze. Other threads may still be adding to it; the table
+   *     holds the bindings seen while copying it, and the caller adds any others afterwards.
+   * @param additions incremented whenever a binding is added after freezing, or null.
+   */
+  FrozenBindings(Map<BindingKey, Binding<?>> bindings, AtomicInteger additions) {
+    // Copy the bindings first, so the table is sized for exactly the bindings it will hold.
+    ArrayList<Map.Entry<BindingKey, Binding<?>>> snapshot =
+        new ArrayList<Map.Entry<BindingKey, Binding<?>>>(bindings.size());
+    for (Map.Entry<BindingKey, Binding<?>> entry : bindings.entrySet()) {
+      snapshot.add(entry);
+    }
+    int size = snapshot.size();
+    int capacity = 2;
+    while (capacity < size * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new BindingKey[capacity];
+    this.values = new Binding<?>[capacity];
+    this.mask = capacity - 1;
+    for (int j = 0; j < size; j++) {
+      Map.Entry<BindingKey, Binding<?>> entry = snapshot.get(j);
+      int i = indexOf(entry.getKey());
+      keys[i] = entry.getKey();
+      values[i] = entry.getValue();
+    }
+    this.frozenSize = size;
+    this.additions = additions;
+  }
+
+  /** Returns the slot holding {@code key}, or the empty slot where it would be. */
+  private int indexOf(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    int i = h & mask;
+    while (keys[i] != null && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  @Override public Binding<?> get(Object key) {
+    if (key == null) {
+      return null;
+    }
+    Binding<?> result = values[indexOf(key)];
+    if (result != null) {
+      return result;
+    }
+    ConcurrentHashMap<BindingKey, Binding<?>> added = this.added;
+    return added != null ? added.get(key) : null;
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override public int size() {
+    ConcurrentHashMap<BindingKey, Binding<?>> added = this.added;
+    return frozenSize + (added != null ? added.size() : 0);
+  }
+
+  @Override public Binding<?> putIfAbsent(BindingKey key, Binding<?> value) {
+    Binding<?> existing = values[indexOf(key)];
+    if (existing != null) {
+      return existing;
+    }
+    Binding<?> result = added().putIfAbsent(key, value);
+    if (result == null) {
+      countAddition();
+    }
+    return result;
+  }
+
+  @Override public Binding<?> put(BindingKey key, Binding<?> value) {
+    if (values[indexOf(key)] != null) {
+      throw new UnsupportedOperationException("Frozen bindings cannot be replaced: " + key);
+    }
+    Binding<?> result = added().put(key, value);
+    countAddition();
+    return result;
+  }
+
+  private void countAddition() {
+    if (additions != null) {
+      additions.incrementAndGet();
+    }
+  }
+
+  private ConcurrentHashMap<BindingKey, Binding<?>> added() {
+    ConcurrentHashMap<BindingKey, Binding<?>> result = added;
+    if (result == null) {
+      synchronized (this) {
+        result = added;
+        if (result == null) {
+          added = result = new ConcurrentHashMap<BindingKey, Binding<?>>(4);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override public boolean remove(Object key, Object value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override public boolean replace(BindingKey key, Binding<?> oldValue, Binding<?> newValue) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override public Binding<?> replace(BindingKey key, Binding<?> value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override public Set<Map.Entry<BindingKey, Binding<?>>> entrySet() {
+    return new AbstractSet<Map.Entry<BindingKey, Binding<?>>>() {
+      @Override public Iterator<Map.Entry<BindingKey, Binding<?>>> iterator() {
+        return new FrozenIterator();
+      }
+
+      @Override public int size() {
+        return FrozenBindings.this.size();
+      }
+    };
+  }
+
+  /** Iterates the frozen slots, then any bindings added since. */
+  private final class FrozenIterator implements Iterator<Map.Entry<BindingKey, Binding<?>>> {
+    private int next = advance(0);
+    private Iterator<Map.Entry<BindingKey, Binding<?>>> addedIterator;
+
+    private int advance(int from) {
+      while (from < keys.length && keys[from] == null) {
+        from++;
+      }
+      return from;
+    }
+
+    @Override public boolean hasNext() {
+      if (next < keys.length) {
+        return true;
+      }
+      if (addedIterator == null) {
+        ConcurrentHashMap<BindingKey, Binding<?>> added = FrozenBindings.this.added;
+        if (added == null) {
+          return false;
+        }
+        addedIterator = added.entrySet().iterator();
+      }
+      return addedIterator.hasNext();
+    }
+
+    @Override public Map.Entry<BindingKey, Binding<?>> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (addedIterator != null) {
+        return addedIterator.next();
+      }
+      final int i = next;
+      next = advance(i + 1);
+      return new Map.Entry<BindingKey, Binding<?>>() {
+        @Override public BindingKey getKey() {
+          return keys[i];
+        }
+
+        @Override public Binding<?> getValue() {
+          return values[i];
+        }
+
+        @Override public Binding<?> setValue(Binding<?> value) {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -22,6 +22,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Map;
 import java.util.Set;
 import javax.inject.Provider;
 import javax.inject.Qualifier;
@@ -45,9 +46,12 @@ public final class Keys {
       MembersInjector.class.getCanonicalName() + "<";
   private static final String LAZY_PREFIX = Lazy.class.getCanonicalName() + "<";
   private static final String SET_PREFIX = Set.class.getCanonicalName() + "<";
+  private static final String MAP_PREFIX = Map.class.getCanonicalName() + "<";
+  private static final String MAP_ENTRIES_PREFIX =
+      SET_PREFIX + Map.Entry.class.getName() + "<" + String.class.getName() + ", ";
 
   private static final Memoizer<Class<? extends Annotation>, Boolean> IS_QUALIFIER_ANNOTATION =
-      new Memoizer<Class<? extends Annotation>, Boolean>() {
+      new Memoizer<Class<? extends Annotation>, Boolean>(Integer.MAX_VALUE, true) {
         @Override protected Boolean create(Class<? extends Annotation> annotationType) {
           return annotationType.isAnnotationPresent(Qualifier.class);
         }
@@ -101,6 +105,26 @@ public final class Keys {
     return result.toString();
   }
 
+  /**
+   * Returns the key of the set of entries backing the {@code Map<String, V>} that a
+   * {@code @Provides(type = MAP)} method returning {@code type} contributes to, reporting
+   * failures against {@code subject}.
+   *
+   * @param annotations the annotations on a single method.
+   */
+  public static String getMapEntriesKey(Type type, Annotation[] annotations, Object subject) {
+    Annotation qualifier = extractQualifier(annotations, subject);
+    type = boxIfPrimitive(type);
+    StringBuilder result = new StringBuilder();
+    if (qualifier != null) {
+      result.append(qualifier).append("/");
+    }
+    result.append(MAP_ENTRIES_PREFIX).append(PROVIDER_PREFIX);
+    typeToString(type, result, true);
+    result.append(">>>");
+    return result.toString();
+  }
+
   /**
    * Returns a key for {@code type} annotated with {@code annotations},
    * reporting failures against {@code subject}.
@@ -202,6 +226,74 @@ public final class Keys {
     }
   }
 
+  /**
+   * Returns a key for the set binding whose contributors back a {@code Set<Provider<T>>}. For
+   * example, if this is a key for a {@code Set<Provider<Foo>>}, this returns the key for
+   * {@code Set<Foo>}. This retains annotations.
+   */
+  static String getProviderSetKey(String key) {
+    int start = startOfType(key);
+    if (substringStartsWith(key, start, SET_PREFIX + PROVIDER_PREFIX) && key.endsWith(">>")) {
+      int elementStart = start + SET_PREFIX.length() + PROVIDER_PREFIX.length();
+      return key.substring(0, start) + SET_PREFIX
+          + key.substring(elementStart, key.length() - 2) + ">";
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a key for the map of providers backing a {@code Map<K, V>}. For example, if this
+   * is a key for a {@code Map<String, Foo>}, this returns the key for
+   * {@code Map<String, Provider<Foo>>}. This retains annotations.
+   */
+  static String getMapOfProvidersKey(String key) {
+    int start = startOfType(key);
+    int valueStart = mapValueStart(key, start);
+    if (valueStart == -1 || substringStartsWith(key, valueStart, PROVIDER_PREFIX)) {
+      return null;
+    }
+    return key.substring(0, valueStart) + PROVIDER_PREFIX
+        + key.substring(valueStart, key.length() - 1) + ">>";
+  }
+
+  /**
+   * Returns a key for the set of entries backing a {@code Map<K, Provider<V>>}. For example, if
+   * this is a key for a {@code Map<String, Provider<Foo>>}, this returns the key for
+   * {@code Set<Map.Entry<String, Provider<Foo>>>}. This retains annotations.
+   */
+  static String getMapEntriesKey(String key) {
+    int start = startOfType(key);
+    int valueStart = mapValueStart(key, start);
+    if (valueStart == -1 || !substringStartsWith(key, valueStart, PROVIDER_PREFIX)) {
+      return null;
+    }
+    return key.substring(0, start) + SET_PREFIX + Map.Entry.class.getName() + "<"
+        + key.substring(start + MAP_PREFIX.length()) + ">";
+  }
+
+  /**
+   * Returns the index of the value type argument of the {@code Map} type starting at
+   * {@code start}, or -1 if it is not a {@code Map}.
+   */
+  private static int mapValueStart(String key, int start) {
+    if (!substringStartsWith(key, start, MAP_PREFIX)) {
+      return -1;
+    }
+    int depth = 0;
+    for (int i = start + MAP_PREFIX.length(); i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c == '<') {
+        depth++;
+      } else if (c == '>') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        return i + 2; // Skip ", ".
+      }
+    }
+    return -1;
+  }
+
   /**
    * Returns the start of a key if it is a plain key, and the start of the
    * underlying key if it is an annotated key
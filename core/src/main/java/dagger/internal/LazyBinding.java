@@ -17,6 +17,7 @@
 package dagger.internal;
 
 import dagger.Lazy;
+import java.util.Set;
 
 /**
  * Injects a Lazy wrapper for a type T
@@ -25,11 +26,12 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
 
   private final static Object NOT_PRESENT = new Object();
 
-  private final String lazyKey;
+  private final BindingKey lazyKey;
   private final ClassLoader loader;
   private Binding<T> delegate;
+  private boolean locks;
 
-  public LazyBinding(String key, Object requiredBy, ClassLoader loader, String lazyKey) {
+  public LazyBinding(String key, Object requiredBy, ClassLoader loader, BindingKey lazyKey) {
     super(key, null, false, requiredBy);
     this.loader = loader;
     this.lazyKey = lazyKey;
@@ -39,6 +41,7 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
   @Override
   public void attach(Linker linker) {
     delegate = (Binding<T>) linker.requestBinding(lazyKey, requiredBy, loader);
+    locks = linker.scoping().locks;
   }
 
   @Override public void injectMembers(Lazy<T> t) {
@@ -47,6 +50,9 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
 
   @Override
   public Lazy<T> get() {
+    if (locks) {
+      return new LockingLazy<T>(delegate, true);
+    }
     // TODO(gak): Use DoubleCheckLazy
     return new Lazy<T>() {
       private volatile Object cacheValue = NOT_PRESENT;
@@ -68,4 +74,10 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
 
   // public void getDependencies() not overridden.
   // We don't add 'delegate' because it isn't actually used by get() or injectMembers().
+
+  @Override void getLinkedDependencies(Set<Binding<?>> linkedBindings) {
+    if (delegate != null) {
+      linkedBindings.add(delegate);
+    }
+  }
 }
@@ -15,17 +15,40 @@
  */
 package dagger.internal;
 
+import dagger.PerThread;
+import dagger.Reusable;
+import dagger.ScopeContext;
 import dagger.internal.Binding.InvalidBindingException;
+import java.lang.annotation.Annotation;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Links bindings to their dependencies.
+ *
+ * <p>A serial linker requires callers to hold its monitor while requesting and linking bindings.
+ * A concurrent linker needs no external locking: each thread links the bindings it requested
+ * in its own {@link LinkSession}, and a binding is attached by whichever thread claims it first.
+ * Threads that need a binding claimed by another thread wait for that thread to attach it, so
+ * every binding is still linked exactly once.
  */
 public final class Linker {
   private static final Object UNINITIALIZED = new Object();
@@ -37,17 +60,33 @@ public final class Linker {
    */
   private final Linker base;
 
-  /** Bindings requiring a call to attach(). May contain deferred bindings. */
-  private final Queue<Binding<?>> toLink = new ArrayQueue<Binding<?>>();
+  /** True if this linker may be used by multiple threads without holding its monitor. */
+  private final boolean concurrent;
+
+  /**
+   * Linking work of a serial linker, guarded by this linker's monitor. Created when needed, and
+   * dropped once the linker is fully linked.
+   */
+  private LinkSession serialSession;
 
-  /** True unless calls to requestBinding() were unable to satisfy the binding. */
-  private boolean attachSuccess = true;
+  /** Linking work of a concurrent linker, confined to the thread doing it. */
+  private final ThreadLocal<LinkSession> sessions;
 
-  /** All errors encountered during injection. */
-  private final List<String> errors = new ArrayList<String>();
+  /** Bindings being attached by a session of a concurrent linker, and who is attaching them. */
+  private final ConcurrentMap<Binding<?>, LinkClaim> claims;
+
+  /**
+   * All of the object graph's bindings. This may contain unlinked bindings. This is a
+   * {@link ConcurrentMap} for concurrent linkers, and is replaced by {@link FrozenBindings}
+   * once the linker is fully linked.
+   */
+  private volatile Map<BindingKey, Binding<?>> bindings;
 
-  /** All of the object graph's bindings. This may contain unlinked bindings. */
-  private final Map<String, Binding<?>> bindings = new HashMap<String, Binding<?>>();
+  /**
+   * Installed {@code @Provides} bindings that haven't been created yet, or null if there are
+   * none. Each is created and moved to {@link #bindings} when it is first requested.
+   */
+  private volatile ConcurrentHashMap<BindingKey, PendingProvidesBinding> pending;
 
   /**
    * An unmodifiable map containing all of the bindings available in this linker, fully linked.
@@ -57,17 +96,83 @@ public final class Linker {
    */
   private volatile Map<String, Binding<?>> linkedBindings = null;
 
+  /**
+   * Counts the bindings added to this linker's table after it was frozen, so that descendants
+   * can tell whether it changed since their bindings were flattened.
+   */
+  private final AtomicInteger frozenAdditions = new AtomicInteger();
+
+  /**
+   * This linker's linked bindings together with those of all of its ancestors, so that child
+   * linkers can find an inherited binding with one lookup however deep they are. Built when a
+   * child first needs it, once this linker is fully linked.
+   */
+  private volatile InheritedBindings inherited;
+
+  /**
+   * Just-in-time bindings that child linkers linked using only bindings inherited from this
+   * linker and its ancestors, so that other children can use them instead of linking their own.
+   * Unlike {@link #bindings}, this linker doesn't use them itself. Created when needed.
+   */
+  private volatile ConcurrentHashMap<BindingKey, Binding<?>> shared;
+
   private final Loader plugin;
 
   private final ErrorHandler errorHandler;
 
+  private final Scoping scoping;
+
   public Linker(Linker base, Loader plugin, ErrorHandler errorHandler) {
+    this(base, plugin, errorHandler, false);
+  }
+
+  /**
+   * @param concurrent true to permit requesting and linking bindings from multiple threads at
+   *     once without holding this linker's monitor. The {@code errorHandler} of a concurrent
+   *     linker must be thread safe.
+   */
+  public Linker(Linker base, Loader plugin, ErrorHandler errorHandler, boolean concurrent) {
+    this(base, plugin, errorHandler, concurrent,
+        (base != null) ? base.scoping : Scoping.DEFAULT);
+  }
+
+  /**
+   * @param concurrent true to permit requesting and linking bindings from multiple threads at
+   *     once without holding this linker's monitor. The {@code errorHandler} of a concurrent
+   *     linker must be thread safe.
+   * @param scoping how this linker scopes its bindings. Linkers extending this one without
+   *     selecting a scoping use the same.
+   */
+  public Linker(Linker base, Loader plugin, ErrorHandler errorHandler, boolean concurrent,
+      Scoping scoping) {
     if (plugin == null) throw new NullPointerException("plugin");
     if (errorHandler == null) throw new NullPointerException("errorHandler");
+    if (scoping == null) throw new NullPointerException("scoping");
 
     this.base = base;
     this.plugin = plugin;
     this.errorHandler = errorHandler;
+    this.concurrent = concurrent;
+    this.scoping = scoping;
+    if (concurrent) {
+      this.bindings = new ConcurrentHashMap<BindingKey, Binding<?>>();
+      this.claims = new ConcurrentHashMap<Binding<?>, LinkClaim>();
+      this.sessions = new ThreadLocal<LinkSession>();
+    } else {
+      this.bindings = new HashMap<BindingKey, Binding<?>>();
+      this.claims = null;
+      this.sessions = null;
+    }
+  }
+
+  /** Returns how this linker scopes its bindings. */
+  public Scoping scoping() {
+    return scoping;
+  }
+
+  /** Returns true if this linker can be used without holding its monitor. */
+  public boolean isConcurrent() {
+    return concurrent;
   }
 
   /**
@@ -83,7 +188,20 @@ public final class Linker {
       throw new IllegalStateException("Cannot install further bindings after calling linkAll().");
     }
     for (Map.Entry<String, ? extends Binding<?>> entry : toInstall.entrySet()) {
-      bindings.put(entry.getKey(), scope(entry.getValue()));
+      BindingKey key = BindingKey.get(entry.getKey());
+      Binding<?> binding = entry.getValue();
+      if (binding instanceof PendingProvidesBinding) {
+        bindings.remove(key);
+        if (pending == null) {
+          pending = new ConcurrentHashMap<BindingKey, PendingProvidesBinding>();
+        }
+        pending.put(key, (PendingProvidesBinding) binding);
+      } else {
+        if (pending != null) {
+          pending.remove(key);
+        }
+        bindings.put(key, scope(binding, scoping));
+      }
     }
   }
 
@@ -93,24 +211,64 @@ public final class Linker {
    * the gaps.  If this method has returned successfully at least once, all further
    * work is short-circuited.
    *
-   * @throws AssertionError if this method is not called within a synchronized block which
-   *     holds this {@link Linker} as the lock object.
+   * @throws AssertionError if this is a serial linker and this method is not called within a
+   *     synchronized block which holds this {@link Linker} as the lock object.
    */
   public Map<String, Binding<?>> linkAll() {
+    return linkAll(true);
+  }
+
+  /**
+   * Like {@link #linkAll()}, but {@code @Provides} bindings that haven't been requested yet are
+   * only created and linked if {@code includePending} is true. Otherwise they are left to be
+   * created when they are first requested, by this linker or by its children.
+   */
+  public Map<String, Binding<?>> linkAll(boolean includePending) {
     assertLockHeld();
+    Map<BindingKey, PendingProvidesBinding> toCreate = includePending ? pending : null;
+    if (linkedBindings != null && (toCreate == null || toCreate.isEmpty())) {
+      return linkedBindings;
+    }
+    LinkSession session = session();
+    if (toCreate != null) {
+      for (BindingKey key : toCreate.keySet()) {
+        Binding<?> binding = createPending(key);
+        if (binding != null && !binding.isLinked()) {
+          session.toLink.add(binding);
+        }
+      }
+    }
     if (linkedBindings != null) {
+      linkRequested();
       return linkedBindings;
     }
     for (Binding<?> binding : bindings.values()) {
       if (!binding.isLinked()) {
-        toLink.add(binding);
+        session.toLink.add(binding);
       }
     }
     linkRequested(); // This method throws if bindings are not resolvable/linkable.
-    linkedBindings = Collections.unmodifiableMap(bindings);
+    freeze();
+    linkedBindings = new NamedBindings(bindings);
     return linkedBindings;
   }
 
+  /**
+   * Compacts the fully linked bindings into a read-only table, and drops state that is only
+   * needed while linking. Bindings can still be added afterwards, for example by JIT bindings
+   * requested later, but they are stored separately.
+   */
+  private void freeze() {
+    Map<BindingKey, Binding<?>> linking = bindings;
+    FrozenBindings frozen = new FrozenBindings(linking, frozenAdditions);
+    bindings = frozen;
+    // Keep bindings that other threads added while the table was being copied.
+    for (Map.Entry<BindingKey, Binding<?>> entry : linking.entrySet()) {
+      frozen.putIfAbsent(entry.getKey(), entry.getValue());
+    }
+    serialSession = null;
+  }
+
   /**
    * Returns the map of all bindings available to this {@link Linker}, if and only if
    * {@link #linkAll()} has successfully returned at least once, otherwise it returns null;
@@ -120,68 +278,92 @@ public final class Linker {
   }
 
   /**
-   * Links all requested bindings plus their transitive dependencies. This
-   * creates JIT bindings as necessary to fill in the gaps.
+   * Releases, on every thread, the instances of this linker's bindings annotated with {@link
+   * PerThread}. Later requests create new instances.
+   */
+  public void releasePerThreadInstances() {
+    for (Binding<?> binding : bindings.values()) {
+      if (binding instanceof ThreadConfinedBinding) {
+        ((ThreadConfinedBinding<?>) binding).release();
+      }
+    }
+  }
+
+  /**
+   * Returns a fully linked linker with the same base as this linker, holding the just-in-time
+   * bindings of this linker that any linker installing bindings for {@code installedKeys} would
+   * link the same way. These are the bindings that aren't scoped and that don't depend on an
+   * installed binding or a scoped binding of this linker, directly or transitively. Linkers that
+   * extend the returned linker don't need to link those bindings again.
    *
-   * @throws AssertionError if this method is not called within a synchronized block which
-   *     holds this {@link Linker} as the lock object.
+   * @throws IllegalStateException if {@link #linkAll()} hasn't returned yet.
    */
-  public void linkRequested() {
-    assertLockHeld();
-    Binding<?> binding;
-    while ((binding = toLink.poll()) != null) {
-      if (binding instanceof DeferredBinding) {
-        DeferredBinding deferred = (DeferredBinding) binding;
-        String key = deferred.deferredKey;
-        boolean mustHaveInjections = deferred.mustHaveInjections;
-        if (bindings.containsKey(key)) {
-          continue; // A binding for this key has since been linked.
-        }
-        try {
-          Binding<?> resolvedBinding =
-              createBinding(key, binding.requiredBy, deferred.classLoader, mustHaveInjections);
-          resolvedBinding.setLibrary(binding.library());
-          resolvedBinding.setDependedOn(binding.dependedOn());
-          // Fail if the type of binding we got wasn't capable of what was requested.
-          if (!key.equals(resolvedBinding.provideKey) && !key.equals(resolvedBinding.membersKey)) {
-            throw new IllegalStateException("Unable to create binding for " + key);
+  public Linker newSharedLinker(Set<String> installedKeys) {
+    if (linkedBindings == null) {
+      throw new IllegalStateException("Cannot share bindings before calling linkAll().");
+    }
+    Map<Binding<?>, BindingKey> own = new IdentityHashMap<Binding<?>, BindingKey>();
+    Map<Binding<?>, BindingKey> sharable = new IdentityHashMap<Binding<?>, BindingKey>();
+    for (Map.Entry<BindingKey, Binding<?>> entry : bindings.entrySet()) {
+      Binding<?> binding = entry.getValue();
+      own.put(binding, entry.getKey());
+      if (!installedKeys.contains(entry.getKey().name) && !holdsInstances(binding)
+          && binding.isLinked()) {
+        sharable.put(binding, entry.getKey());
+      }
+    }
+
+    // Unshare bindings that depend on unshared bindings of this linker until none are left.
+    Set<Binding<?>> dependencies = new HashSet<Binding<?>>();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Iterator<Binding<?>> i = sharable.keySet().iterator(); i.hasNext(); ) {
+        dependencies.clear();
+        i.next().getLinkedDependencies(dependencies);
+        for (Binding<?> dependency : dependencies) {
+          if (dependency != null && own.containsKey(dependency)
+              && !sharable.containsKey(dependency)) {
+            i.remove();
+            changed = true;
+            break;
           }
-          // Enqueue the JIT binding so its own dependencies can be linked.
-          Binding<?> scopedBinding = scope(resolvedBinding);
-          toLink.add(scopedBinding);
-          putBinding(scopedBinding);
-        } catch (InvalidBindingException e) {
-          addError(e.type + " " + e.getMessage() + " required by " + binding.requiredBy);
-          bindings.put(key, Binding.UNRESOLVED);
-        } catch (UnsupportedOperationException e) {
-          addError("Unsupported: " + e.getMessage() + " required by " + binding.requiredBy);
-          bindings.put(key, Binding.UNRESOLVED);
-        } catch (IllegalArgumentException e) {
-          addError(e.getMessage() + " required by " + binding.requiredBy);
-          bindings.put(key, Binding.UNRESOLVED);
-        } catch (RuntimeException e) {
-          throw e;
-        } catch (Exception e) {
-          throw new RuntimeException(e);
-        }
-      } else {
-        // Attempt to attach the binding to its dependencies. If any dependency
-        // is not available, the attach will fail. We'll enqueue creation of
-        // that dependency and retry the attachment later.
-        attachSuccess = true;
-        binding.attach(this);
-        if (attachSuccess) {
-          binding.setLinked();
-        } else {
-          toLink.add(binding);
         }
       }
     }
 
+    Linker result = new Linker(base, plugin, errorHandler, concurrent, scoping);
+    for (Map.Entry<Binding<?>, BindingKey> entry : sharable.entrySet()) {
+      result.bindings.put(entry.getValue(), entry.getKey());
+    }
+    synchronized (result) {
+      result.linkAll();
+    }
+    return result;
+  }
+
+  /**
+   * Links all requested bindings plus their transitive dependencies. This
+   * creates JIT bindings as necessary to fill in the gaps. Concurrent linkers
+   * link the bindings requested by the calling thread, waiting for any that
+   * other threads are already linking.
+   *
+   * @throws AssertionError if this is a serial linker and this method is not called within a
+   *     synchronized block which holds this {@link Linker} as the lock object.
+   */
+  public void linkRequested() {
+    assertLockHeld();
+    LinkSession session = concurrent ? sessions.get() : serialSession;
+    if (session == null) {
+      return; // This thread hasn't requested anything.
+    }
     try {
-      errorHandler.handleErrors(errors);
+      session.link();
     } finally {
-      errors.clear();
+      if (concurrent) {
+        sessions.remove();
+        session.releaseClaims();
+      }
     }
   }
 
@@ -191,7 +373,23 @@ public final class Linker {
    * the linked bindings, and then release the lock.
    */
   private void assertLockHeld() {
-    if (!Thread.holdsLock(this)) throw new AssertionError();
+    if (!concurrent && !Thread.holdsLock(this)) throw new AssertionError();
+  }
+
+  /** Returns the calling thread's linking work, creating it if necessary. */
+  private LinkSession session() {
+    if (!concurrent) {
+      if (serialSession == null) {
+        serialSession = new LinkSession();
+      }
+      return serialSession;
+    }
+    LinkSession session = sessions.get();
+    if (session == null) {
+      session = new LinkSession();
+      sessions.set(session);
+    }
+    return session;
   }
 
   /**
@@ -201,32 +399,43 @@ public final class Linker {
    *   <li>Injections of {@code Provider<Foo>}, {@code MembersInjector<Bar>}, and
    *       {@code Lazy<Blah>} will delegate to the bindings of {@code Foo}, {@code Bar}, and
    *       {@code Blah} respectively.
+   *   <li>Injections of {@code Set<Provider<Foo>>} will delegate to the contributors of the
+   *       set binding of {@code Set<Foo>}.
+   *   <li>Injections of {@code Map<String, Foo>} and {@code Map<String, Provider<Foo>>} will
+   *       delegate to the entries contributed by {@code @Provides(type = MAP)} methods.
    *   <li>Injections of raw types will use the injectable constructors of those classes.
    *   <li>Any other injection types require @Provides bindings and will error out.
    * </ul>
    */
-  private Binding<?> createBinding(String key, Object requiredBy, ClassLoader classLoader,
+  private Binding<?> createBinding(BindingKey key, Object requiredBy, ClassLoader classLoader,
       boolean mustHaveInjections) {
-    String builtInBindingsKey = Keys.getBuiltInBindingsKey(key);
-    if (builtInBindingsKey != null) {
-      return new BuiltInBinding<Object>(key, requiredBy, classLoader, builtInBindingsKey);
-    }
-    String lazyKey = Keys.getLazyKey(key);
-    if (lazyKey != null) {
-      return new LazyBinding<Object>(key, requiredBy, classLoader, lazyKey);
+    switch (key.kind) {
+      case PROVIDER:
+      case MEMBERS_INJECTOR:
+        return new BuiltInBinding<Object>(key.name, requiredBy, classLoader, key.delegate);
+      case LAZY:
+        return new LazyBinding<Object>(key.name, requiredBy, classLoader, key.delegate);
+      case PROVIDER_SET:
+        return new ProviderSetBinding<Object>(key.name, requiredBy, classLoader, key.delegate);
+      case MAP:
+        return new MapBinding<Object, Object>(key.name, requiredBy, classLoader, key.delegate);
+      case PROVIDER_MAP:
+        return new ProviderMapBinding<Object, Object>(
+            key.name, requiredBy, classLoader, key.delegate);
+      default:
+        break;
     }
 
-    String className = Keys.getClassName(key);
-    if (className == null || Keys.isAnnotated(key)) {
+    if (key.className == null || key.qualifier != null) {
       // Cannot jit-bind annotated keys or generic types.
-      throw new IllegalArgumentException(key);
+      throw new IllegalArgumentException(key.name);
     }
-    Binding<?> binding =
-        plugin.getAtInjectBinding(key, className, classLoader, mustHaveInjections);
+    Binding<?> binding = plugin.getAtInjectBinding(
+        key.name, key.className, classLoader, mustHaveInjections, requiredBy);
     if (binding != null) {
       return binding;
     }
-    throw new InvalidBindingException(className, "could not be bound with key " + key);
+    throw new InvalidBindingException(key.className, "could not be bound with key " + key);
   }
 
   /** @deprecated Older, generated code still using this should be re-generated. */
@@ -266,30 +475,27 @@ public final class Linker {
    */
   public Binding<?> requestBinding(String key, Object requiredBy, ClassLoader classLoader,
       boolean mustHaveInjections, boolean library) {
-    assertLockHeld();
+    return requestBinding(BindingKey.get(key), requiredBy, classLoader, mustHaveInjections,
+        library);
+  }
 
-    Binding<?> binding = null;
-    for (Linker linker = this; linker != null; linker = linker.base) {
-      binding = linker.bindings.get(key);
-      if (binding != null) {
-        if (linker != this && !binding.isLinked()) throw new AssertionError();
-        break;
-      }
-    }
+  /** Like {@link #requestBinding(String, Object, ClassLoader)}, for an already parsed key. */
+  Binding<?> requestBinding(BindingKey key, Object requiredBy, ClassLoader classLoader) {
+    return requestBinding(key, requiredBy, classLoader, true, true);
+  }
+
+  private Binding<?> requestBinding(BindingKey key, Object requiredBy, ClassLoader classLoader,
+      boolean mustHaveInjections, boolean library) {
+    assertLockHeld();
 
+    Binding<?> binding = findBinding(key);
     if (binding == null) {
-      // We can't satisfy this binding. Make sure it'll work next time!
-      Binding<?> deferredBinding =
-          new DeferredBinding(key, classLoader, requiredBy, mustHaveInjections);
-      deferredBinding.setLibrary(library);
-      deferredBinding.setDependedOn(true);
-      toLink.add(deferredBinding);
-      attachSuccess = false;
-      return null;
+      // We can't satisfy this binding yet. Create it now, or make sure it'll work next time!
+      return session().missing(key, classLoader, requiredBy, mustHaveInjections, library);
     }
 
     if (!binding.isLinked()) {
-      toLink.add(binding); // This binding was never linked; link it now!
+      session().toLink.add(binding); // This binding was never linked; link it now!
     }
 
     binding.setLibrary(library);
@@ -297,54 +503,650 @@ public final class Linker {
     return binding;
   }
 
+  /**
+   * Returns the binding for {@code key} from this linker, or the linked binding from the
+   * nearest ancestor that has one. Returns null if there is no such binding.
+   */
+  Binding<?> findBinding(BindingKey key) {
+    Binding<?> binding = ownBinding(key);
+    if (binding != null || base == null || viewsOwnSet(key)) {
+      return binding;
+    }
+    binding = base.findInherited(key);
+    if (binding == null) {
+      return adoptShared(key);
+    }
+    if (!binding.isLinked()) {
+      // A concurrent base linker may still be linking this binding. Link our own.
+      if (!concurrent) throw new AssertionError();
+      return null;
+    }
+    return binding;
+  }
+
+  /**
+   * Returns true if {@code key} is a view, like {@code Set<Provider<Foo>>}, of a set binding
+   * that this linker has its own contributions to. An ancestor's view would miss them.
+   */
+  private boolean viewsOwnSet(BindingKey key) {
+    for (; isSetView(key.kind); key = key.delegate) {
+      if (bindings.get(key.delegate) != null
+          || (pending != null && pending.containsKey(key.delegate))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isSetView(BindingKey.Kind kind) {
+    return kind == BindingKey.Kind.PROVIDER_SET
+        || kind == BindingKey.Kind.MAP
+        || kind == BindingKey.Kind.PROVIDER_MAP;
+  }
+
+  /** Returns this linker's binding for {@code key}, creating it first if it is pending. */
+  private Binding<?> ownBinding(BindingKey key) {
+    Binding<?> binding = bindings.get(key);
+    return binding != null || pending == null ? binding : createPending(key);
+  }
+
+  /**
+   * Creates the pending binding for {@code key} and adds it to this linker, unless another
+   * thread got there first. Returns the binding for {@code key}, which may not be linked yet.
+   */
+  private Binding<?> createPending(BindingKey key) {
+    ConcurrentHashMap<BindingKey, PendingProvidesBinding> pending = this.pending;
+    PendingProvidesBinding toCreate = pending.get(key);
+    if (toCreate != null) {
+      putIfAbsent(key, scope(toCreate.create(), scoping));
+      pending.remove(key, toCreate);
+    }
+    return bindings.get(key);
+  }
+
+  /**
+   * Links {@code binding}, which was added to this fully linked linker after it was linked, so
+   * that children can use it. If another thread is linking it, this waits for that thread.
+   */
+  private Binding<?> linkLate(Binding<?> binding) {
+    if (binding.isLinked()) {
+      return binding;
+    }
+    if (concurrent) {
+      session().toLink.add(binding);
+      linkRequested();
+    } else {
+      synchronized (this) {
+        if (!binding.isLinked()) {
+          session().toLink.add(binding);
+          linkRequested();
+        }
+      }
+    }
+    return binding;
+  }
+
+  /**
+   * Returns the binding for {@code key} that a sibling linker shared with our base linker, if
+   * this linker would have linked it the same way, and adds it to this linker. Returns null
+   * otherwise.
+   */
+  private Binding<?> adoptShared(BindingKey key) {
+    Map<BindingKey, Binding<?>> siblingBindings = base.shared;
+    if (siblingBindings == null) {
+      return null;
+    }
+    Binding<?> binding = siblingBindings.get(key);
+    if (binding == null
+        || !resolvesLikeSibling(binding, new IdentityHashMap<Binding<?>, Boolean>())) {
+      return null;
+    }
+    putBinding(binding);
+    return bindings.get(key);
+  }
+
+  /**
+   * Returns false if this linker has its own binding for a key that {@code binding}, or a shared
+   * binding it depends on, took from an ancestor.
+   */
+  private boolean resolvesLikeSibling(Binding<?> binding, Map<Binding<?>, Boolean> visited) {
+    if (visited.put(binding, Boolean.TRUE) != null) {
+      return true;
+    }
+    Set<Binding<?>> dependencies = new LinkedHashSet<Binding<?>>();
+    binding.getLinkedDependencies(dependencies);
+    for (Binding<?> dependency : dependencies) {
+      if (dependency == null) {
+        continue;
+      }
+      if (bindsOther(dependency.provideKey, dependency)
+          || bindsOther(dependency.membersKey, dependency)) {
+        return false;
+      }
+      if (base.isShared(dependency) && !resolvesLikeSibling(dependency, visited)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns true if this linker binds {@code key} to a binding other than {@code binding}. */
+  private boolean bindsOther(String key, Binding<?> binding) {
+    if (key == null) {
+      return false;
+    }
+    BindingKey bindingKey = BindingKey.get(key);
+    Binding<?> own = bindings.get(bindingKey);
+    if (own == null) {
+      Map<BindingKey, PendingProvidesBinding> pending = this.pending;
+      return pending != null && pending.containsKey(bindingKey);
+    }
+    return own != binding;
+  }
+
+  /** Returns true if {@code binding} was shared with this linker by one of its children. */
+  private boolean isShared(Binding<?> binding) {
+    Map<BindingKey, Binding<?>> shared = this.shared;
+    return shared != null && (isShared(shared, binding.provideKey, binding)
+        || isShared(shared, binding.membersKey, binding));
+  }
+
+  private static boolean isShared(Map<BindingKey, Binding<?>> shared, String key,
+      Binding<?> binding) {
+    return key != null && shared.get(BindingKey.get(key)) == binding;
+  }
+
+  /**
+   * Returns true if this linker's children would get {@code binding} from this linker, its
+   * ancestors, or the bindings shared by its children.
+   */
+  private boolean provides(Binding<?> binding) {
+    return provides(binding.provideKey, binding) || provides(binding.membersKey, binding);
+  }
+
+  private boolean provides(String key, Binding<?> binding) {
+    if (key == null) {
+      return false;
+    }
+    BindingKey bindingKey = BindingKey.get(key);
+    Binding<?> found = bindings.get(bindingKey);
+    if (found == null && base != null) {
+      found = base.findInherited(bindingKey);
+    }
+    if (found == binding) {
+      return true;
+    }
+    Map<BindingKey, Binding<?>> shared = this.shared;
+    return shared != null && shared.get(bindingKey) == binding;
+  }
+
+  /** Offers {@code binding}, linked by a child of this linker, to this linker's other children. */
+  private void share(Binding<?> binding) {
+    ConcurrentHashMap<BindingKey, Binding<?>> result = shared;
+    if (result == null) {
+      synchronized (this) {
+        result = shared;
+        if (result == null) {
+          shared = result = new ConcurrentHashMap<BindingKey, Binding<?>>();
+        }
+      }
+    }
+    if (binding.provideKey != null) {
+      result.putIfAbsent(BindingKey.get(binding.provideKey), binding);
+    }
+    if (binding.membersKey != null) {
+      result.putIfAbsent(BindingKey.get(binding.membersKey), binding);
+    }
+  }
+
+  /** Returns the binding for {@code key} from this linker or its ancestors, or null. */
+  private Binding<?> findInherited(BindingKey key) {
+    InheritedBindings inherited = inheritedBindings();
+    if (inherited != null) {
+      Binding<?> binding = inherited.bindings.get(key);
+      if (binding != null) {
+        return binding;
+      }
+      if (inherited.isStale()) {
+        this.inherited = null; // Bindings were added since flattening. Rebuild next time.
+      }
+    }
+    // Check each linker before missing. It may have a pending binding for the key, or have
+    // added or linked one since flattening.
+    for (Linker linker = this; linker != null; linker = linker.base) {
+      Binding<?> binding = linker.bindings.get(key);
+      if (binding == null && linker.pending != null) {
+        binding = linker.createPending(key);
+      }
+      if (binding != null) {
+        // Bindings added to a linked ancestor are linked there, rather than once per child.
+        return linker.linkedBindings != null ? linker.linkLate(binding) : binding;
+      }
+    }
+    return null;
+  }
+
+  /** Returns this linker's flattened bindings, or null if they can't be flattened yet. */
+  private InheritedBindings inheritedBindings() {
+    InheritedBindings result = inherited;
+    if (result != null || linkedBindings == null) {
+      return result;
+    }
+    List<Linker> linkers = new ArrayList<Linker>();
+    for (Linker linker = this; linker != null; linker = linker.base) {
+      linkers.add(linker);
+    }
+    int[] additions = new int[linkers.size()];
+    Map<BindingKey, Binding<?>> all = new HashMap<BindingKey, Binding<?>>();
+    for (int i = 0; i < additions.length; i++) {
+      Linker linker = linkers.get(i);
+      additions[i] = linker.frozenAdditions.get(); // Read before copying, so nothing is missed.
+      for (Map.Entry<BindingKey, Binding<?>> entry : linker.bindings.entrySet()) {
+        if (entry.getValue().isLinked() && !all.containsKey(entry.getKey())) {
+          all.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    result = new InheritedBindings(new FrozenBindings(all, null),
+        linkers.toArray(new Linker[linkers.size()]), additions);
+    inherited = result;
+    return result;
+  }
+
   private <T> void putBinding(final Binding<T> binding) {
 
     // At binding insertion time it's possible that another binding for the same
     // key to already exist. This occurs when an @Provides method returns a type T
     // and we also inject the members of that type.
     if (binding.provideKey != null) {
-      putIfAbsent(bindings, binding.provideKey, binding);
+      putIfAbsent(BindingKey.get(binding.provideKey), binding);
     }
     if (binding.membersKey != null) {
-      putIfAbsent(bindings, binding.membersKey, binding);
+      putIfAbsent(BindingKey.get(binding.membersKey), binding);
     }
   }
 
+  /**
+   * Returns true if {@code binding} holds instances for its linker, like singletons and {@link
+   * PerThread} bindings do. Such bindings are never shared with other linkers.
+   */
+  private static boolean holdsInstances(Binding<?> binding) {
+    return binding.isSingleton() || binding instanceof ScopedBinding;
+  }
+
+  /**
+   * Returns a scoped binding for {@code binding}, scoped like the bindings of graphs that don't
+   * select a scoping.
+   */
+  static <T> Binding<T> scope(Binding<T> binding) {
+    return scope(binding, Scoping.DEFAULT);
+  }
+
   /**
    * Returns a scoped binding for {@code binding}.
    */
-  static <T> Binding<T> scope(final Binding<T> binding) {
-    if (!binding.isSingleton() || binding instanceof SingletonBinding) {
-      return binding; // Default scoped binding or already a scoped binding.
+  static <T> Binding<T> scope(final Binding<T> binding, Scoping scoping) {
+    if (binding instanceof ScopedBinding) {
+      return binding; // Already a scoped binding.
     }
-    return new SingletonBinding<T>(binding);
+    if (binding.scope() == PerThread.class) {
+      return new ThreadConfinedBinding<T>(binding);
+    }
+    if (binding.scope() == Reusable.class) {
+      return new ReusableBinding<T>(binding);
+    }
+    if (binding.scope() != null && scoping.scopeContexts) {
+      return new ContextScopedBinding<T>(binding);
+    }
+    if (!binding.isSingleton()) {
+      return binding; // Default scoped binding.
+    }
+    return scoping.locks
+        ? new LockingSingletonBinding<T>(binding)
+        : new SingletonBinding<T>(binding);
   }
 
   /**
-   * Puts the mapping {@code key, value} in {@code map} if no mapping for {@code
-   * key} already exists.
+   * Puts the mapping {@code key, value} in {@code bindings} if no mapping for {@code
+   * key} already exists, and returns the binding mapped to {@code key}.
    */
-  private <K, V> void putIfAbsent(Map<K, V> map, K key, V value) {
-    V replaced = map.put(key, value); // Optimistic: prefer only one hash operation lookup.
+  private Binding<?> putIfAbsent(BindingKey key, Binding<?> value) {
+    Map<BindingKey, Binding<?>> map = bindings;
+    if (map instanceof ConcurrentMap) {
+      Binding<?> existing = ((ConcurrentMap<BindingKey, Binding<?>>) map).putIfAbsent(key, value);
+      Binding<?> result = existing != null ? existing : value;
+      if (map != bindings) {
+        // The table was frozen concurrently. Make sure the binding isn't lost.
+        existing = ((ConcurrentMap<BindingKey, Binding<?>>) bindings).putIfAbsent(key, result);
+        result = existing != null ? existing : result;
+      }
+      return result;
+    }
+    Binding<?> replaced = map.put(key, value); // Optimistic: only one hash operation.
     if (replaced != null) {
       map.put(key, replaced);
+      return replaced;
     }
+    return value;
   }
 
-  /** Enqueue {@code message} as a fatal error to be reported to the user. */
-  private void addError(String message) {
-    errors.add(message);
+  /**
+   * The bindings requested by one thread that still need to be linked, plus the errors found
+   * while linking them. Serial linkers have a single session guarded by the linker's monitor.
+   *
+   * <p>In a concurrent linker a session claims each binding before attaching it. Bindings
+   * attached by this session, and bindings attached by other sessions whose transitive
+   * dependencies this session has confirmed are attached, are only marked as linked once the
+   * session's work is complete. That way a linked binding can always be used immediately.
+   */
+  private final class LinkSession {
+    /** Bindings requiring a call to attach(). May contain deferred bindings. */
+    final Queue<Binding<?>> toLink = new ArrayQueue<Binding<?>>();
+
+    /** True unless calls to requestBinding() were unable to satisfy the binding. */
+    boolean attachSuccess = true;
+
+    /** The binding whose attach() is running, or null. */
+    Binding<?> attaching;
+
+    /** Keys that are enqueued to be resolved. */
+    final Map<BindingKey, DeferredBinding> pending = new HashMap<BindingKey, DeferredBinding>();
+
+    /** All errors encountered during injection. */
+    final List<String> errors = new ArrayList<String>();
+
+    /** Claims held by this session whose bindings aren't attached yet. */
+    final Map<Binding<?>, LinkClaim> owned = new IdentityHashMap<Binding<?>, LinkClaim>();
+
+    /** Bindings claimed by other sessions that this session needs. */
+    Map<Binding<?>, LinkClaim> awaited = new IdentityHashMap<Binding<?>, LinkClaim>();
+
+    /** Attached bindings to be marked as linked when this session completes. */
+    final Map<Binding<?>, LinkClaim> attached = new IdentityHashMap<Binding<?>, LinkClaim>();
+
+    /** Unscoped just-in-time bindings created by this session, which may be shared. */
+    final List<Binding<?>> created = new ArrayList<Binding<?>>();
+
+    void link() {
+      try {
+        do {
+          Binding<?> binding;
+          while ((binding = toLink.poll()) != null) {
+            if (binding instanceof DeferredBinding) {
+              resolve((DeferredBinding) binding);
+            } else if (claim(binding)) {
+              // Attach the binding to its dependencies. Missing dependencies are created, but
+              // not attached, as they are requested, so each binding is attached once.
+              attachSuccess = true;
+              attaching = binding;
+              try {
+                binding.attach(Linker.this);
+              } finally {
+                attaching = null;
+              }
+              if (!attachSuccess) {
+                toLink.add(binding); // Retry once the missing dependencies are resolved.
+              } else if (concurrent) {
+                LinkClaim claim = owned.remove(binding);
+                attached.put(binding, claim);
+                claim.finish(true);
+              } else {
+                binding.setLinked();
+              }
+            }
+          }
+        } while (errors.isEmpty() && awaitOthers());
+
+        boolean failed = !errors.isEmpty();
+        errorHandler.handleErrors(errors);
+        for (Map.Entry<Binding<?>, LinkClaim> entry : attached.entrySet()) {
+          entry.getKey().setLinked();
+          claims.remove(entry.getKey(), entry.getValue());
+        }
+        if (!failed && !created.isEmpty()) {
+          shareCreated();
+        }
+      } finally {
+        errors.clear();
+        created.clear();
+        pending.clear();
+      }
+    }
+
+    /**
+     * Records that {@code key} couldn't be satisfied. If a binding is being attached, the
+     * binding for {@code key} is created and enqueued to be linked now, and returned so that the
+     * attaching binding needn't be attached again. Otherwise the key is resolved once by the
+     * next call to {@link #link}, and null is returned.
+     *
+     * <p>A binding resolved for several requesters is only a library binding if every
+     * requester's binding is.
+     */
+    Binding<?> missing(BindingKey key, ClassLoader classLoader, Object requiredBy,
+        boolean mustHaveInjections, boolean library) {
+      DeferredBinding deferred = pending.get(key);
+      if (deferred == null) {
+        deferred = new DeferredBinding(key, classLoader, requiredBy, mustHaveInjections);
+        deferred.setDependedOn(true);
+        deferred.setLibrary(library);
+        pending.put(key, deferred);
+        if (attaching == null) {
+          toLink.add(deferred);
+        }
+      } else {
+        deferred.setLibrary(deferred.library() && library);
+      }
+      if (attaching == null) {
+        attachSuccess = false;
+        return null;
+      }
+      resolve(deferred);
+      Binding<?> binding = bindings.get(key);
+      if (binding == null) {
+        attachSuccess = false;
+      }
+      return binding;
+    }
+
+    private void resolve(DeferredBinding deferred) {
+      if (pending.remove(deferred.deferredKey) == deferred) {
+        createDeferred(deferred);
+      }
+    }
+
+    private void createDeferred(DeferredBinding deferred) {
+      BindingKey key = deferred.deferredKey;
+      boolean mustHaveInjections = deferred.mustHaveInjections;
+      Binding<?> existing = ownBinding(key);
+      if (existing != null) {
+        toLink.add(existing); // A binding for this key has since been created. Link it.
+        return;
+      }
+      try {
+        Binding<?> resolvedBinding =
+            createBinding(key, deferred.requiredBy, deferred.classLoader, mustHaveInjections);
+        resolvedBinding.setLibrary(deferred.library());
+        resolvedBinding.setDependedOn(deferred.dependedOn());
+        // Fail if the type of binding we got wasn't capable of what was requested.
+        if (!key.name.equals(resolvedBinding.provideKey)
+            && !key.name.equals(resolvedBinding.membersKey)) {
+          throw new IllegalStateException("Unable to create binding for " + key);
+        }
+        // Enqueue the JIT binding so its own dependencies can be linked. If another thread
+        // installed a binding for this key first, link that one instead.
+        Binding<?> scopedBinding = scope(resolvedBinding, scoping);
+        putBinding(scopedBinding);
+        Binding<?> binding = bindings.get(key);
+        toLink.add(binding);
+        if (binding == scopedBinding && base != null && !holdsInstances(binding)) {
+          created.add(binding);
+        }
+      } catch (InvalidBindingException e) {
+        errors.add(e.type + " " + e.getMessage() + " required by " + deferred.requiredBy);
+        putIfAbsent(key, Binding.UNRESOLVED);
+      } catch (UnsupportedOperationException e) {
+        errors.add("Unsupported: " + e.getMessage() + " required by " + deferred.requiredBy);
+        putIfAbsent(key, Binding.UNRESOLVED);
+      } catch (IllegalArgumentException e) {
+        errors.add(e.getMessage() + " required by " + deferred.requiredBy);
+        putIfAbsent(key, Binding.UNRESOLVED);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * Shares the bindings created by this session with the base linker's other children, if they
+     * depend only on bindings inherited from ancestors or shared the same way. Then the bindings
+     * are linked once for all children rather than once per child.
+     */
+    private void shareCreated() {
+      if (base.linkedBindings == null) {
+        return; // Only share with children of a fully linked linker.
+      }
+      Set<Binding<?>> dependencies = new LinkedHashSet<Binding<?>>();
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (Iterator<Binding<?>> i = created.iterator(); i.hasNext(); ) {
+          Binding<?> binding = i.next();
+          if (!binding.isLinked()) {
+            i.remove();
+            continue;
+          }
+          dependencies.clear();
+          binding.getLinkedDependencies(dependencies);
+          if (providesAll(dependencies)) {
+            base.share(binding);
+            i.remove();
+            changed = true;
+          }
+        }
+      }
+    }
+
+    private boolean providesAll(Set<Binding<?>> dependencies) {
+      for (Binding<?> dependency : dependencies) {
+        if (dependency != null && !base.provides(dependency)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns true if this session should attach {@code binding}. In a concurrent linker
+     * bindings claimed by other sessions are awaited instead.
+     */
+    private boolean claim(Binding<?> binding) {
+      if (binding.isLinked()) {
+        return false;
+      }
+      if (!concurrent) {
+        return true;
+      }
+      if (owned.containsKey(binding)) {
+        return true; // Retrying an attach that was missing dependencies.
+      }
+      if (attached.containsKey(binding) || awaited.containsKey(binding)) {
+        return false;
+      }
+      LinkClaim claim = new LinkClaim();
+      LinkClaim existing = claims.putIfAbsent(binding, claim);
+      if (existing != null) {
+        awaited.put(binding, existing);
+        return false;
+      }
+      // The binding may have been linked and its claim released since we checked.
+      if (binding.isLinked()) {
+        claims.remove(binding, claim);
+        claim.finish(false);
+        return false;
+      }
+      owned.put(binding, claim);
+      return true;
+    }
+
+    /**
+     * Waits for the bindings claimed by other sessions to be attached, then enqueues their
+     * dependencies so they are confirmed too. Bindings whose session failed are enqueued to be
+     * attached by this session. Returns true if there is more work to do.
+     */
+    private boolean awaitOthers() {
+      if (awaited.isEmpty()) {
+        return false;
+      }
+      Map<Binding<?>, LinkClaim> awaiting = awaited;
+      awaited = new IdentityHashMap<Binding<?>, LinkClaim>();
+      Set<Binding<?>> dependencies = new LinkedHashSet<Binding<?>>();
+      for (Map.Entry<Binding<?>, LinkClaim> entry : awaiting.entrySet()) {
+        Binding<?> binding = entry.getKey();
+        LinkClaim claim = entry.getValue();
+        if (!claim.await()) {
+          toLink.add(binding); // The claim was abandoned. Link it ourselves.
+        } else if (!binding.isLinked()) {
+          attached.put(binding, claim);
+          binding.getLinkedDependencies(dependencies);
+        }
+      }
+      for (Binding<?> dependency : dependencies) {
+        if (!dependency.isLinked()) {
+          toLink.add(dependency);
+        }
+      }
+      return true;
+    }
+
+    /** Abandons claims this session won't attach so other sessions can link them. */
+    void releaseClaims() {
+      for (Map.Entry<Binding<?>, LinkClaim> entry : owned.entrySet()) {
+        claims.remove(entry.getKey(), entry.getValue());
+        entry.getValue().finish(false);
+      }
+    }
+  }
+
+  /** Marks a binding as being attached by one session of a concurrent linker. */
+  private static final class LinkClaim {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean attached;
+
+    void finish(boolean attached) {
+      this.attached = attached;
+      done.countDown();
+    }
+
+    /** Waits for the claiming session to finish. Returns true if the binding was attached. */
+    boolean await() {
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            done.await();
+            return attached;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
   }
 
   /**
-   * A Binding that implements singleton behaviour around an existing binding.
+   * A Binding that scopes the instances of an existing binding. Subclasses decide when
+   * {@link #get} creates an instance; everything else is delegated to the scoped binding.
    */
-  private static class SingletonBinding<T> extends Binding<T> {
-    private final Binding<T> binding;
-    private volatile Object onlyInstance = UNINITIALIZED;
+  private abstract static class ScopedBinding<T> extends Binding<T> {
+    final Binding<T> binding;
 
-    private SingletonBinding(Binding<T> binding) {
-      super(binding.provideKey, binding.membersKey, true, binding.requiredBy);
+    ScopedBinding(Binding<T> binding, boolean singleton) {
+      super(binding.provideKey, binding.membersKey, singleton, binding.requiredBy);
       this.binding = binding;
     }
 
@@ -356,22 +1158,14 @@ public final class Linker {
       binding.injectMembers(t);
     }
 
-    @SuppressWarnings("unchecked") // onlyInstance is either 'UNINITIALIZED' or a 'T'.
-    @Override public T get() {
-      if (onlyInstance == UNINITIALIZED) {
-        synchronized (this) {
-          if (onlyInstance == UNINITIALIZED) {
-            onlyInstance = binding.get();
-          }
-        }
-      }
-      return (T) onlyInstance;
-    }
-
     @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
       binding.getDependencies(get, injectMembers);
     }
 
+    @Override void getLinkedDependencies(Set<Binding<?>> linked) {
+      binding.getLinkedDependencies(linked);
+    }
+
     @Override public boolean isCycleFree() {
       return binding.isCycleFree();
     }
@@ -408,12 +1202,75 @@ public final class Linker {
       binding.setDependedOn(dependedOn);
     }
 
+    @Override protected void setLinked() {
+      binding.setLinked();
+    }
+
+    @Override public Class<? extends Annotation> scope() {
+      return binding.scope();
+    }
+  }
+
+  /**
+   * A Binding that implements singleton behaviour around an existing binding.
+   */
+  private static final class SingletonBinding<T> extends ScopedBinding<T> {
+    private volatile Object onlyInstance = UNINITIALIZED;
+
+    private SingletonBinding(Binding<T> binding) {
+      super(binding, true);
+    }
+
+    @SuppressWarnings("unchecked") // onlyInstance is either 'UNINITIALIZED' or a 'T'.
+    @Override public T get() {
+      if (onlyInstance == UNINITIALIZED) {
+        synchronized (this) {
+          if (onlyInstance == UNINITIALIZED) {
+            onlyInstance = binding.get();
+          }
+        }
+      }
+      return (T) onlyInstance;
+    }
+
     @Override protected boolean isSingleton() {
       return true;
     }
 
-    @Override protected void setLinked() {
-      binding.setLinked();
+    @Override public String toString() {
+      return "@Singleton/" + binding.toString();
+    }
+  }
+
+  /**
+   * A {@link SingletonBinding} alternative that guards the first call to its binding with a
+   * {@link ReentrantLock} instead of a monitor. See {@link Scoping}.
+   */
+  private static final class LockingSingletonBinding<T> extends ScopedBinding<T> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Object onlyInstance = UNINITIALIZED;
+
+    private LockingSingletonBinding(Binding<T> binding) {
+      super(binding, true);
+    }
+
+    @SuppressWarnings("unchecked") // onlyInstance is either 'UNINITIALIZED' or a 'T'.
+    @Override public T get() {
+      if (onlyInstance == UNINITIALIZED) {
+        lock.lock();
+        try {
+          if (onlyInstance == UNINITIALIZED) {
+            onlyInstance = binding.get();
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+      return (T) onlyInstance;
+    }
+
+    @Override protected boolean isSingleton() {
+      return true;
     }
 
     @Override public String toString() {
@@ -421,6 +1278,172 @@ public final class Linker {
     }
   }
 
+  /**
+   * A Binding whose instances are held by the {@link ScopeContext} of its custom scope that is
+   * entered when they are requested.
+   */
+  private static final class ContextScopedBinding<T> extends ScopedBinding<T> {
+    private ContextScopedBinding(Binding<T> binding) {
+      super(binding, false);
+    }
+
+    @Override public T get() {
+      return ScopeContext.current(binding.scope()).get(this, binding);
+    }
+
+    @Override public String toString() {
+      return "@" + binding.scope().getSimpleName() + "/" + binding.toString();
+    }
+  }
+
+  /**
+   * A Binding that keeps one instance per thread for bindings annotated with {@link PerThread}.
+   * The instances are released by {@link #releasePerThreadInstances}, or by each thread once
+   * its stale thread-local entry is expunged after the binding's graph becomes unreachable.
+   */
+  private static final class ThreadConfinedBinding<T> extends ScopedBinding<T> {
+    private final ThreadConfinedProvider<T> instances;
+
+    private ThreadConfinedBinding(Binding<T> binding) {
+      super(binding, false);
+      this.instances = new ThreadConfinedProvider<T>(binding);
+    }
+
+    @Override public T get() {
+      return instances.get();
+    }
+
+    void release() {
+      instances.release();
+    }
+
+    @Override public String toString() {
+      return "@PerThread/" + binding.toString();
+    }
+  }
+
+  /**
+   * A Binding that keeps the first instance stored by any thread for bindings annotated with
+   * {@link Reusable}. Threads racing to get the first instance each create one rather than wait.
+   */
+  private static final class ReusableBinding<T> extends ScopedBinding<T> {
+    private final AtomicReference<Object> instance = new AtomicReference<Object>(UNINITIALIZED);
+
+    private ReusableBinding(Binding<T> binding) {
+      super(binding, false);
+    }
+
+    @SuppressWarnings("unchecked") // instance is either 'UNINITIALIZED' or a 'T'.
+    @Override public T get() {
+      Object result = instance.get();
+      if (result == UNINITIALIZED) {
+        instance.compareAndSet(UNINITIALIZED, binding.get());
+        result = instance.get();
+      }
+      return (T) result;
+    }
+
+    @Override public String toString() {
+      return "@Reusable/" + binding.toString();
+    }
+  }
+
+  /**
+   * An unmodifiable view of a linker's bindings keyed by the string form of their keys, as
+   * returned by {@link #linkAll}.
+   */
+  private static final class NamedBindings extends AbstractMap<String, Binding<?>> {
+    private final Map<BindingKey, Binding<?>> bindings;
+
+    NamedBindings(Map<BindingKey, Binding<?>> bindings) {
+      this.bindings = bindings;
+    }
+
+    @Override public Binding<?> get(Object key) {
+      BindingKey bindingKey = key instanceof String ? BindingKey.find((String) key) : null;
+      return bindingKey != null ? bindings.get(bindingKey) : null;
+    }
+
+    @Override public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override public int size() {
+      return bindings.size();
+    }
+
+    @Override public Collection<Binding<?>> values() {
+      return Collections.unmodifiableCollection(bindings.values());
+    }
+
+    @Override public Set<Map.Entry<String, Binding<?>>> entrySet() {
+      return new AbstractSet<Map.Entry<String, Binding<?>>>() {
+        @Override public Iterator<Map.Entry<String, Binding<?>>> iterator() {
+          final Iterator<Map.Entry<BindingKey, Binding<?>>> iterator =
+              bindings.entrySet().iterator();
+          return new Iterator<Map.Entry<String, Binding<?>>>() {
+            @Override public boolean hasNext() {
+              return iterator.hasNext();
+            }
+
+            @Override public Map.Entry<String, Binding<?>> next() {
+              final Map.Entry<BindingKey, Binding<?>> entry = iterator.next();
+              return new Map.Entry<String, Binding<?>>() {
+                @Override public String getKey() {
+                  return entry.getKey().name;
+                }
+
+                @Override public Binding<?> getValue() {
+                  return entry.getValue();
+                }
+
+                @Override public Binding<?> setValue(Binding<?> value) {
+                  throw new UnsupportedOperationException();
+                }
+              };
+            }
+
+            @Override public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+
+        @Override public int size() {
+          return bindings.size();
+        }
+      };
+    }
+  }
+
+  /**
+   * A linker's flattened bindings, and how many frozen additions of each flattened linker they
+   * reflect. Lookups that miss still check each linker, since bindings that were pending or
+   * unlinked when flattening aren't flattened.
+   */
+  private static final class InheritedBindings {
+    final FrozenBindings bindings;
+    /** The flattened linkers, and how many bindings each had added when it was flattened. */
+    private final Linker[] linkers;
+    private final int[] additions;
+
+    InheritedBindings(FrozenBindings bindings, Linker[] linkers, int[] additions) {
+      this.bindings = bindings;
+      this.linkers = linkers;
+      this.additions = additions;
+    }
+
+    /** Returns true if any of the flattened linkers has added bindings since. */
+    boolean isStale() {
+      for (int i = 0; i < linkers.length; i++) {
+        if (linkers[i].frozenAdditions.get() != additions[i]) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
   /** Handles linker errors appropriately. */
   public interface ErrorHandler {
     ErrorHandler NULL = new ErrorHandler() {
@@ -441,10 +1464,10 @@ public final class Linker {
   private static class DeferredBinding extends Binding<Object> {
     /** Loader originally intended to load this binding, to be used in loading the actual one */
     final ClassLoader classLoader;
-    final String deferredKey;
+    final BindingKey deferredKey;
     final boolean mustHaveInjections;
 
-    private DeferredBinding(String deferredKey, ClassLoader classLoader, Object requiredBy,
+    private DeferredBinding(BindingKey deferredKey, ClassLoader classLoader, Object requiredBy,
         boolean mustHaveInjections) {
       super(null, null, false, requiredBy);
       this.deferredKey = deferredKey;
@@ -16,7 +16,11 @@
  */
 package dagger.internal;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.AccessibleObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -25,20 +29,72 @@ import java.lang.reflect.AccessibleObject;
  * provide all resolution methods
  */
 public abstract class Loader {
-  private final Memoizer<ClassLoader, Memoizer<String, Class<?>>> caches =
-      new Memoizer<ClassLoader, Memoizer<String, Class<?>>>() {
-        @Override protected Memoizer<String, Class<?>> create(final ClassLoader classLoader) {
-          return new Memoizer<String, Class<?>>() {
-            @Override protected Class<?> create(String className) {
-              try {
-                return classLoader.loadClass(className);
-              } catch (ClassNotFoundException e) {
-                return Void.class; // Cache the failure (negative case).
-              }
-            }
-          };
-        }
-      };
+  /**
+   * Classes by name for each {@code ClassLoader}. Class loaders are held weakly, and classes
+   * are held through weak references so that they don't keep their class loader reachable. A
+   * class stays reachable through its class loader for as long as the cache is useful.
+   */
+  private final Memoizer<ClassLoader, Memoizer<String, WeakReference<Class<?>>>> caches;
+
+  /**
+   * The module adapters of each list of seed module classes and the modules they include, by the
+   * first seed class and the names of all seeds. First seeds are held weakly, and closures hold
+   * the adapters of class loaders that may be unloaded weakly, so that the cache doesn't keep
+   * such class loaders reachable.
+   */
+  private final Memoizer<Class<?>, Memoizer<List<String>, ModuleClosure>> moduleClosures;
+
+  protected Loader() {
+    this(Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param maxCacheSize the most classes to cache for each {@code ClassLoader}, and the most
+   *     {@code ClassLoader}s to cache classes for.
+   */
+  protected Loader(final int maxCacheSize) {
+    caches = new Memoizer<ClassLoader, Memoizer<String, WeakReference<Class<?>>>>(
+        maxCacheSize, true) {
+      @Override protected Memoizer<String, WeakReference<Class<?>>> create(
+          ClassLoader classLoader) {
+        final WeakReference<ClassLoader> classLoaderReference =
+            new WeakReference<ClassLoader>(classLoader);
+        return new Memoizer<String, WeakReference<Class<?>>>(maxCacheSize) {
+          @Override protected WeakReference<Class<?>> create(String className) {
+            return new WeakReference<Class<?>>(
+                loadClassUncached(classLoaderReference.get(), className));
+          }
+        };
+      }
+    };
+    moduleClosures = new Memoizer<Class<?>, Memoizer<List<String>, ModuleClosure>>(
+        maxCacheSize, true) {
+      @Override protected Memoizer<List<String>, ModuleClosure> create(Class<?> firstSeed) {
+        return new Memoizer<List<String>, ModuleClosure>(maxCacheSize) {
+          @Override protected ModuleClosure create(List<String> seedNames) {
+            return new ModuleClosure();
+          }
+        };
+      }
+    };
+  }
+
+  private static Class<?> loadClassUncached(ClassLoader classLoader, String className) {
+    try {
+      return classLoader.loadClass(className);
+    } catch (ClassNotFoundException e) {
+      return Void.class; // Cache the failure (negative case).
+    }
+  }
+
+  /**
+   * Forgets all cached classes, so that they are loaded again when next needed. Subclasses that
+   * cache more should forget that too.
+   */
+  public void clearCaches() {
+    caches.clear();
+    moduleClosures.clear();
+  }
 
   /**
    * Returns a binding that uses {@code @Inject} annotations, or null if no valid binding can
@@ -47,12 +103,139 @@ public abstract class Loader {
   public abstract Binding<?> getAtInjectBinding(
       String key, String className, ClassLoader classLoader, boolean mustHaveInjections);
 
+  /**
+   * Returns a binding that uses {@code @Inject} annotations, or null if no valid binding can
+   * be found or created. {@code requiredBy} is what requested the binding, like a field, a
+   * method or another binding; loaders that report how bindings were made may use it.
+   */
+  public Binding<?> getAtInjectBinding(String key, String className, ClassLoader classLoader,
+      boolean mustHaveInjections, Object requiredBy) {
+    return getAtInjectBinding(key, className, classLoader, mustHaveInjections);
+  }
+
   /**
    * Returns a module adapter for {@code moduleClass} or throws a {@code TypeNotPresentException} if
    * none can be found.
    */
   public abstract <T> ModuleAdapter<T> getModuleAdapter(Class<T> moduleClass);
 
+  /**
+   * Returns the module adapters for {@code seedClasses} and the modules they include,
+   * transitively. The result is cached, so that graphs created from the same module classes
+   * don't walk their includes again.
+   */
+  final List<ModuleAdapter<?>> getModuleAdapters(List<Class<?>> seedClasses) {
+    if (seedClasses.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> seedNames = new ArrayList<String>(seedClasses.size());
+    for (Class<?> seedClass : seedClasses) {
+      seedNames.add(seedClass.getName());
+    }
+    return moduleClosures.get(seedClasses.get(0)).get(seedNames).get(this, seedClasses);
+  }
+
+  /**
+   * Returns true if {@code classLoader} is never unloaded while Dagger is loaded: it is the
+   * bootstrap class loader, or an ancestor of the class loader of Dagger or of the application.
+   * Caches may hold what they load from such class loaders strongly.
+   */
+  static boolean neverUnloaded(ClassLoader classLoader) {
+    return classLoader == null
+        || isAncestor(classLoader, Loader.class.getClassLoader())
+        || isAncestor(classLoader, ClassLoader.getSystemClassLoader());
+  }
+
+  /** Returns true if {@code ancestor} is {@code classLoader} or one of its parents. */
+  private static boolean isAncestor(ClassLoader ancestor, ClassLoader classLoader) {
+    try {
+      for (; classLoader != null; classLoader = classLoader.getParent()) {
+        if (classLoader == ancestor) {
+          return true;
+        }
+      }
+    } catch (SecurityException e) {
+      // Treat class loaders we can't inspect as unloadable.
+    }
+    return false;
+  }
+
+  /**
+   * The module adapters of an include closure. They are held strongly if their class loaders are
+   * {@linkplain #neverUnloaded never unloaded}. Otherwise they are held weakly, and the includes
+   * are walked again if any of them was garbage collected.
+   */
+  private static final class ModuleClosure {
+    private volatile List<ModuleAdapter<?>> pinned;
+    private volatile List<WeakReference<ModuleAdapter<?>>> adapters;
+
+    List<ModuleAdapter<?>> get(Loader loader, List<Class<?>> seedClasses) {
+      List<ModuleAdapter<?>> strong = pinned;
+      if (strong != null) {
+        return seedsMatch(strong, seedClasses)
+            ? strong
+            : Modules.collectModuleAdapters(loader, seedClasses);
+      }
+      List<WeakReference<ModuleAdapter<?>>> references = adapters;
+      if (references != null) {
+        List<ModuleAdapter<?>> result = new ArrayList<ModuleAdapter<?>>(references.size());
+        for (WeakReference<ModuleAdapter<?>> reference : references) {
+          ModuleAdapter<?> adapter = reference.get();
+          if (adapter == null) {
+            break;
+          }
+          result.add(adapter);
+        }
+        if (result.size() == references.size()) {
+          return seedsMatch(result, seedClasses)
+              ? Collections.unmodifiableList(result)
+              : Modules.collectModuleAdapters(loader, seedClasses);
+        }
+      }
+      List<ModuleAdapter<?>> result = Modules.collectModuleAdapters(loader, seedClasses);
+      if (allNeverUnloaded(result)) {
+        pinned = result;
+        return result;
+      }
+      references = new ArrayList<WeakReference<ModuleAdapter<?>>>(result.size());
+      for (ModuleAdapter<?> adapter : result) {
+        references.add(new WeakReference<ModuleAdapter<?>>(adapter));
+      }
+      adapters = references;
+      return result;
+    }
+
+    private static boolean allNeverUnloaded(List<ModuleAdapter<?>> adapters) {
+      for (ModuleAdapter<?> adapter : adapters) {
+        if (!neverUnloaded(adapter.getClass().getClassLoader())
+            || !neverUnloaded(adapter.moduleClass.getClassLoader())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns true if every seed class is a module of {@code closure}. Seeds are cached by name,
+     * so a seed that isn't is a different class of the same name, whose closure isn't cached.
+     * Seeds come first in a closure.
+     */
+    private static boolean seedsMatch(List<ModuleAdapter<?>> closure,
+        List<Class<?>> seedClasses) {
+      int seedCount = Math.min(closure.size(), seedClasses.size());
+      seeds:
+      for (Class<?> seedClass : seedClasses) {
+        for (int i = 0; i < seedCount; i++) {
+          if (closure.get(i).moduleClass == seedClass) {
+            continue seeds;
+          }
+        }
+        return false;
+      }
+      return true;
+    }
+  }
+
   /**
    * Returns the static injection for {@code injectedClass}.
    */
@@ -67,7 +250,9 @@ public abstract class Loader {
   protected Class<?> loadClass(ClassLoader classLoader, String name) {
     // A null classloader is the system classloader.
     classLoader = (classLoader != null) ? classLoader : ClassLoader.getSystemClassLoader();
-    return caches.get(classLoader).get(name);
+    Class<?> result = caches.get(classLoader).get(name).get();
+    // The class can't have been collected while its class loader is reachable, but be safe.
+    return result != null ? result : loadClassUncached(classLoader, name);
   }
 
   /**
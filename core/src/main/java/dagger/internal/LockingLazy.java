@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Lazy;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.inject.Provider;
+
+/**
+ * A {@link Lazy} that memoizes the value returned from a {@link Provider}, guarding the first
+ * call with a {@link ReentrantLock} instead of a monitor. See {@link Scoping}.
+ *
+ * <p>Like the lazies of object graphs it memoizes {@code null}, unless created to replace a
+ * {@link DoubleCheckLazy}, which rejects it.
+ */
+public final class LockingLazy<T> implements Lazy<T> {
+  private static final Object NOT_PRESENT = new Object();
+
+  private final Provider<T> provider;
+  private final boolean nullable;
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile Object instance = NOT_PRESENT;
+
+  LockingLazy(Provider<T> provider, boolean nullable) {
+    assert provider != null;
+    this.provider = provider;
+    this.nullable = nullable;
+  }
+
+  @SuppressWarnings("unchecked") // instance is either 'NOT_PRESENT' or a 'T'.
+  @Override
+  public T get() {
+    Object result = instance;
+    if (result == NOT_PRESENT) {
+      lock.lock();
+      try {
+        result = instance;
+        if (result == NOT_PRESENT) {
+          result = provider.get();
+          if (result == null && !nullable) {
+            throw new NullPointerException(provider + " returned null");
+          }
+          instance = result;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return (T) result;
+  }
+
+  /**
+   * Returns a new lazy for the given provider that, like {@link DoubleCheckLazy}, rejects null,
+   * for generated components that select locks. See {@link dagger.Component#lockingScopes}.
+   */
+  public static <T> Lazy<T> create(Provider<T> provider) {
+    if (provider == null) {
+      throw new NullPointerException();
+    }
+    return new LockingLazy<T>(provider, false);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.inject.Provider;
+
+/**
+ * A {@link ScopedProvider} alternative that guards the first call to its {@link Factory} with a
+ * {@link ReentrantLock} instead of a monitor. See {@link Scoping}.
+ */
+public final class LockingScopedProvider<T> implements Provider<T> {
+  private final Factory<T> factory;
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile T instance = null;
+
+  LockingScopedProvider(Factory<T> factory) {
+    assert factory != null;
+    this.factory = factory;
+  }
+
+  @Override
+  public T get() {
+    T result = instance;
+    if (result == null) {
+      lock.lock();
+      try {
+        result = instance;
+        if (result == null) {
+          instance = result = factory.get();
+          if (result == null) {
+            throw new NullPointerException(factory + " returned null");
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a new scoped provider for the given factory, for generated components that select
+   * locks. See {@link dagger.Component#lockingScopes}.
+   */
+  public static <T> Provider<T> create(Factory<T> factory) {
+    if (factory == null) {
+      throw new NullPointerException();
+    }
+    return new LockingScopedProvider<T>(factory);
+  }
+}
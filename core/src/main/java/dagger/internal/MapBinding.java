@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.inject.Provider;
+
+/**
+ * Injects a {@code Map<K, V>} by getting the value of every entry of the
+ * {@code Map<K, Provider<V>>} it delegates to.
+ *
+ * <p>Map bindings are backed by set bindings: each {@code @Provides(type = MAP)} method
+ * contributes an entry holding its key and its binding to the set binding of
+ * {@code Set<Map.Entry<K, Provider<V>>>}. Contributing entries doesn't create their values, and
+ * child graphs extend their parent's maps just like their parent's sets.
+ */
+public final class MapBinding<K, V> extends Binding<Map<K, V>> {
+
+  /**
+   * Contributes {@code binding}'s value to the map backed by the set binding of
+   * {@code entriesKey}, under {@code mapKey}.
+   */
+  public static <K> void add(BindingsGroup bindings, String entriesKey, K mapKey,
+      Binding<?> binding) {
+    SetBinding.add(bindings, entriesKey, new EntryBinding<K>(mapKey, bindings.scope(binding)));
+  }
+
+  /**
+   * Checks that no two of the entries contributed to {@code entries} have the same key. Only
+   * the keys are compared, so no values are created.
+   *
+   * @throws IllegalStateException if more than one entry was contributed for a key.
+   */
+  static void checkKeys(SetBinding<?> entries) {
+    Map<Object, Binding<?>> contributors = new LinkedHashMap<Object, Binding<?>>();
+    for (Binding<?> contributor : entries.contributorBindings()) {
+      if (!(contributor instanceof EntryBinding)) {
+        continue; // Not a map entry.
+      }
+      Object mapKey = ((EntryBinding<?>) contributor).entry.key;
+      Binding<?> clobbered = contributors.put(mapKey, contributor);
+      if (clobbered != null) {
+        throw new IllegalStateException("Duplicate map key " + mapKey + " for "
+            + entries.provideKey + ":\n    " + clobbered + "\n    " + contributor);
+      }
+    }
+  }
+
+  /** Returns a map with room for {@code size} entries without growing. */
+  static <K, V> LinkedHashMap<K, V> newLinkedHashMapWithExpectedSize(int size) {
+    return new LinkedHashMap<K, V>(size < 3 ? size + 1 : size + size / 3);
+  }
+
+  private final BindingKey providersKey;
+  private final ClassLoader classLoader;
+  private Binding<?> delegate;
+
+  /** The map returned by every call to {@link #get} once every value is a singleton. */
+  private volatile Map<K, V> cached;
+
+  MapBinding(String key, Object requiredBy, ClassLoader classLoader, BindingKey providersKey) {
+    super(key, null, false, requiredBy);
+    this.classLoader = classLoader;
+    this.providersKey = providersKey;
+  }
+
+  @Override public void attach(Linker linker) {
+    delegate = linker.requestBinding(providersKey, requiredBy, classLoader);
+  }
+
+  @Override public void injectMembers(Map<K, V> t) {
+    throw new UnsupportedOperationException("Cannot inject members on a contributed Map<K, V>.");
+  }
+
+  @SuppressWarnings("unchecked") // At runtime we know the delegate provides a Map<K, Provider<V>>.
+  @Override public Map<K, V> get() {
+    Map<K, V> result = cached;
+    if (result != null) {
+      return result;
+    }
+    Map<K, Provider<V>> providers = (Map<K, Provider<V>>) delegate.get();
+    LinkedHashMap<K, V> values = newLinkedHashMapWithExpectedSize(providers.size());
+    boolean singletons = true;
+    for (Map.Entry<K, Provider<V>> entry : providers.entrySet()) {
+      Provider<V> provider = entry.getValue();
+      values.put(entry.getKey(), provider.get()); // Let runtime exceptions through.
+      singletons &= provider instanceof Binding && ((Binding<?>) provider).isSingleton();
+    }
+    result = Collections.unmodifiableMap(values);
+    if (singletons) {
+      cached = result; // Every call would return the same values.
+    }
+    return result;
+  }
+
+  @Override public void getDependencies(
+      Set<Binding<?>> getBindings, Set<Binding<?>> injectMembersBindings) {
+    getBindings.add(delegate);
+  }
+
+  /**
+   * Contributes the entry of a map binding. The entry's value is the contributing binding, so
+   * contributing and collecting entries doesn't create values.
+   */
+  private static final class EntryBinding<K> extends Binding<Map.Entry<K, Provider<?>>> {
+    private final Entry<K> entry;
+
+    /**
+     * Like the bindings of {@code SET} methods, entries are keyed like the values they hold.
+     *
+     * @param binding the scoped binding of the entry's value.
+     */
+    EntryBinding(K mapKey, Binding<?> binding) {
+      super(binding.provideKey, null, false, binding.requiredBy);
+      this.entry = new Entry<K>(mapKey, binding);
+      setLibrary(binding.library());
+    }
+
+    @Override public void attach(Linker linker) {
+      entry.value.attach(linker);
+    }
+
+    @Override public void injectMembers(Map.Entry<K, Provider<?>> t) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public Map.Entry<K, Provider<?>> get() {
+      return entry;
+    }
+
+    // public void getDependencies() not overridden.
+    // We don't add the entry's value because it isn't used until the value is provided.
+
+    @Override void getLinkedDependencies(Set<Binding<?>> linkedBindings) {
+      linkedBindings.add(entry.value);
+    }
+
+    @Override public String toString() {
+      return entry.toString();
+    }
+  }
+
+  private static final class Entry<K> implements Map.Entry<K, Provider<?>> {
+    private final K key;
+    private final Binding<?> value;
+
+    Entry(K key, Binding<?> value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override public K getKey() {
+      return key;
+    }
+
+    @Override public Provider<?> getValue() {
+      return value;
+    }
+
+    @Override public Provider<?> setValue(Provider<?> value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      return (key == null ? other.getKey() == null : key.equals(other.getKey()))
+          && value.equals(other.getValue());
+    }
+
+    @Override public int hashCode() {
+      return (key == null ? 0 : key.hashCode()) ^ value.hashCode();
+    }
+
+    @Override public String toString() {
+      return key + "=" + value;
+    }
+  }
+}
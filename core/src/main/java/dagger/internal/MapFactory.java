@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.inject.Provider;
+
+/**
+ * A {@link Factory} implementation used to implement {@link Map} bindings. This factory returns
+ * a {@link Map} whose values are populated by calls to their {@link Provider#get} methods. The
+ * keys are fixed when the factory is built, so every map is created at its final size. If every
+ * provider is scoped or constant those calls would always return the same maps, so the first
+ * result is returned by every later call.
+ */
+public final class MapFactory<V> implements Factory<Map<String, V>> {
+  /** Returns a builder for a factory of a map with {@code size} entries. */
+  public static <V> Builder<V> builder(int size) {
+    return new Builder<V>(size);
+  }
+
+  /**
+   * Returns a factory of the map from each key of the maps created by {@code mapFactory} to the
+   * provider of its value. The map is created once and no values are provided until their
+   * providers are called.
+   */
+  public static <V> Factory<Map<String, Provider<V>>> providersOf(
+      Provider<Map<String, V>> mapFactory) {
+    if (!(mapFactory instanceof MapFactory)) {
+      throw new IllegalArgumentException(mapFactory + " is not a MapFactory");
+    }
+    return InstanceFactory.create(((MapFactory<V>) mapFactory).providers);
+  }
+
+  private final Map<String, Provider<V>> providers;
+
+  /** True if the providers always return the same values. */
+  private final boolean constant;
+
+  /** The first result of {@link #get}, if the factory is constant. */
+  private volatile Map<String, V> cached;
+
+  private MapFactory(LinkedHashMap<String, Provider<V>> providers) {
+    this.providers = Collections.unmodifiableMap(providers);
+    boolean constant = true;
+    for (Provider<V> provider : providers.values()) {
+      constant &= provider instanceof ScopedProvider || provider instanceof LockingScopedProvider
+          || provider instanceof ReusableProvider || provider instanceof InstanceFactory;
+    }
+    this.constant = constant;
+  }
+
+  /**
+   * Returns an unmodifiable {@link Map} whose iteration order is that in which its entries were
+   * added to the builder.
+   *
+   * @throws NullPointerException if any of the providers returns {@code null}
+   */
+  @Override
+  public Map<String, V> get() {
+    Map<String, V> result = cached;
+    if (result != null) {
+      return result;
+    }
+    LinkedHashMap<String, V> values = MapBinding.newLinkedHashMapWithExpectedSize(providers.size());
+    for (Map.Entry<String, Provider<V>> entry : providers.entrySet()) {
+      V value = entry.getValue().get();
+      if (value == null) {
+        throw new NullPointerException(entry.getValue() + " returned null");
+      }
+      values.put(entry.getKey(), value);
+    }
+    result = Collections.unmodifiableMap(values);
+    if (constant) {
+      cached = result;
+    }
+    return result;
+  }
+
+  /** Collects the entries of a {@link MapFactory}. */
+  public static final class Builder<V> {
+    private final LinkedHashMap<String, Provider<V>> providers;
+
+    private Builder(int size) {
+      this.providers = MapBinding.newLinkedHashMapWithExpectedSize(size);
+    }
+
+    /**
+     * Adds the entry from {@code key} to the value provided by {@code provider}.
+     *
+     * @throws IllegalStateException if an entry for {@code key} was already added.
+     */
+    public Builder<V> put(String key, Provider<V> provider) {
+      if (key == null) {
+        throw new NullPointerException("key");
+      }
+      if (provider == null) {
+        throw new NullPointerException("provider");
+      }
+      if (providers.put(key, provider) != null) {
+        throw new IllegalStateException("Duplicate map key " + key);
+      }
+      return this;
+    }
+
+    public MapFactory<V> build() {
+      return new MapFactory<V>(providers);
+    }
+  }
+}
@@ -15,39 +15,74 @@
  */
 package dagger.internal;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * An abstract supertype that provides
- * <a href="http://en.wikipedia.org/wiki/Memoize">memoization</a> for idempotent operations that
- * <i>may</i> be computed more than once, but for which performance is prohibitive. Subclasses
- * implement the {@link #create} method with the operation to be memoized, while callers invoke the
- * {@link #get} method to utilize the memoization.
+ * <a href="http://en.wikipedia.org/wiki/Memoize">memoization</a> for operations whose
+ * performance is prohibitive. Subclasses implement the {@link #create} method with the operation
+ * to be memoized, while callers invoke the {@link #get} method to utilize the memoization.
  *
- * <p>Synchronization on this class is implemented using a {@link ReadWriteLock}. Multiple threads
- * may accessed previously memoized results without contention.
+ * <p>Memoized results are read without locking. {@link #create} runs at most once per key at a
+ * time: threads that request a key while it is being created wait for that result rather than
+ * creating their own. If {@code create} throws, the waiting threads get the same exception and
+ * a later request tries again.
  *
- * <p>This class is implemented such that concurrent requests for the same key may result in
- * simultaneous computation in multiple threads - the instance of the result that is persisted for
- * subsequent invocations in not guaranteed.
+ * <p>Keys may be held weakly and compared by identity, so that memoizing doesn't prevent keys
+ * like class loaders from being garbage collected. Results of collected keys are dropped. Results
+ * may be held weakly too, for results that would otherwise keep their own keys reachable; a
+ * result that was collected is created again when next requested.
  *
- * <p><b>Warning:</b> there is no eviction. Large input sets will result in growth without bound.
+ * <p><b>Warning:</b> unless a maximum size is given there is no eviction. Large input sets will
+ * result in growth without bound.
  */
 abstract class Memoizer<K, V> {
-  private final Map<K, V> map;
-  private final Lock readLock;
-  private final Lock writeLock;
+  /** Maps keys, or {@link WeakKey}s, to results or to the {@link Creation} computing them. */
+  private final ConcurrentHashMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+  private final int maxSize;
+  private final ReferenceQueue<K> collectedKeys;
+  private final boolean weakValues;
 
   Memoizer() {
-    // Don't use LinkedHashMap. This is a performance-oriented class and we don't want overhead
-    this.map = new HashMap<K, V>();
-    ReadWriteLock lock = new ReentrantReadWriteLock();
-    this.readLock = lock.readLock();
-    this.writeLock = lock.writeLock();
+    this(Integer.MAX_VALUE, false);
+  }
+
+  /**
+   * @param maxSize the most results to keep. Once full, an arbitrary result is evicted for each
+   *     new one.
+   */
+  Memoizer(int maxSize) {
+    this(maxSize, false);
+  }
+
+  /**
+   * @param maxSize the most results to keep. Once full, an arbitrary result is evicted for each
+   *     new one.
+   * @param weakKeys true to hold keys weakly and compare them by identity.
+   */
+  Memoizer(int maxSize, boolean weakKeys) {
+    this(maxSize, weakKeys, false);
+  }
+
+  /**
+   * @param maxSize the most results to keep. Once full, an arbitrary result is evicted for each
+   *     new one.
+   * @param weakKeys true to hold keys weakly and compare them by identity.
+   * @param weakValues true to hold results weakly, and create them again once collected. See
+   *     {@link #holdsWeakly}.
+   */
+  Memoizer(int maxSize, boolean weakKeys, boolean weakValues) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize <= 0");
+    }
+    this.maxSize = maxSize;
+    this.collectedKeys = weakKeys ? new ReferenceQueue<K>() : null;
+    this.weakValues = weakValues;
   }
 
   final V get(K key) {
@@ -56,40 +91,219 @@ abstract class Memoizer<K, V> {
     }
 
     // check to see if we already have a value
-    readLock.lock();
-    try {
-      V value = map.get(key);
-      if (value != null) {
-        return value;
+    Object lookupKey = collectedKeys != null ? new LookupKey(key) : key;
+    Object value = map.get(lookupKey);
+    if (value != null && !(value instanceof Memoizer.Creation)) {
+      V result = result(value);
+      if (result != null) {
+        return result;
+      }
+      map.remove(lookupKey, value); // The result was collected.
+      value = null;
+    }
+    return createOrAwait(key, value);
+  }
+
+  private V createOrAwait(K key, Object existing) {
+    while (existing == null) {
+      expungeCollectedKeys();
+      Creation created = new Creation();
+      Object mapKey = collectedKeys != null ? new WeakKey<K>(key, collectedKeys) : key;
+      Object raced = map.putIfAbsent(mapKey, created);
+      if (raced == null) {
+        evictIfFull(mapKey);
+        return created.run(key, mapKey);
+      }
+      if (!(raced instanceof Memoizer.Creation)) {
+        V result = result(raced);
+        if (result != null) {
+          return result;
+        }
+        map.remove(mapKey, raced); // The result was collected.
+        continue;
       }
-    } finally {
-      readLock.unlock();
+      existing = raced;
     }
+    @SuppressWarnings("unchecked") // Creations are only made by this memoizer.
+    Creation creation = (Creation) existing;
+    return creation.await();
+  }
 
-    // create a new value.  this may race and we might create more than one instance, but that's ok
-    V newValue = create(key);
-    if (newValue == null) {
-      throw new NullPointerException("create returned null");
+  /** Returns the result stored as {@code value}, or null if it was held weakly and collected. */
+  private V result(Object value) {
+    if (value instanceof WeakValue) {
+      @SuppressWarnings("unchecked") // Only results are held weakly.
+      V result = ((WeakValue<V>) value).get();
+      return result;
     }
+    @SuppressWarnings("unchecked") // Only creations and results are stored.
+    V result = (V) value;
+    return result;
+  }
 
-    // write the new value and return it
-    writeLock.lock();
-    try {
-      map.put(key, newValue);
-      return newValue;
-    } finally {
-      writeLock.unlock();
+  private void evictIfFull(Object added) {
+    if (maxSize == Integer.MAX_VALUE || map.size() <= maxSize) {
+      return;
+    }
+    for (Iterator<Object> i = map.keySet().iterator(); i.hasNext(); ) {
+      if (i.next() != added) {
+        i.remove();
+        return;
+      }
     }
   }
 
+  private void expungeCollectedKeys() {
+    if (collectedKeys == null) {
+      return;
+    }
+    Reference<? extends K> collected;
+    while ((collected = collectedKeys.poll()) != null) {
+      map.remove(collected);
+    }
+  }
+
+  /** Forgets all memoized results. */
+  final void clear() {
+    map.clear();
+    expungeCollectedKeys();
+  }
+
   abstract V create(K key);
 
+  /**
+   * Returns true to hold the result for {@code key} weakly. By default results are held weakly
+   * if this memoizer was created to hold them weakly.
+   */
+  boolean holdsWeakly(K key) {
+    return weakValues;
+  }
+
   @Override public final String toString() {
-    readLock.lock();
-    try {
-      return map.toString();
-    } finally {
-      readLock.unlock();
+    return map.toString();
+  }
+
+  /** A result being created by one thread, and awaited by any others that need it. */
+  private final class Creation {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Thread creator = Thread.currentThread();
+    private V value;
+    private Throwable failure;
+
+    V run(K key, Object mapKey) {
+      try {
+        V newValue = create(key);
+        if (newValue == null) {
+          throw new NullPointerException("create returned null");
+        }
+        value = newValue;
+        map.replace(mapKey, this, holdsWeakly(key) ? new WeakValue<V>(newValue) : newValue);
+        return newValue;
+      } catch (RuntimeException e) {
+        failure = e;
+        map.remove(mapKey, this);
+        throw e;
+      } catch (Error e) {
+        failure = e;
+        map.remove(mapKey, this);
+        throw e;
+      } finally {
+        done.countDown();
+      }
+    }
+
+    V await() {
+      if (creator == Thread.currentThread() && done.getCount() != 0) {
+        throw new IllegalStateException("Recursive call to create()");
+      }
+      boolean interrupted = false;
+      try {
+        while (true) {
+          try {
+            done.await();
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      return value;
+    }
+
+    @Override public String toString() {
+      return "Creation";
+    }
+  }
+
+  /** A weakly held key, equal to keys holding the same referent. */
+  private static final class WeakKey<K> extends WeakReference<K> {
+    private final int hashCode;
+
+    WeakKey(K referent, ReferenceQueue<K> queue) {
+      super(referent, queue);
+      this.hashCode = System.identityHashCode(referent);
+    }
+
+    @Override public int hashCode() {
+      return hashCode;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      Object referent = get();
+      if (referent == null) {
+        return false;
+      }
+      if (o instanceof WeakKey) {
+        return ((WeakKey<?>) o).get() == referent;
+      }
+      return o instanceof LookupKey && ((LookupKey) o).referent == referent;
+    }
+
+    @Override public String toString() {
+      return String.valueOf(get());
+    }
+  }
+
+  /** A weakly held result. */
+  private static final class WeakValue<V> extends WeakReference<V> {
+    WeakValue(V referent) {
+      super(referent);
+    }
+
+    @Override public String toString() {
+      return String.valueOf(get());
+    }
+  }
+
+  /** Looks up a {@link WeakKey} without creating a reference. */
+  private static final class LookupKey {
+    private final Object referent;
+
+    LookupKey(Object referent) {
+      this.referent = referent;
+    }
+
+    @Override public int hashCode() {
+      return System.identityHashCode(referent);
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o instanceof WeakKey) {
+        return ((WeakKey<?>) o).get() == referent;
+      }
+      return o instanceof LookupKey && ((LookupKey) o).referent == referent;
     }
   }
 }
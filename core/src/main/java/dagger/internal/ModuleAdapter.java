@@ -21,6 +21,16 @@ package dagger.internal;
  * Extracts bindings from an {@code @Module}-annotated class.
  */
 public abstract class ModuleAdapter<T> {
+  private static final String[] NO_KEYS = new String[0];
+
+  /** Whether each adapter class overrides {@link #getBindings}, looked up once per class. */
+  private static final Memoizer<Class<?>, Boolean> DECLARES_GET_BINDINGS =
+      new Memoizer<Class<?>, Boolean>(Integer.MAX_VALUE, true) {
+        @Override protected Boolean create(Class<?> adapterClass) {
+          return declaresGetBindings(adapterClass);
+        }
+      };
+
   public final Class<T> moduleClass;
   public final String[] injectableTypes;
   public final Class<?>[] staticInjections;
@@ -29,9 +39,53 @@ public abstract class ModuleAdapter<T> {
   public final boolean complete;
   public final boolean library;
 
+  /**
+   * The keys of the bindings this adapter creates on demand with {@link #getBinding}. The
+   * index of a key is the index to pass to {@code getBinding}.
+   */
+  public final String[] providesKeys;
+
+  /**
+   * The names of the {@code @Provides} methods of the module class that provide {@link
+   * #providesKeys}, at the same indexes, or null if the adapter doesn't list them. They
+   * describe bindings that haven't been created yet.
+   */
+  public final String[] providesMethods;
+
+  /**
+   * True if this adapter overrides {@link #getBindings}, so its module must be instantiated to
+   * install its bindings. Otherwise the module is only instantiated once one of the bindings
+   * created by {@link #getBinding} first provides or injects; linking and validating the graph
+   * don't instantiate it.
+   */
+  public final boolean eagerBindings;
+
   protected ModuleAdapter(Class<T> moduleClass, String[] injectableTypes,
       Class<?>[] staticInjections, boolean overrides, Class<?>[] includes, boolean complete,
       boolean library) {
+    this(moduleClass, injectableTypes, staticInjections, overrides, includes, complete, library,
+        NO_KEYS);
+  }
+
+  /**
+   * @param providesKeys the keys of the bindings that are only created once the linker first
+   *     requests them, by calling {@link #getBinding}.
+   */
+  protected ModuleAdapter(Class<T> moduleClass, String[] injectableTypes,
+      Class<?>[] staticInjections, boolean overrides, Class<?>[] includes, boolean complete,
+      boolean library, String[] providesKeys) {
+    this(moduleClass, injectableTypes, staticInjections, overrides, includes, complete, library,
+        providesKeys, null);
+  }
+
+  /**
+   * @param providesKeys the keys of the bindings that are only created once the linker first
+   *     requests them, by calling {@link #getBinding}.
+   * @param providesMethods the names of the methods providing {@code providesKeys}.
+   */
+  protected ModuleAdapter(Class<T> moduleClass, String[] injectableTypes,
+      Class<?>[] staticInjections, boolean overrides, Class<?>[] includes, boolean complete,
+      boolean library, String[] providesKeys, String[] providesMethods) {
     this.moduleClass = moduleClass;
     this.injectableTypes = injectableTypes;
     this.staticInjections = staticInjections;
@@ -39,6 +93,18 @@ public abstract class ModuleAdapter<T> {
     this.includes = includes;
     this.complete = complete;
     this.library = library;
+    this.providesKeys = providesKeys;
+    this.providesMethods = providesMethods;
+    this.eagerBindings = DECLARES_GET_BINDINGS.get(getClass());
+  }
+
+  private static boolean declaresGetBindings(Class<?> adapterClass) {
+    try {
+      return adapterClass.getMethod("getBindings", BindingsGroup.class, Object.class)
+          .getDeclaringClass() != ModuleAdapter.class;
+    } catch (NoSuchMethodException e) {
+      return true; // Renamed, for example by an obfuscator. Assume it contributes bindings.
+    }
   }
 
   /**
@@ -50,6 +116,17 @@ public abstract class ModuleAdapter<T> {
     // no-op;
   }
 
+  /**
+   * Returns a new binding for {@code providesKeys[index]}, provided by {@code module}. The
+   * returned binding must be linked before it can be used to inject values.
+   * {@code module} is null if the module hasn't been instantiated yet; such bindings are only
+   * linked, and never provide or inject.
+   */
+  @SuppressWarnings("unused")
+  protected Binding<?> getBinding(int index, T module) {
+    throw new UnsupportedOperationException("No binding " + index + " on " + getClass().getName());
+  }
+
   /**
    * Returns a new instance of the module class created using a no-args
    * constructor. Only used when a manually-constructed module is not supplied.
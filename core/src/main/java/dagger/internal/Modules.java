@@ -17,8 +17,13 @@
 package dagger.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Static helper for organizing modules.
@@ -29,36 +34,110 @@ public final class Modules {
 
   /**
    * Returns a full set of module adapters, including module adapters for included
-   * modules.
+   * modules. Modules that weren't passed in as instances are only instantiated once one of
+   * their bindings needs them.
    */
   public static ArrayList<ModuleWithAdapter> loadModules(Loader loader,
       Object[] seedModulesOrClasses) {
+    return loadModules(loader, seedModulesOrClasses, Scoping.DEFAULT);
+  }
+
+  /**
+   * Returns a full set of module adapters, including module adapters for included
+   * modules. Modules that weren't passed in as instances are only instantiated once one of
+   * their bindings needs them, guarded as {@code scoping} selects.
+   */
+  public static ArrayList<ModuleWithAdapter> loadModules(Loader loader,
+      Object[] seedModulesOrClasses, Scoping scoping) {
     int seedModuleCount = seedModulesOrClasses.length;
-    ArrayList<ModuleWithAdapter> result = new ArrayList<ModuleWithAdapter>(seedModuleCount);
-    HashSet<Class<?>> visitedClasses = new HashSet<Class<?>>(seedModuleCount);
-    // Add all seed classes to visited classes right away, so that we won't instantiate modules for
-    // them in collectIncludedModulesRecursively
-    // Iterate over seedModulesOrClasses in reverse, so that if multiple instances/classes of the
-    // same module are provided, the later one is used (this matches previous behavior which some
-    // code came to depend on.)
-    for (int i = seedModuleCount-1; i >= 0; i--) {
+    Class<?>[] seedClasses = new Class<?>[seedModuleCount];
+    // If multiple instances/classes of the same module are provided, the later one is used (this
+    // matches previous behavior which some code came to depend on.)
+    Map<Class<?>, Object> seedModules = new HashMap<Class<?>, Object>(seedModuleCount);
+    for (int i = 0; i < seedModuleCount; i++) {
       Object moduleOrClass = seedModulesOrClasses[i];
       if (moduleOrClass instanceof Class<?>) {
-        if (visitedClasses.add((Class<?>) moduleOrClass)) {
-          ModuleAdapter<?> moduleAdapter = loader.getModuleAdapter((Class<?>) moduleOrClass);
-          result.add(new ModuleWithAdapter(moduleAdapter, moduleAdapter.newModule()));
-        }
+        seedClasses[i] = (Class<?>) moduleOrClass;
+        seedModules.remove(moduleOrClass);
       } else {
-        if (visitedClasses.add(moduleOrClass.getClass())) {
-          ModuleAdapter<?> moduleAdapter = loader.getModuleAdapter(moduleOrClass.getClass());
-          result.add(new ModuleWithAdapter(moduleAdapter, moduleOrClass));
-        }
+        seedClasses[i] = moduleOrClass.getClass();
+        seedModules.put(seedClasses[i], moduleOrClass);
+      }
+    }
+    List<ModuleAdapter<?>> adapters = loader.getModuleAdapters(Arrays.asList(seedClasses));
+    int count = adapters.size();
+    ArrayList<ModuleWithAdapter> result = new ArrayList<ModuleWithAdapter>(count);
+    for (int i = 0; i < count; i++) {
+      ModuleAdapter<?> adapter = adapters.get(i);
+      result.add(new ModuleWithAdapter(
+          adapter, seedModules.get(adapter.moduleClass), true, scoping.locks));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the module adapters for {@code seedClasses} and the modules they include, in the
+   * same order as {@link #loadModules}, without instantiating any modules.
+   */
+  public static List<ModuleAdapter<?>> loadModuleAdapters(Loader loader,
+      Class<?>[] seedClasses) {
+    return loader.getModuleAdapters(Arrays.asList(seedClasses));
+  }
+
+  /** Returns the module adapters for the include closure of {@code seedClasses}, uncached. */
+  static List<ModuleAdapter<?>> collectModuleAdapters(Loader loader,
+      List<Class<?>> seedClasses) {
+    ArrayList<ModuleAdapter<?>> result = new ArrayList<ModuleAdapter<?>>(seedClasses.size());
+    HashSet<Class<?>> visitedClasses = new HashSet<Class<?>>(seedClasses.size());
+    // Add all seed classes to visited classes right away, so that we won't add them again in
+    // collectIncludedAdaptersRecursively. Iterate in reverse so that the later of duplicate
+    // seeds determines the order.
+    for (int i = seedClasses.size() - 1; i >= 0; i--) {
+      if (visitedClasses.add(seedClasses.get(i))) {
+        result.add(loader.getModuleAdapter(seedClasses.get(i)));
       }
     }
     int dedupedSeedModuleCount = result.size();
     for (int i = 0; i < dedupedSeedModuleCount; i++) {
-      ModuleAdapter<?> seedAdapter = result.get(i).getModuleAdapter();
-      collectIncludedModulesRecursively(loader, seedAdapter, result, visitedClasses);
+      collectIncludedAdaptersRecursively(loader, result.get(i), result, visitedClasses);
+    }
+    result.trimToSize();
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Pairs each of {@code adapters} with the module at the same index of {@code modules}, or with
+   * a new instance of its module, created when first needed, if that is null.
+   */
+  public static ArrayList<ModuleWithAdapter> instantiate(List<ModuleAdapter<?>> adapters,
+      Object[] modules) {
+    return instantiate(adapters, modules, Scoping.DEFAULT);
+  }
+
+  /**
+   * Pairs each of {@code adapters} with the module at the same index of {@code modules}, or with
+   * a new instance of its module, created when first needed as {@code scoping} selects, if that
+   * is null.
+   */
+  public static ArrayList<ModuleWithAdapter> instantiate(List<ModuleAdapter<?>> adapters,
+      Object[] modules, Scoping scoping) {
+    int count = adapters.size();
+    ArrayList<ModuleWithAdapter> result = new ArrayList<ModuleWithAdapter>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(new ModuleWithAdapter(adapters.get(i), modules[i], true, scoping.locks));
+    }
+    return result;
+  }
+
+  /**
+   * Pairs each of {@code adapters} with no module, for graphs that are linked but never
+   * provide anything.
+   */
+  public static ArrayList<ModuleWithAdapter> withoutModules(List<ModuleAdapter<?>> adapters) {
+    int count = adapters.size();
+    ArrayList<ModuleWithAdapter> result = new ArrayList<ModuleWithAdapter>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(new ModuleWithAdapter(adapters.get(i), null, false, false));
     }
     return result;
   }
@@ -68,34 +147,73 @@ public final class Modules {
    */
   public static class ModuleWithAdapter {
     private final ModuleAdapter<?> moduleAdapter;
-    private final Object module;
+    private final boolean instantiate;
+    /** Guards creating the module, or null to use this object's monitor. */
+    private final ReentrantLock lock;
+    private volatile Object module;
 
-    ModuleWithAdapter(ModuleAdapter<?> moduleAdapter, Object module) {
+    /**
+     * @param module the module instance, or null to create one with {@link
+     *     ModuleAdapter#newModule} when first needed if {@code instantiate} is true.
+     * @param locks true to guard creating the module with a lock instead of a monitor.
+     */
+    ModuleWithAdapter(ModuleAdapter<?> moduleAdapter, Object module, boolean instantiate,
+        boolean locks) {
       this.moduleAdapter = moduleAdapter;
       this.module = module;
+      this.instantiate = instantiate;
+      this.lock = locks && module == null && instantiate ? new ReentrantLock() : null;
     }
 
     public ModuleAdapter<?> getModuleAdapter() {
       return moduleAdapter;
     }
 
+    /** Returns the module, creating it the first time if it wasn't supplied. */
     public Object getModule() {
+      Object result = module;
+      if (result == null && instantiate) {
+        if (lock != null) {
+          lock.lock();
+          try {
+            result = newModuleIfAbsent();
+          } finally {
+            lock.unlock();
+          }
+        } else {
+          synchronized (this) {
+            result = newModuleIfAbsent();
+          }
+        }
+      }
+      return result;
+    }
+
+    /** Returns the module if it was supplied or has been created, or null otherwise. */
+    Object moduleIfCreated() {
       return module;
     }
+
+    private Object newModuleIfAbsent() {
+      Object result = module;
+      if (result == null) {
+        module = result = moduleAdapter.newModule();
+      }
+      return result;
+    }
   }
 
   /**
    * Fills {@code result} with the module adapters for the includes of {@code
    * adapter}, and their includes recursively.
    */
-  private static void collectIncludedModulesRecursively(Loader plugin, ModuleAdapter<?> adapter,
-      List<ModuleWithAdapter> result, HashSet<Class<?>> visitedClasses) {
+  private static void collectIncludedAdaptersRecursively(Loader plugin, ModuleAdapter<?> adapter,
+      List<ModuleAdapter<?>> result, HashSet<Class<?>> visitedClasses) {
     for (Class<?> include : adapter.includes) {
-      if (!visitedClasses.contains(include)) {
+      if (visitedClasses.add(include)) {
         ModuleAdapter<?> includedModuleAdapter = plugin.getModuleAdapter(include);
-        result.add(new ModuleWithAdapter(includedModuleAdapter, includedModuleAdapter.newModule()));
-        visitedClasses.add(include);
-        collectIncludedModulesRecursively(plugin, includedModuleAdapter, result, visitedClasses);
+        result.add(includedModuleAdapter);
+        collectIncludedAdaptersRecursively(plugin, includedModuleAdapter, result, visitedClasses);
       }
     }
   }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Set;
+
+/**
+ * Stands in for a {@code @Provides} binding that its module adapter only creates once the
+ * linker first requests it. It reserves the binding's key in a {@link BindingsGroup}, so
+ * duplicate bindings and overrides are detected as if the binding had been created.
+ */
+final class PendingProvidesBinding extends Binding<Object> {
+  private final Modules.ModuleWithAdapter module;
+  private final ModuleAdapter<Object> adapter;
+  private final int index;
+
+  @SuppressWarnings("unchecked") // The module is an instance of the adapter's module class.
+  PendingProvidesBinding(Modules.ModuleWithAdapter module, int index) {
+    super(module.getModuleAdapter().providesKeys[index], null, NOT_SINGLETON,
+        module.getModuleAdapter().moduleClass);
+    this.module = module;
+    this.adapter = (ModuleAdapter<Object>) module.getModuleAdapter();
+    this.index = index;
+  }
+
+  /**
+   * Returns a new, unlinked binding for this binding's key. If the module hasn't been
+   * instantiated yet, the returned binding links without it and only instantiates it when it
+   * first provides or injects.
+   */
+  Binding<?> create() {
+    Object instance = module.moduleIfCreated();
+    return instance != null ? newBinding(instance) : new ModuleDeferringBinding(this);
+  }
+
+  private Binding<Object> newBinding(Object instance) {
+    @SuppressWarnings("unchecked") // The adapter creates a binding of the key's type.
+    Binding<Object> binding = (Binding<Object>) adapter.getBinding(index, instance);
+    if (!provideKey.equals(binding.provideKey)) {
+      throw new IllegalStateException(adapter.getClass().getName() + " created " + binding
+          + " for " + provideKey);
+    }
+    return binding;
+  }
+
+  @Override public String toString() {
+    String moduleName = adapter.moduleClass.getCanonicalName();
+    if (moduleName == null) {
+      moduleName = adapter.moduleClass.getName();
+    }
+    return (adapter.providesMethods != null)
+        ? "PendingProvidesBinding[key=" + provideKey
+            + " method=" + moduleName + "." + adapter.providesMethods[index] + "()]"
+        : "PendingProvidesBinding[key=" + provideKey + " module=" + moduleName + "]";
+  }
+
+  /**
+   * Links a binding created without its module, and creates the binding that provides from the
+   * module once it is first used. Linking, validating and warming up a graph therefore don't
+   * instantiate its modules.
+   */
+  private static final class ModuleDeferringBinding extends Binding<Object> {
+    private final PendingProvidesBinding pending;
+    /** Requests the dependencies when linked, but never provides. */
+    private final Binding<Object> linking;
+    private volatile Linker linker;
+    private volatile Binding<Object> delegate;
+
+    ModuleDeferringBinding(PendingProvidesBinding pending) {
+      this(pending, pending.newBinding(null));
+    }
+
+    private ModuleDeferringBinding(PendingProvidesBinding pending, Binding<Object> linking) {
+      super(linking.provideKey, linking.membersKey, linking.isSingleton(), linking.requiredBy);
+      this.pending = pending;
+      this.linking = linking;
+      if (linking.scope() != null) {
+        setScope(linking.scope());
+      }
+    }
+
+    @Override public void attach(Linker linker) {
+      this.linker = linker;
+      linking.attach(linker);
+    }
+
+    @Override public Object get() {
+      return delegate().get();
+    }
+
+    @Override public void injectMembers(Object t) {
+      delegate().injectMembers(t);
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      linking.getDependencies(get, injectMembers);
+    }
+
+    @Override void getLinkedDependencies(Set<Binding<?>> linked) {
+      linking.getLinkedDependencies(linked);
+    }
+
+    /**
+     * Returns the binding that provides from the module, instantiating the module and attaching
+     * the binding the first time. Its dependencies were linked with this binding, so attaching
+     * it only looks them up. Threads that race here may each create a binding; they share the
+     * module and the dependencies, so either binding will do.
+     */
+    private Binding<Object> delegate() {
+      Binding<Object> result = delegate;
+      if (result == null) {
+        result = pending.newBinding(pending.module.getModule());
+        Linker linker = this.linker;
+        if (linker.isConcurrent()) {
+          attachLate(result, linker);
+        } else {
+          synchronized (linker) {
+            attachLate(result, linker);
+          }
+        }
+        delegate = result;
+      }
+      return result;
+    }
+
+    private static void attachLate(Binding<?> binding, Linker linker) {
+      binding.attach(linker);
+      linker.linkRequested();
+    }
+
+    @Override public String toString() {
+      return linking.toString();
+    }
+  }
+}
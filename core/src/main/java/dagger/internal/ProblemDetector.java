@@ -48,6 +48,15 @@ public final class ProblemDetector {
     }
   }
 
+  /** Detects map keys that more than one {@code @Provides(type = MAP)} method contributes. */
+  public void detectDuplicateMapKeys(Collection<Binding<?>> bindings) {
+    for (Binding<?> binding : bindings) {
+      if (binding instanceof SetBinding) {
+        MapBinding.checkKeys((SetBinding<?>) binding);
+      }
+    }
+  }
+
   private static void detectCircularDependencies(Collection<Binding<?>> bindings,
       List<Binding<?>> path) {
     for (Binding<?> binding : bindings) {
@@ -83,6 +92,7 @@ public final class ProblemDetector {
 
   public void detectProblems(Collection<Binding<?>> values) {
     detectCircularDependencies(values);
+    detectDuplicateMapKeys(values);
     detectUnusedBinding(values);
   }
 
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.inject.Provider;
+
+/**
+ * Injects a {@code Map<K, Provider<V>>} built from the set of entries contributed by
+ * {@code @Provides(type = MAP)} methods. Since the entries never change, the map is built once
+ * and reused, and no value is created until its provider is called.
+ */
+final class ProviderMapBinding<K, V> extends Binding<Map<K, Provider<V>>> {
+  private final BindingKey entriesKey;
+  private final ClassLoader classLoader;
+  private Binding<?> delegate;
+  private volatile Map<K, Provider<V>> cached;
+
+  ProviderMapBinding(String key, Object requiredBy, ClassLoader classLoader,
+      BindingKey entriesKey) {
+    super(key, null, false, requiredBy);
+    this.classLoader = classLoader;
+    this.entriesKey = entriesKey;
+  }
+
+  @Override public void attach(Linker linker) {
+    delegate = linker.requestBinding(entriesKey, requiredBy, classLoader);
+  }
+
+  @Override public void injectMembers(Map<K, Provider<V>> t) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws IllegalStateException if more than one entry was contributed for a key.
+   */
+  @SuppressWarnings("unchecked") // At runtime we know the delegate provides a set of entries.
+  @Override public Map<K, Provider<V>> get() {
+    Map<K, Provider<V>> result = cached;
+    if (result != null) {
+      return result;
+    }
+    Set<Map.Entry<K, Provider<V>>> entries = (Set<Map.Entry<K, Provider<V>>>) delegate.get();
+    LinkedHashMap<K, Provider<V>> providers =
+        MapBinding.newLinkedHashMapWithExpectedSize(entries.size());
+    for (Map.Entry<K, Provider<V>> entry : entries) {
+      Provider<V> clobbered = providers.put(entry.getKey(), entry.getValue());
+      if (clobbered != null) {
+        throw new IllegalStateException("Duplicate map key " + entry.getKey() + " for "
+            + provideKey + ":\n    " + clobbered + "\n    " + entry.getValue());
+      }
+    }
+    cached = result = Collections.unmodifiableMap(providers);
+    return result;
+  }
+
+  // public void getDependencies() not overridden.
+  // We don't add 'delegate' because the entries' values are only used when their providers are.
+
+  @Override void getLinkedDependencies(Set<Binding<?>> linkedBindings) {
+    if (delegate != null) {
+      linkedBindings.add(delegate);
+    }
+  }
+}
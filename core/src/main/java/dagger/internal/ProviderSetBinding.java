@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Set;
+import javax.inject.Provider;
+
+/**
+ * Injects a {@code Set<Provider<T>>} whose providers are the contributors of the set binding of
+ * {@code Set<T>}, so that no contributor is instantiated until its provider is called.
+ */
+final class ProviderSetBinding<T> extends Binding<Set<Provider<T>>> {
+  private final BindingKey setKey;
+  private final ClassLoader classLoader;
+  private Binding<?> delegate;
+
+  public ProviderSetBinding(
+      String key, Object requiredBy, ClassLoader classLoader, BindingKey setKey) {
+    super(key, null, false, requiredBy);
+    this.classLoader = classLoader;
+    this.setKey = setKey;
+  }
+
+  @Override public void attach(Linker linker) {
+    delegate = linker.requestBinding(setKey, requiredBy, classLoader);
+  }
+
+  @Override public void injectMembers(Set<Provider<T>> t) {
+    throw new UnsupportedOperationException();
+  }
+
+  @SuppressWarnings("unchecked") // At runtime we know the delegate provides a Set<T>.
+  @Override public Set<Provider<T>> get() {
+    if (delegate instanceof SetBinding) {
+      return ((SetBinding<T>) delegate).providers();
+    }
+    // A unique binding of Set<T> has no contributors to defer to.
+    return SetBinding.providersOf((Set<T>) delegate.get());
+  }
+
+  // public void getDependencies() not overridden.
+  // We don't add 'delegate' because its contributors are only used when their providers are.
+
+  @Override void getLinkedDependencies(Set<Binding<?>> linkedBindings) {
+    if (delegate != null) {
+      linkedBindings.add(delegate);
+    }
+  }
+}
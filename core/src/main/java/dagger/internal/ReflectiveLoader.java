@@ -29,12 +29,31 @@ import dagger.internal.loaders.ReflectiveStaticInjection;
  */
 @Deprecated
 public final class ReflectiveLoader extends Loader {
+  /**
+   * Module adapters by module class. A reflective adapter finds its {@code @Provides} methods
+   * once, so graphs created with the same modules share that work.
+   */
+  private final Memoizer<Class<?>, ModuleAdapter<?>> moduleAdapters =
+      new Memoizer<Class<?>, ModuleAdapter<?>>() {
+        @Override protected ModuleAdapter<?> create(Class<?> type) {
+          return ReflectiveModuleAdapter.create(type);
+        }
+      };
+
+  /** Reflective binding factories by injected class. */
+  private final Memoizer<Class<?>, ReflectiveAtInjectBinding.Factory<?>> atInjectFactories =
+      new Memoizer<Class<?>, ReflectiveAtInjectBinding.Factory<?>>() {
+        @Override protected ReflectiveAtInjectBinding.Factory<?> create(Class<?> type) {
+          return ReflectiveAtInjectBinding.createFactory(type);
+        }
+      };
+
   /**
    * Obtains a {@link ReflectiveModuleAdapter} for {@code module}.
    */
   @SuppressWarnings("unchecked") // cache ensures types match
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<T> type) {
-    return ReflectiveModuleAdapter.create(type);
+    return (ModuleAdapter<T>) moduleAdapters.get(type);
   }
 
   /**
@@ -50,10 +69,16 @@ public final class ReflectiveLoader extends Loader {
     if (type.isInterface()) {
       return null; // Short-circuit since we can't build reflective bindings for interfaces.
     }
-    return ReflectiveAtInjectBinding.createFactory(type).create(mustHaveInjections);
+    return atInjectFactories.get(type).create(mustHaveInjections);
   }
 
   @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
     return ReflectiveStaticInjection.create(injectedClass);
   }
+
+  @Override public void clearCaches() {
+    super.clearCaches();
+    moduleAdapters.clear();
+    atInjectFactories.clear();
+  }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Provider;
+
+/**
+ * A {@link Provider} implementation that memoizes the result of a {@link Factory} instance for
+ * bindings annotated with {@link dagger.Reusable}, without locking. Threads that call
+ * {@link #get} before an instance is kept each get one from the factory, and the first to be
+ * stored is returned from then on.
+ */
+public final class ReusableProvider<T> implements Provider<T> {
+  private final Factory<T> factory;
+  private final AtomicReference<T> instance = new AtomicReference<T>();
+
+  private ReusableProvider(Factory<T> factory) {
+    assert factory != null;
+    this.factory = factory;
+  }
+
+  @Override
+  public T get() {
+    T result = instance.get();
+    if (result == null) {
+      result = factory.get();
+      if (result == null) {
+        throw new NullPointerException(factory + " returned null");
+      }
+      if (!instance.compareAndSet(null, result)) {
+        result = instance.get(); // Another thread's instance was kept first.
+      }
+    }
+    return result;
+  }
+
+  /** Returns a new reusable provider for the given factory. */
+  public static <T> Provider<T> create(Factory<T> factory) {
+    if (factory == null) {
+      throw new NullPointerException();
+    }
+    return new ReusableProvider<T>(factory);
+  }
+}
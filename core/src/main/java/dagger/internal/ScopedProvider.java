@@ -20,6 +20,7 @@ import javax.inject.Provider;
 
 /**
  * A {@link Provider} implementation that memoizes the result of a {@link Factory} instance.
+ * {@link #create} returns a lock-based provider instead if selected by {@link Scoping}.
  *
  * @author Gregory Kick
  * @since 2.0
@@ -56,6 +57,9 @@ public final class ScopedProvider<T> implements Provider<T> {
     if (factory == null) {
       throw new NullPointerException();
     }
+    if (Scoping.USE_LOCKS) {
+      return new LockingScopedProvider<T>(factory);
+    }
     return new ScopedProvider<T>(factory);
   }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+/**
+ * Selects how scoped bindings and lazy injections memoize their instances, for both object graphs
+ * and generated components. By default they use monitors. Setting the system property
+ * {@code dagger.scoping} to {@code locks} before Dagger is first used switches them all to
+ * {@link java.util.concurrent.locks.ReentrantLock}s, which don't pin a virtual thread to its
+ * carrier thread while it blocks in a provision. Locks may also be selected for one graph with
+ * {@link dagger.ObjectGraph.Builder#lockingScopes}, or for one component with {@link
+ * dagger.Component#lockingScopes}.
+ *
+ * <p>An instance holds the choices made for one object graph, and for the graphs that extend it.
+ */
+public final class Scoping {
+  static final String PROPERTY = "dagger.scoping";
+
+  /** True if memoizing implementations should use locks instead of monitors. */
+  static final boolean USE_LOCKS = "locks".equals(property());
+
+  /**
+   * The scoping of graphs that don't select any: locks are used only if the system property
+   * selects them, and custom scope annotations are ignored.
+   */
+  public static final Scoping DEFAULT = new Scoping(USE_LOCKS, false);
+
+  final boolean locks;
+  final boolean scopeContexts;
+
+  /**
+   * @param locks true to memoize instances using locks instead of monitors.
+   * @param scopeContexts true to keep the instances of bindings annotated with a custom scope in
+   *     the {@link dagger.ScopeContext} of that scope; false to ignore custom scope annotations,
+   *     so that such bindings aren't scoped at all.
+   */
+  public Scoping(boolean locks, boolean scopeContexts) {
+    this.locks = locks;
+    this.scopeContexts = scopeContexts;
+  }
+
+  /** Returns true if instances are memoized using locks instead of monitors. */
+  public boolean locks() {
+    return locks;
+  }
+
+  private static String property() {
+    try {
+      return System.getProperty(PROPERTY);
+    } catch (SecurityException e) {
+      return null;
+    }
+  }
+}
@@ -17,10 +17,9 @@
 package dagger.internal;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import javax.inject.Provider;
 
 /**
  * A {@code Binding<T>} which contains contributors (other bindings marked with
@@ -30,7 +29,7 @@ import java.util.Set;
 public final class SetBinding<T> extends Binding<Set<T>> {
 
   public static <T> void add(BindingsGroup bindings, String setKey, Binding<?> binding) {
-    prepareSetBinding(bindings, setKey, binding).contributors.add(Linker.scope(binding));
+    prepareSetBinding(bindings, setKey, binding).contributors.add(bindings.scope(binding));
   }
 
   @SuppressWarnings("unchecked")
@@ -63,6 +62,15 @@ public final class SetBinding<T> extends Binding<Set<T>> {
    */
   private final List<Binding<?>> contributors;
 
+  /** The contributors of this binding and its parents, flattened when first needed. */
+  private volatile Contributors<T> flattened;
+
+  /** The set returned by every call to {@link #get} once every contributor is a singleton. */
+  private volatile Set<T> cached;
+
+  /** The set returned by every call to {@link #providers} once it can't change. */
+  private volatile Set<Provider<T>> cachedProviders;
+
   /**
    * Creates a new {@code SetBinding} with the given "provides" key, and the requiredBy object
    * for traceability.
@@ -101,19 +109,140 @@ public final class SetBinding<T> extends Binding<Set<T>> {
 
   @SuppressWarnings("unchecked") // Only Binding<T> and Set<T> are added to contributors.
   @Override public Set<T> get() {
-    List<T> result = new ArrayList<T>();
-    for (SetBinding<T> setBinding = this; setBinding != null; setBinding = setBinding.parent) {
-      for (int i = 0, size = setBinding.contributors.size(); i < size; i++) {
-        Binding<?> contributor = setBinding.contributors.get(i);
-        Object contribution = contributor.get(); // Let runtime exceptions through.
-        if (contributor.provideKey.equals(provideKey)) {
-          result.addAll((Set<T>) contribution);
+    Set<T> result = cached;
+    if (result != null) {
+      return result;
+    }
+    Contributors<T> contributors = contributors();
+    Binding<?>[] bindings = contributors.bindings;
+    CompactSet.Builder<T> builder;
+    if (contributors.elementsOnly) {
+      builder = new CompactSet.Builder<T>(bindings.length);
+      for (Binding<?> contributor : bindings) {
+        builder.add((T) contributor.get()); // Let runtime exceptions through.
+      }
+    } else {
+      Object[] contributions = new Object[bindings.length];
+      int size = 0;
+      for (int i = 0; i < bindings.length; i++) {
+        contributions[i] = bindings[i].get(); // Let runtime exceptions through.
+        size += contributors.setValues[i] ? ((Set<T>) contributions[i]).size() : 1;
+      }
+      builder = new CompactSet.Builder<T>(size);
+      for (int i = 0; i < bindings.length; i++) {
+        if (contributors.setValues[i]) {
+          for (T element : (Set<T>) contributions[i]) {
+            builder.add(element);
+          }
         } else {
-          result.add((T) contribution);
+          builder.add((T) contributions[i]);
+        }
+      }
+    }
+    result = builder.build();
+    if (contributors.singletons) {
+      cached = result; // Every call would return the same elements.
+    }
+    return result;
+  }
+
+  /**
+   * Returns a set of providers for the elements of this binding's set. Contributors of single
+   * elements are not called until their providers are. Contributors of whole sets must be called
+   * to find their elements, which are then returned by constant providers.
+   */
+  @SuppressWarnings("unchecked") // Only Binding<T> and Set<T> are added to contributors.
+  public Set<Provider<T>> providers() {
+    Set<Provider<T>> result = cachedProviders;
+    if (result != null) {
+      return result;
+    }
+    Contributors<T> contributors = contributors();
+    Binding<?>[] bindings = contributors.bindings;
+    CompactSet.Builder<Provider<T>> builder =
+        new CompactSet.Builder<Provider<T>>(bindings.length);
+    for (int i = 0; i < bindings.length; i++) {
+      if (contributors.setValues[i]) {
+        for (T element : (Set<T>) bindings[i].get()) { // Let runtime exceptions through.
+          builder.add(new ConstantProvider<T>(element));
         }
+      } else {
+        builder.add((Provider<T>) bindings[i]);
+      }
+    }
+    result = builder.build();
+    if (contributors.elementsOnly || contributors.singletons) {
+      cachedProviders = result; // Every call would return the same providers.
+    }
+    return result;
+  }
+
+  /** Returns constant providers for the elements of {@code set}. */
+  static <T> Set<Provider<T>> providersOf(Set<T> set) {
+    CompactSet.Builder<Provider<T>> builder = new CompactSet.Builder<Provider<T>>(set.size());
+    for (T element : set) {
+      builder.add(new ConstantProvider<T>(element));
+    }
+    return builder.build();
+  }
+
+  /** Returns the contributors of this binding and of its parents, in provision order. */
+  Binding<?>[] contributorBindings() {
+    return contributors().bindings;
+  }
+
+  private Contributors<T> contributors() {
+    Contributors<T> contributors = flattened;
+    if (contributors == null) {
+      flattened = contributors = new Contributors<T>(this);
+    }
+    return contributors;
+  }
+
+  /** A provider of an element that was already provided by a contributor of a whole set. */
+  private static final class ConstantProvider<T> implements Provider<T> {
+    private final T value;
+
+    ConstantProvider(T value) {
+      this.value = value;
+    }
+
+    @Override public T get() {
+      return value;
+    }
+
+    @Override public String toString() {
+      return "ConstantProvider[" + value + "]";
+    }
+  }
+
+  /**
+   * The contributors of a set binding and of its parents in provision order, and which of them
+   * contribute whole sets rather than single elements.
+   */
+  private static final class Contributors<T> {
+    final Binding<?>[] bindings;
+    final boolean[] setValues;
+    final boolean elementsOnly;
+    final boolean singletons;
+
+    Contributors(SetBinding<T> setBinding) {
+      List<Binding<?>> all = new ArrayList<Binding<?>>(setBinding.size());
+      for (SetBinding<T> binding = setBinding; binding != null; binding = binding.parent) {
+        all.addAll(binding.contributors);
+      }
+      bindings = all.toArray(new Binding<?>[all.size()]);
+      setValues = new boolean[bindings.length];
+      boolean elementsOnly = true;
+      boolean singletons = true;
+      for (int i = 0; i < bindings.length; i++) {
+        setValues[i] = bindings[i].provideKey.equals(setBinding.provideKey);
+        elementsOnly &= !setValues[i];
+        singletons &= bindings[i].isSingleton();
       }
+      this.elementsOnly = elementsOnly;
+      this.singletons = singletons;
     }
-    return Collections.unmodifiableSet(new LinkedHashSet<T>(result));
   }
 
   @Override public void getDependencies(
@@ -16,18 +16,16 @@
 package dagger.internal;
 
 import dagger.Factory;
-import java.util.ArrayList;
+import dagger.Provides;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 import javax.inject.Provider;
 
-import static java.util.Collections.unmodifiableSet;
-
 /**
- * A {@link Factory} implementation used to implement {@link Set} bindings. This factory always
- * returns a new {@link Set} instance for each call to {@link #get} (as required by {@link Factory})
- * whose elements are populated by subsequent calls to their {@link Provider#get} methods.
+ * A {@link Factory} implementation used to implement {@link Set} bindings. This factory returns
+ * a {@link Set} whose elements are populated by calls to their {@link Provider#get} methods. If
+ * every provider is scoped or constant those calls would always return the same sets, so the
+ * first result is returned by every later call.
  *
  * @author Gregory Kick
  * @since 2.0
@@ -56,10 +54,53 @@ public final class SetFactory<T> implements Factory<Set<T>> {
     return new SetFactory<T>(contributingProviders);
   }
 
-  private final Set<Provider<Set<T>>> contributingProviders;
+  /**
+   * Returns a new factory that creates a {@link Set} of providers for the elements of the sets
+   * created by {@code setFactory}. Contributions of single elements are not provided until their
+   * providers are called. Contributions of whole sets are provided when the set of providers is
+   * created, and their elements are returned by constant providers.
+   *
+   * @param contributionTypes the {@link Provides.Type} of each contribution given to
+   *     {@code setFactory}, in order.
+   */
+  public static <T> Factory<Set<Provider<T>>> providersOf(Provider<Set<T>> setFactory,
+      Provides.Type... contributionTypes) {
+    if (!(setFactory instanceof SetFactory)) {
+      throw new IllegalArgumentException(setFactory + " is not a SetFactory");
+    }
+    SetFactory<T> factory = (SetFactory<T>) setFactory;
+    if (contributionTypes.length != factory.contributingProviders.length) {
+      throw new IllegalArgumentException("Expected " + factory.contributingProviders.length
+          + " contribution types but was " + contributionTypes.length);
+    }
+    return new ProviderSetFactory<T>(factory.contributingProviders, contributionTypes);
+  }
+
+  private final Provider<Set<T>>[] contributingProviders;
+
+  /** True if the providers always return the same sets. */
+  private final boolean constant;
 
+  /** The first result of {@link #get}, if the factory is constant. */
+  private volatile Set<T> cached;
+
+  @SuppressWarnings("unchecked") // Arrays of a generic type can't be created directly.
   private SetFactory(Set<Provider<Set<T>>> contributingProviders) {
-    this.contributingProviders = contributingProviders;
+    this.contributingProviders =
+        contributingProviders.toArray(new Provider[contributingProviders.size()]);
+    boolean constant = true;
+    for (Provider<Set<T>> provider : contributingProviders) {
+      constant &= isConstant(provider);
+    }
+    this.constant = constant;
+  }
+
+  private static boolean isConstant(Provider<?> provider) {
+    return provider instanceof ScopedProvider
+        || provider instanceof LockingScopedProvider
+        || provider instanceof ReusableProvider
+        || provider instanceof InstanceFactory
+        || (provider instanceof SetFactory && ((SetFactory<?>) provider).constant);
   }
 
   /**
@@ -71,28 +112,112 @@ public final class SetFactory<T> implements Factory<Set<T>> {
    */
   @Override
   public Set<T> get() {
-    List<Set<T>> providedSets = new ArrayList<Set<T>>(contributingProviders.size());
-    for (Provider<Set<T>> provider : contributingProviders) {
-      Set<T> providedSet = provider.get();
-      if (providedSet == null) {
-        throw new NullPointerException(provider + " returned null");
-      }
-      providedSets.add(providedSet);
+    Set<T> result = cached;
+    if (result != null) {
+      return result;
     }
+    @SuppressWarnings("unchecked") // Arrays of a generic type can't be created directly.
+    Set<T>[] providedSets = new Set[contributingProviders.length];
     int size = 0;
-    for (Set<T> providedSet : providedSets) {
+    for (int i = 0; i < providedSets.length; i++) {
+      Set<T> providedSet = contributingProviders[i].get();
+      if (providedSet == null) {
+        throw new NullPointerException(contributingProviders[i] + " returned null");
+      }
+      providedSets[i] = providedSet;
       size += providedSet.size();
     }
-    Set<T> result = newLinkedHashSetWithExpectedSize(size);
+    CompactSet.Builder<T> builder = new CompactSet.Builder<T>(size);
     for (Set<T> s : providedSets) {
       for (T element : s) {
         if (element == null) {
           throw new NullPointerException("a null element was provided");
         }
-        result.add(element);
+        builder.add(element);
+      }
+    }
+    result = builder.build();
+    if (constant) {
+      cached = result;
+    }
+    return result;
+  }
+
+  /** Creates the sets of providers returned by {@link #providersOf}. */
+  private static final class ProviderSetFactory<T> implements Factory<Set<Provider<T>>> {
+    /** Providers of single elements, or null where a contribution is a whole set. */
+    private final Provider<T>[] elementProviders;
+    private final Provider<Set<T>>[] contributingProviders;
+
+    /** True if the whole-set contributions always return the same sets. */
+    private final boolean constant;
+
+    /** The first result of {@link #get}, if the factory is constant. */
+    private volatile Set<Provider<T>> cached;
+
+    @SuppressWarnings("unchecked") // Arrays of a generic type can't be created directly.
+    ProviderSetFactory(Provider<Set<T>>[] contributingProviders,
+        Provides.Type[] contributionTypes) {
+      this.contributingProviders = contributingProviders;
+      this.elementProviders = new Provider[contributingProviders.length];
+      boolean constant = true;
+      for (int i = 0; i < contributingProviders.length; i++) {
+        if (contributionTypes[i] == Provides.Type.SET) {
+          elementProviders[i] = new ElementProvider<T>(contributingProviders[i]);
+        } else {
+          constant &= isConstant(contributingProviders[i]);
+        }
+      }
+      this.constant = constant;
+    }
+
+    @Override public Set<Provider<T>> get() {
+      Set<Provider<T>> result = cached;
+      if (result != null) {
+        return result;
+      }
+      CompactSet.Builder<Provider<T>> builder =
+          new CompactSet.Builder<Provider<T>>(elementProviders.length);
+      for (int i = 0; i < elementProviders.length; i++) {
+        if (elementProviders[i] != null) {
+          builder.add(elementProviders[i]);
+          continue;
+        }
+        Set<T> providedSet = contributingProviders[i].get();
+        if (providedSet == null) {
+          throw new NullPointerException(contributingProviders[i] + " returned null");
+        }
+        for (T element : providedSet) {
+          builder.add(InstanceFactory.create(element));
+        }
+      }
+      result = builder.build();
+      if (constant) {
+        cached = result;
+      }
+      return result;
+    }
+  }
+
+  /** Provides the only element of a contribution of a single element. */
+  private static final class ElementProvider<T> implements Provider<T> {
+    private final Provider<Set<T>> contribution;
+
+    ElementProvider(Provider<Set<T>> contribution) {
+      this.contribution = contribution;
+    }
+
+    @Override public T get() {
+      Set<T> providedSet = contribution.get();
+      if (providedSet == null) {
+        throw new NullPointerException(contribution + " returned null");
+      }
+      T element = providedSet.iterator().next();
+      if (element == null) {
+        throw new NullPointerException("a null element was provided");
       }
+      return element;
     }
-    return unmodifiableSet(result);
   }
 
   // TODO(gak): consider whether (expectedSize, 1.0f) is better for this use case since callers are
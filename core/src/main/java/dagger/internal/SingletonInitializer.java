@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Eagerly creates the singletons of a linked graph. Singletons are created after the singletons
+ * they depend on, and singletons that don't depend on each other are created concurrently.
+ */
+public final class SingletonInitializer {
+  private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  private Executor executor;
+  private CountDownLatch done;
+
+  /**
+   * Creates the instances of all singleton bindings in {@code bindings}, which must be linked.
+   * Blocks until every singleton has been created.
+   *
+   * @return the nanoseconds it took to create each singleton, keyed by its provide key and in
+   *     the order they completed.
+   * @throws RuntimeException the first exception thrown while creating a singleton.
+   */
+  public Map<String, Long> initialize(Collection<Binding<?>> bindings, Executor executor) {
+    Map<Binding<?>, Node> nodes = new IdentityHashMap<Binding<?>, Node>();
+    for (Binding<?> binding : bindings) {
+      if (binding.isSingleton() && !nodes.containsKey(binding)) {
+        nodes.put(binding, new Node(binding));
+      }
+    }
+
+    // Each singleton waits for the singletons it reaches through non-singleton dependencies.
+    for (Node node : nodes.values()) {
+      collectDependencies(node, node.binding, nodes, new IdentityHashMap<Binding<?>, Boolean>());
+    }
+    breakCycles(nodes.values());
+
+    this.executor = executor;
+    this.done = new CountDownLatch(nodes.size());
+    for (Node node : nodes.values()) {
+      if (node.pending.get() == 0) {
+        schedule(node);
+      }
+    }
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    Throwable e = failure.get();
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    }
+    synchronized (timings) {
+      return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(timings));
+    }
+  }
+
+  /** Runs {@code node} on the executor, or on this thread if the executor rejects it. */
+  private void schedule(Node node) {
+    try {
+      executor.execute(node);
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, e);
+      node.run(); // Skips creating singletons now that there's a failure.
+    }
+  }
+
+  private static void collectDependencies(Node node, Binding<?> binding,
+      Map<Binding<?>, Node> nodes, Map<Binding<?>, Boolean> visited) {
+    Set<Binding<?>> dependencies = new ProblemDetector.ArraySet<Binding<?>>();
+    binding.getDependencies(dependencies, dependencies);
+    for (Binding<?> dependency : dependencies) {
+      if (dependency == null || visited.put(dependency, Boolean.TRUE) != null) {
+        continue;
+      }
+      Node dependencyNode = nodes.get(dependency);
+      if (dependencyNode == node) {
+        continue;
+      }
+      if (dependencyNode != null) {
+        dependencyNode.dependents.add(node);
+        node.pending.incrementAndGet();
+      } else if (!dependency.isSingleton()) {
+        collectDependencies(node, dependency, nodes, visited);
+      }
+    }
+  }
+
+  /**
+   * Singletons that depend on each other can't be ordered. Rather than waiting forever, let
+   * every singleton left unscheduled by a topological sort start immediately.
+   */
+  private static void breakCycles(Collection<Node> nodes) {
+    Map<Node, Integer> pending = new IdentityHashMap<Node, Integer>();
+    List<Node> ready = new ArrayList<Node>();
+    for (Node node : nodes) {
+      int count = node.pending.get();
+      if (count == 0) {
+        ready.add(node);
+      } else {
+        pending.put(node, count);
+      }
+    }
+    for (int i = 0; i < ready.size(); i++) {
+      for (Node dependent : ready.get(i).dependents) {
+        int count = pending.get(dependent) - 1;
+        if (count == 0) {
+          pending.remove(dependent);
+          ready.add(dependent);
+        } else {
+          pending.put(dependent, count);
+        }
+      }
+    }
+    for (Node node : pending.keySet()) {
+      node.pending.set(0);
+      node.dependents.clear();
+    }
+  }
+
+  private final class Node implements Runnable {
+    final Binding<?> binding;
+    final List<Node> dependents = new ArrayList<Node>();
+    final AtomicInteger pending = new AtomicInteger();
+
+    Node(Binding<?> binding) {
+      this.binding = binding;
+    }
+
+    @Override public void run() {
+      Node node = this;
+      while (node != null) {
+        node = node.create();
+      }
+    }
+
+    /**
+     * Creates this node's singleton and schedules the dependents that were waiting only for it.
+     * To avoid a hand-off, one of those dependents is returned for the caller to create next.
+     */
+    private Node create() {
+      try {
+        if (failure.get() == null) {
+          long start = System.nanoTime();
+          binding.get();
+          long elapsed = System.nanoTime() - start;
+          synchronized (timings) {
+            timings.put(binding.provideKey, elapsed);
+          }
+        }
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      } catch (Error e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        done.countDown();
+      }
+      Node next = null;
+      for (Node dependent : dependents) {
+        if (dependent.pending.decrementAndGet() == 0) {
+          if (next == null) {
+            next = dependent;
+          } else {
+            schedule(dependent);
+          }
+        }
+      }
+      return next;
+    }
+  }
+}
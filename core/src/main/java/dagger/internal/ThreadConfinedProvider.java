@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Provider;
+
+/**
+ * A {@link Provider} implementation that memoizes the result of a {@link Factory} instance once
+ * per thread, for bindings annotated with {@link dagger.PerThread}. Each thread's instance is
+ * held by a {@link ThreadLocal} owned by this provider. A thread that outlives the provider, like
+ * a pool thread, keeps its instance until its stale thread-local entry happens to be expunged;
+ * {@link #release} releases the instances of all threads at once.
+ */
+public final class ThreadConfinedProvider<T> implements Provider<T> {
+  /** Stands in for a null instance. */
+  private static final Object NULL = new Object();
+
+  private final Provider<? extends T> provider;
+  private final ThreadLocal<Holder> holders = new ThreadLocal<Holder>() {
+    @Override protected Holder initialValue() {
+      return new Holder();
+    }
+  };
+
+  /** The holders that have an instance, so that {@link #release} can clear them. */
+  private final ConcurrentHashMap<Holder, Boolean> created =
+      new ConcurrentHashMap<Holder, Boolean>();
+
+  /**
+   * @param provider provides each thread's instance. Null instances are kept like any other.
+   */
+  ThreadConfinedProvider(Provider<? extends T> provider) {
+    this.provider = provider;
+  }
+
+  @SuppressWarnings("unchecked") // instance is either 'NULL' or a 'T'.
+  @Override
+  public T get() {
+    Holder holder = holders.get();
+    Object instance = holder.instance;
+    if (instance == null) {
+      T newInstance = provider.get();
+      instance = newInstance != null ? newInstance : NULL;
+      holder.instance = instance;
+      created.put(holder, Boolean.TRUE); // After storing, so release can't miss the instance.
+      expungeEndedThreads();
+    }
+    return instance != NULL ? (T) instance : null;
+  }
+
+  /**
+   * Releases the instances of every thread, so that each thread's next request creates a new
+   * one. Instances being created while this runs may be released too.
+   */
+  public void release() {
+    for (Holder holder : created.keySet()) {
+      if (created.remove(holder) != null) {
+        holder.instance = null;
+      }
+    }
+  }
+
+  /** Releases the instances of threads that have ended, which only {@link #release} would. */
+  private void expungeEndedThreads() {
+    for (Holder holder : created.keySet()) {
+      Thread thread = holder.thread.get();
+      if ((thread == null || !thread.isAlive()) && created.remove(holder) != null) {
+        holder.instance = null;
+      }
+    }
+  }
+
+  /** Returns a new thread-confined provider for the given factory. */
+  public static <T> Provider<T> create(final Factory<T> factory) {
+    if (factory == null) {
+      throw new NullPointerException();
+    }
+    return new ThreadConfinedProvider<T>(new Provider<T>() {
+      @Override public T get() {
+        T result = factory.get();
+        if (result == null) {
+          throw new NullPointerException(factory + " returned null");
+        }
+        return result;
+      }
+    });
+  }
+
+  /** One thread's instance. */
+  private static final class Holder {
+    final WeakReference<Thread> thread = new WeakReference<Thread>(Thread.currentThread());
+    volatile Object instance;
+  }
+}
@@ -25,6 +25,16 @@ public final class GeneratedAdapters {
   public static final String INJECT_ADAPTER_SUFFIX = SEPARATOR + "InjectAdapter";
   public static final String MODULE_ADAPTER_SUFFIX = SEPARATOR + "ModuleAdapter";
   public static final String STATIC_INJECTION_SUFFIX = SEPARATOR + "StaticInjection";
+  public static final String REGISTRY_PREFIX = "DaggerAdapterRegistry" + SEPARATOR;
+
+  /**
+   * Resources listing the {@code AdapterRegistry} classes generated by each processor, one
+   * binary class name per line.
+   */
+  public static final String INJECT_ADAPTER_REGISTRY_INDEX =
+      "META-INF/dagger/inject-adapter-registries";
+  public static final String MODULE_ADAPTER_REGISTRY_INDEX =
+      "META-INF/dagger/module-adapter-registries";
 
   private GeneratedAdapters() { }
 }
@@ -19,6 +19,7 @@ import dagger.internal.Binding;
 import dagger.internal.Keys;
 import dagger.internal.Linker;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -29,6 +30,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import javax.inject.Inject;
+import javax.inject.Scope;
 import javax.inject.Singleton;
 
 /**
@@ -36,6 +38,8 @@ import javax.inject.Singleton;
  * using reflection.
  */
 public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
+  private static final Object[] NO_ARGS = new Object[0];
+
   private final Field[] fields;
   private final ClassLoader loader;
   private final Constructor<T> constructor;
@@ -93,7 +97,7 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
     if (constructor == null) {
       throw new UnsupportedOperationException();
     }
-    Object[] args = new Object[parameterBindings.length];
+    Object[] args = parameterBindings.length != 0 ? new Object[parameterBindings.length] : NO_ARGS;
     for (int i = 0; i < parameterBindings.length; i++) {
       args[i] = parameterBindings[i].get();
     }
@@ -148,6 +152,7 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
     private final String provideKey;
     private final String membersKey;
     private final boolean singleton;
+    private final Class<? extends Annotation> scope;
     private final Class<?> type;
     private final Field[] fields;
     private final Constructor<T> constructor;
@@ -156,11 +161,12 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
     private final String[] keys;
 
     private Factory(String provideKey, String membersKey, boolean singleton,
-        Class<?> type, Field[] fields, Constructor<T> constructor, int parameterCount,
-        Class<?> supertype, String[] keys) {
+        Class<? extends Annotation> scope, Class<?> type, Field[] fields,
+        Constructor<T> constructor, int parameterCount, Class<?> supertype, String[] keys) {
       this.provideKey = provideKey;
       this.membersKey = membersKey;
       this.singleton = singleton;
+      this.scope = scope;
       this.type = type;
       this.fields = fields;
       this.constructor = constructor;
@@ -174,14 +180,18 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
         throw new InvalidBindingException(type.getName(),
             "has no injectable members. Do you want to add an injectable constructor?");
       }
-      return new ReflectiveAtInjectBinding<T>(provideKey, membersKey, singleton,
-          type, fields, constructor, parameterCount,
-          supertype, keys);
+      ReflectiveAtInjectBinding<T> binding = new ReflectiveAtInjectBinding<T>(provideKey,
+          membersKey, singleton, type, fields, constructor, parameterCount, supertype, keys);
+      if (scope != null) {
+        binding.setScope(scope);
+      }
+      return binding;
     }
   }
 
   public static <T> Factory<T> createFactory(Class<T> type) {
     boolean singleton = type.isAnnotationPresent(Singleton.class);
+    Class<? extends Annotation> scope = getCustomScope(type);
     List<String> keys = new ArrayList<String>();
 
     // Lookup the injectable fields and their corresponding keys.
@@ -246,6 +256,10 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
         throw new IllegalArgumentException(
             "No injectable constructor on @Singleton " + type.getName());
       }
+      if (scope != null) {
+        throw new IllegalArgumentException(
+            "No injectable constructor on @" + scope.getSimpleName() + " " + type.getName());
+      }
     }
 
     Class<? super T> supertype = type.getSuperclass();
@@ -258,11 +272,34 @@ public final class ReflectiveAtInjectBinding<T> extends Binding<T> {
     }
 
     String membersKey = Keys.getMembersKey(type);
-    return new Factory<T>(provideKey, membersKey, singleton, type,
+    return new Factory<T>(provideKey, membersKey, singleton, scope, type,
         injectedFields.toArray(new Field[injectedFields.size()]), injectedConstructor,
         parameterCount, supertype, keys.toArray(new String[keys.size()]));
   }
 
+  /**
+   * Returns the scope annotation of {@code element} if it is a custom scope, or null if it is
+   * unscoped or a singleton.
+   */
+  public static Class<? extends Annotation> getCustomScope(AnnotatedElement element) {
+    Class<? extends Annotation> result = null;
+    boolean scoped = false;
+    for (Annotation annotation : element.getAnnotations()) {
+      Class<? extends Annotation> annotationType = annotation.annotationType();
+      if (!annotationType.isAnnotationPresent(Scope.class)) {
+        continue;
+      }
+      if (scoped) {
+        throw new IllegalArgumentException("Too many scope annotations on " + element);
+      }
+      scoped = true;
+      if (annotationType != Singleton.class) {
+        result = annotationType;
+      }
+    }
+    return result;
+  }
+
   @SuppressWarnings("unchecked") // Class.getDeclaredConstructors is an unsafe API.
   private static <T> Constructor<T>[] getConstructorsForType(Class<T> type) {
     return (Constructor<T>[]) type.getDeclaredConstructors();
@@ -17,12 +17,14 @@ package dagger.internal.loaders;
  */
 
 import dagger.Lazy;
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
 import dagger.internal.BindingsGroup;
 import dagger.internal.Keys;
 import dagger.internal.Linker;
+import dagger.internal.MapBinding;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.ProvidesBinding;
 import dagger.internal.SetBinding;
@@ -32,6 +34,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -43,6 +47,8 @@ import javax.inject.Singleton;
  */
 @Deprecated
 public class ReflectiveModuleAdapter<M> extends ModuleAdapter<M> {
+  private volatile ProvidesMethod[] providesMethods;
+
   public ReflectiveModuleAdapter(Class<M> moduleClass, Module annotation) {
     super(
         moduleClass,
@@ -66,61 +72,38 @@ public class ReflectiveModuleAdapter<M> extends ModuleAdapter<M> {
   }
 
   @Override public void getBindings(BindingsGroup bindings, M module) {
-    for (Class<?> c = moduleClass; !c.equals(Object.class); c = c.getSuperclass()) {
-      for (Method method : c.getDeclaredMethods()) {
-        Provides provides = method.getAnnotation(Provides.class);
-        if (provides != null) {
-          Type genericReturnType = method.getGenericReturnType();
-
-          Type typeToCheck = genericReturnType;
-          if (genericReturnType instanceof ParameterizedType) {
-            typeToCheck = ((ParameterizedType) genericReturnType).getRawType();
-          }
-          if (Provider.class.equals(typeToCheck)) {
-            throw new IllegalStateException("@Provides method must not return Provider directly: "
-                + c.getName()
-                + "."
-                + method.getName());
-          }
-          if (Lazy.class.equals(typeToCheck)) {
-            throw new IllegalStateException("@Provides method must not return Lazy directly: "
-                + c.getName()
-                + "."
-                + method.getName());
-          }
+    for (ProvidesMethod providesMethod : providesMethods()) {
+      ReflectiveProvidesBinding<M> binding = new ReflectiveProvidesBinding<M>(
+          providesMethod, moduleClass.getName(), module, library);
+      if (providesMethod.setKey == null) {
+        bindings.contributeProvidesBinding(providesMethod.key, binding);
+      } else if (providesMethod.mapKey != null) {
+        MapBinding.add(bindings, providesMethod.setKey, providesMethod.mapKey, binding);
+      } else {
+        SetBinding.<M>add(bindings, providesMethod.setKey, binding);
+      }
+    }
+  }
 
-          String key = Keys.get(genericReturnType, method.getAnnotations(), method);
-          switch (provides.type()) {
-            case UNIQUE:
-              handleBindings(bindings, module, method, key, library);
-              break;
-            case SET:
-              String setKey = Keys.getSetKey(method.getGenericReturnType(),
-                  method.getAnnotations(), method);
-              handleSetBindings(bindings, module, method, setKey, key, library);
-              break;
-            case SET_VALUES:
-              handleSetBindings(bindings, module, method, key, key, library);
-              break;
-            default:
-              throw new AssertionError("Unknown @Provides type " + provides.type());
+  /**
+   * Returns this module's {@code @Provides} methods. They are found and their keys computed the
+   * first time, so that modules installed in many graphs only pay for reflection once.
+   */
+  private ProvidesMethod[] providesMethods() {
+    ProvidesMethod[] result = providesMethods;
+    if (result == null) {
+      List<ProvidesMethod> methods = new ArrayList<ProvidesMethod>();
+      for (Class<?> c = moduleClass; !c.equals(Object.class); c = c.getSuperclass()) {
+        for (Method method : c.getDeclaredMethods()) {
+          Provides provides = method.getAnnotation(Provides.class);
+          if (provides != null) {
+            methods.add(ProvidesMethod.create(c, method, provides));
           }
         }
       }
+      providesMethods = result = methods.toArray(new ProvidesMethod[methods.size()]);
     }
-  }
-
-  private void handleBindings(BindingsGroup bindings, M module, Method method, String key,
-      boolean library) {
-    bindings.contributeProvidesBinding(key,
-        new ReflectiveProvidesBinding<M>(method, key, moduleClass.getName(), module, library));
-  }
-
-  private void handleSetBindings(BindingsGroup bindings, M module, Method method,
-      String setKey, String providerKey, boolean library) {
-    SetBinding.<M>add(bindings, setKey,
-        new ReflectiveProvidesBinding<M>(
-            method, providerKey, moduleClass.getName(), module, library));
+    return result;
   }
 
   @Override public M newModule() {
@@ -160,35 +143,124 @@ public class ReflectiveModuleAdapter<M> extends ModuleAdapter<M> {
     return new ReflectiveModuleAdapter<M>(moduleClass, annotation);
   }
 
+  /** A {@code @Provides} method, made accessible, and the keys it binds and depends on. */
+  private static final class ProvidesMethod {
+    final Method method;
+    final String key;
+    /** The key of the set this method contributes to, or null for unique bindings. */
+    final String setKey;
+    /** The key of the map entry this method contributes, or null if it doesn't. */
+    final String mapKey;
+    final String[] parameterKeys;
+    final boolean singleton;
+    /** The custom scope of this method's binding, or null if it is unscoped or a singleton. */
+    final Class<? extends Annotation> scope;
+
+    private ProvidesMethod(Method method, String key, String setKey, String mapKey,
+        String[] parameterKeys) {
+      this.method = method;
+      this.key = key;
+      this.setKey = setKey;
+      this.mapKey = mapKey;
+      this.parameterKeys = parameterKeys;
+      this.singleton = method.isAnnotationPresent(Singleton.class);
+      this.scope = ReflectiveAtInjectBinding.getCustomScope(method);
+    }
+
+    static ProvidesMethod create(Class<?> c, Method method, Provides provides) {
+      Type genericReturnType = method.getGenericReturnType();
+
+      Type typeToCheck = genericReturnType;
+      if (genericReturnType instanceof ParameterizedType) {
+        typeToCheck = ((ParameterizedType) genericReturnType).getRawType();
+      }
+      if (Provider.class.equals(typeToCheck)) {
+        throw new IllegalStateException("@Provides method must not return Provider directly: "
+            + c.getName()
+            + "."
+            + method.getName());
+      }
+      if (Lazy.class.equals(typeToCheck)) {
+        throw new IllegalStateException("@Provides method must not return Lazy directly: "
+            + c.getName()
+            + "."
+            + method.getName());
+      }
+
+      String key = Keys.get(genericReturnType, method.getAnnotations(), method);
+      String setKey;
+      String mapKey = null;
+      switch (provides.type()) {
+        case UNIQUE:
+          setKey = null;
+          break;
+        case MAP:
+          MapKey mapKeyAnnotation = method.getAnnotation(MapKey.class);
+          if (mapKeyAnnotation == null) {
+            throw new IllegalStateException("@Provides(type = MAP) method must have a @MapKey: "
+                + c.getName()
+                + "."
+                + method.getName());
+          }
+          setKey = Keys.getMapEntriesKey(genericReturnType, method.getAnnotations(), method);
+          mapKey = mapKeyAnnotation.value();
+          break;
+        case SET:
+          setKey = Keys.getSetKey(genericReturnType, method.getAnnotations(), method);
+          break;
+        case SET_VALUES:
+          setKey = key;
+          break;
+        default:
+          throw new AssertionError("Unknown @Provides type " + provides.type());
+      }
+
+      Type[] types = method.getGenericParameterTypes();
+      Annotation[][] annotations = method.getParameterAnnotations();
+      String[] parameterKeys = new String[types.length];
+      for (int i = 0; i < types.length; i++) {
+        parameterKeys[i] = Keys.get(types[i], annotations[i], method + " parameter " + i);
+      }
+      method.setAccessible(true);
+      return new ProvidesMethod(method, key, setKey, mapKey, parameterKeys);
+    }
+  }
+
   /**
    * Invokes a method to provide a value. The method's parameters are injected.
    */
   private static final class ReflectiveProvidesBinding<T> extends ProvidesBinding<T> {
+    private static final Object[] NO_ARGS = new Object[0];
+
     private Binding<?>[] parameters;
+    private final ProvidesMethod providesMethod;
     private final Method method;
     private final Object instance;
 
-    public ReflectiveProvidesBinding(Method method, String key, String moduleClass,
+    public ReflectiveProvidesBinding(ProvidesMethod providesMethod, String moduleClass,
         Object instance, boolean library) {
-      super(key, method.isAnnotationPresent(Singleton.class), moduleClass, method.getName());
-      this.method = method;
+      super(providesMethod.key, providesMethod.singleton, moduleClass,
+          providesMethod.method.getName());
+      this.providesMethod = providesMethod;
+      this.method = providesMethod.method;
       this.instance = instance;
-      method.setAccessible(true);
       setLibrary(library);
+      if (providesMethod.scope != null) {
+        setScope(providesMethod.scope);
+      }
     }
 
     @Override public void attach(Linker linker) {
-      Type[] types = method.getGenericParameterTypes();
-      Annotation[][] annotations = method.getParameterAnnotations();
-      parameters = new Binding[types.length];
+      String[] parameterKeys = providesMethod.parameterKeys;
+      parameters = new Binding[parameterKeys.length];
       for (int i = 0; i < parameters.length; i++) {
-        String key = Keys.get(types[i], annotations[i], method + " parameter " + i);
-        parameters[i] = linker.requestBinding(key, method, instance.getClass().getClassLoader());
+        parameters[i] = linker.requestBinding(
+            parameterKeys[i], method, instance.getClass().getClassLoader());
       }
     }
 
     @Override public T get() {
-      Object[] args = new Object[parameters.length];
+      Object[] args = parameters.length != 0 ? new Object[parameters.length] : NO_ARGS;
       for (int i = 0; i < parameters.length; i++) {
         args[i] = parameters[i].get();
       }
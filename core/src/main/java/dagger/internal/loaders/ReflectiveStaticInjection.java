@@ -31,19 +31,19 @@ import javax.inject.Inject;
 public final class ReflectiveStaticInjection extends StaticInjection {
   private final ClassLoader loader;
   private final Field[] fields;
+  private final String[] keys;
   private Binding<?>[] bindings;
 
-  private ReflectiveStaticInjection(ClassLoader loader, Field[] fields) {
+  private ReflectiveStaticInjection(ClassLoader loader, Field[] fields, String[] keys) {
     this.fields = fields;
+    this.keys = keys;
     this.loader = loader;
   }
 
   @Override public void attach(Linker linker) {
     bindings = new Binding<?>[fields.length];
     for (int i = 0; i < fields.length; i++) {
-      Field field = fields[i];
-      String key = Keys.get(field.getGenericType(), field.getAnnotations(), field);
-      bindings[i] = linker.requestBinding(key, field, loader);
+      bindings[i] = linker.requestBinding(keys[i], fields[i], loader);
     }
   }
 
@@ -59,16 +59,18 @@ public final class ReflectiveStaticInjection extends StaticInjection {
 
   public static StaticInjection create(Class<?> injectedClass) {
     List<Field> fields = new ArrayList<Field>();
+    List<String> keys = new ArrayList<String>();
     for (Field field : injectedClass.getDeclaredFields()) {
       if (Modifier.isStatic(field.getModifiers()) && field.isAnnotationPresent(Inject.class)) {
         field.setAccessible(true);
         fields.add(field);
+        keys.add(Keys.get(field.getGenericType(), field.getAnnotations(), field));
       }
     }
     if (fields.isEmpty()) {
       throw new IllegalArgumentException("No static injections: " + injectedClass.getName());
     }
     return new ReflectiveStaticInjection(injectedClass.getClassLoader(),
-        fields.toArray(new Field[fields.size()]));
+        fields.toArray(new Field[fields.size()]), keys.toArray(new String[keys.size()]));
   }
 }
\ No newline at end of file
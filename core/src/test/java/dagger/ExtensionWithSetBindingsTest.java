@@ -21,6 +21,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -67,6 +68,10 @@ public final class ExtensionWithSetBindingsTest {
     @Provides @Singleton String provideBar() { return "bar"; }
   }
 
+  @Before public void setUp() {
+    counter.set(0);
+  }
+
   @Test public void basicInjectionWithExtension() {
     ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new RootModule());
     RealSingleton rs = root.get(RealSingleton.class);
@@ -82,6 +87,33 @@ public final class ExtensionWithSetBindingsTest {
     assertThat(main2.ints).containsOnly(0, 1, 4, 5);
   }
 
+  @Module(addsTo = RootModule.class, injects = Main.class)
+  static class NonContributingExtensionModule {
+  }
+
+  @Test public void extensionsThatDontContributeUseTheParentsSet() {
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new RootModule());
+    RealSingleton rs = root.get(RealSingleton.class);
+    Main main = root.plus(new NonContributingExtensionModule()).get(Main.class);
+    assertThat(main.ints).containsOnly(0, 1);
+    assertThat(main.ints).isSameAs(rs.ints);
+  }
+
+  @Module(addsTo = RootModule.class, library = true)
+  static class UniqueBindingForSetModule {
+    @Provides Set<Integer> provideInts() { return null; }
+  }
+
+  @Test public void extensionsCantReplaceTheParentsSet() {
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new RootModule());
+    try {
+      root.plus(new UniqueBindingForSetModule());
+      fail("Should throw exception.");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().startsWith("UniqueBindingForSetModule: Duplicate"));
+    }
+  }
+
   @Module(includes = ExtensionModule.class, overrides = true)
   static class TestModule {
     @Provides(type=SET) @Singleton Integer provide9999() { return 9999; }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class InitializeSingletonsTest {
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final List<String> created = new ArrayList<String>();
+
+  @After public void tearDown() {
+    executor.shutdown();
+  }
+
+  static class Middle {
+    @Inject @Named("leaf") String leaf;
+  }
+
+  @Module(injects = Middle.class)
+  class OrderedModule {
+    @Provides @Singleton @Named("root") String provideRoot(Middle middle) {
+      return record("root");
+    }
+
+    @Provides @Singleton @Named("leaf") String provideLeaf() {
+      return record("leaf");
+    }
+  }
+
+  @Test public void singletonsAreCreatedAfterTheirDependencies() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new OrderedModule());
+    Map<String, Long> timings = graph.initializeSingletons(executor);
+    assertThat(created).containsExactly("leaf", "root");
+    assertThat(new ArrayList<String>(timings.keySet())).containsExactly(
+        "@javax.inject.Named(value=leaf)/java.lang.String",
+        "@javax.inject.Named(value=root)/java.lang.String");
+  }
+
+  @Test public void independentSingletonsAreCreatedConcurrently() {
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    @Module(injects = Middle.class, library = true)
+    class IndependentModule {
+      @Provides @Singleton @Named("leaf") String provideLeaf() {
+        return awaitOther(bothStarted);
+      }
+
+      @Provides @Singleton Integer provideInteger() {
+        awaitOther(bothStarted);
+        return 1;
+      }
+    }
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new IndependentModule());
+    assertThat(graph.initializeSingletons(executor)).hasSize(2);
+  }
+
+  @Test public void failuresAreRethrown() {
+    @Module(injects = Middle.class)
+    class FailingModule {
+      @Provides @Singleton @Named("leaf") String provideLeaf() {
+        throw new UnsupportedOperationException("leaf");
+      }
+    }
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new FailingModule());
+    try {
+      graph.initializeSingletons(new Executor() {
+        @Override public void execute(Runnable command) {
+          command.run();
+        }
+      });
+      fail();
+    } catch (UnsupportedOperationException expected) {
+      assertThat(expected.getMessage()).isEqualTo("leaf");
+    }
+  }
+
+  private String record(String name) {
+    synchronized (created) {
+      created.add(name);
+    }
+    return name;
+  }
+
+  private static String awaitOther(CountDownLatch bothStarted) {
+    bothStarted.countDown();
+    try {
+      if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+        throw new AssertionError("Singletons were created one at a time");
+      }
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+    return "leaf";
+  }
+}
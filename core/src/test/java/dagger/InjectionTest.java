@@ -881,6 +881,26 @@ public final class InjectionTest {
     assertThat(extension.get(SingletonLinkedFromExtension.class).c).isSameAs(root.get(C.class));
   }
 
+  @Test public void repeatedLookupsReuseLinkedBindings() {
+    class TestEntryPoint {
+      @Inject A a;
+      @Inject C c;
+    }
+
+    @Module(injects = { TestEntryPoint.class, A.class, C.class })
+    class TestModule {
+    }
+
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    assertThat(graph.get(A.class)).isNotSameAs(graph.get(A.class));
+    assertThat(graph.get(C.class)).isSameAs(graph.get(C.class));
+
+    TestEntryPoint first = graph.inject(new TestEntryPoint());
+    TestEntryPoint second = graph.inject(new TestEntryPoint());
+    assertThat(first.a).isNotSameAs(second.a);
+    assertThat(first.c).isSameAs(second.c).isSameAs(graph.get(C.class));
+  }
+
   @Test public void privateFieldsFail() {
     class Test {
       @Inject private Object nope;
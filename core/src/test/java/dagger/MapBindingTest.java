@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static dagger.Provides.Type.MAP;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class MapBindingTest {
+  @Test public void mapBindings() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string1"; }
+      @Provides(type=MAP) @MapKey("b") String provideB() { return "string2"; }
+    }
+
+    TestEntryPoint ep = injectWithModule(new TestEntryPoint(), new TestModule());
+    assertThat(ep.strings).hasSize(2);
+    assertEquals("string1", ep.strings.get("a"));
+    assertEquals("string2", ep.strings.get("b"));
+    try {
+      ep.strings.put("c", "string3");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test public void mapBindingsAcrossModules() {
+    class TestEntryPoint {
+      @Inject @Named("foo") Map<String, Integer> integers;
+    }
+
+    @Module
+    class TestIncludesModule {
+      @Provides(type=MAP) @MapKey("two") @Named("foo") Integer provideTwo() { return 2; }
+    }
+
+    @Module(injects = TestEntryPoint.class, includes = TestIncludesModule.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("one") @Named("foo") Integer provideOne() { return 1; }
+    }
+
+    TestEntryPoint ep =
+        injectWithModule(new TestEntryPoint(), new TestModule(), new TestIncludesModule());
+    assertEquals(Integer.valueOf(1), ep.integers.get("one"));
+    assertEquals(Integer.valueOf(2), ep.integers.get("two"));
+  }
+
+  @Test public void providersAreLazyAndReused() {
+    final AtomicInteger counter = new AtomicInteger(100);
+    class TestEntryPoint {
+      @Inject Map<String, Provider<Integer>> providers;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") @Singleton Integer a() {
+        return counter.getAndIncrement();
+      }
+      @Provides(type=MAP) @MapKey("b") Integer b() { return counter.getAndIncrement(); }
+    }
+
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    TestEntryPoint ep = graph.inject(new TestEntryPoint());
+    assertThat(ep.providers).hasSize(2);
+    assertEquals(100, counter.get());
+
+    assertEquals(Integer.valueOf(100), ep.providers.get("b").get());
+    assertEquals(Integer.valueOf(101), ep.providers.get("a").get());
+    assertEquals(Integer.valueOf(101), ep.providers.get("a").get());
+    assertEquals(Integer.valueOf(102), ep.providers.get("b").get());
+    assertThat(graph.inject(new TestEntryPoint()).providers).isSameAs(ep.providers);
+  }
+
+  @Test public void mapsOfSingletonsAreReused() {
+    final AtomicInteger counter = new AtomicInteger(100);
+    class TestEntryPoint {
+      @Inject Map<String, Integer> objects1;
+      @Inject Map<String, Integer> objects2;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") @Singleton Integer a() {
+        return counter.getAndIncrement();
+      }
+    }
+
+    TestEntryPoint ep = injectWithModule(new TestEntryPoint(), new TestModule());
+    assertEquals(Integer.valueOf(100), ep.objects1.get("a"));
+    assertThat(ep.objects2).isSameAs(ep.objects1);
+  }
+
+  @Test public void extensionsAddEntries() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    class ExtensionEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class RootModule {
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string1"; }
+    }
+
+    @Module(addsTo = RootModule.class, injects = ExtensionEntryPoint.class)
+    class ExtensionModule {
+      @Provides(type=MAP) @MapKey("b") String provideB() { return "string2"; }
+    }
+
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new RootModule());
+    assertThat(root.inject(new TestEntryPoint()).strings).hasSize(1);
+    Map<String, String> strings =
+        root.plus(new ExtensionModule()).inject(new ExtensionEntryPoint()).strings;
+    assertEquals("string1", strings.get("a"));
+    assertEquals("string2", strings.get("b"));
+  }
+
+  @Test public void duplicateKeys() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string1"; }
+      @Provides(type=MAP) @MapKey("a") String provideOtherA() { return "string2"; }
+    }
+
+    try {
+      injectWithModule(new TestEntryPoint(), new TestModule());
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().startsWith("Duplicate map key a"));
+    }
+  }
+
+  @Test public void validateDetectsDuplicateKeys() {
+    class TestEntryPoint {
+      @Inject Map<String, Provider<String>> strings;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string1"; }
+      @Provides(type=MAP) @MapKey("a") String provideOtherA() { return "string2"; }
+    }
+
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    try {
+      graph.validate();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("Duplicate map key a").contains("provideOtherA");
+    }
+  }
+
+  @Test public void mapKeyIsRequired() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) String provideA() { return "string1"; }
+    }
+
+    try {
+      injectWithModule(new TestEntryPoint(), new TestModule());
+      fail();
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().startsWith("@Provides(type = MAP) method must have a @MapKey"));
+    }
+  }
+
+  private <T> T injectWithModule(T ep, Object ... modules) {
+    return ObjectGraph.createWith(new TestingLoader(), modules).inject(ep);
+  }
+}
@@ -18,6 +18,7 @@ package dagger;
 import dagger.internal.Loader;
 import dagger.internal.ReflectiveLoader;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -182,6 +183,42 @@ public final class ReflectiveLoaderTest {
     assertThat(objectGraph.get(B.class).a).isNotNull();
   }
 
+  static class Counter {
+    final int count;
+
+    @Inject Counter(@Named("count") Integer count) {
+      this.count = count;
+    }
+  }
+
+  @Module(injects = { Counter.class, TestEntryPoint.class })
+  static class ModuleWithState {
+    private final String value;
+
+    ModuleWithState(String value) {
+      this.value = value;
+    }
+
+    @Provides String provideString() {
+      return value;
+    }
+
+    @Provides @Named("count") Integer provideCount(String value) {
+      return value.length();
+    }
+  }
+
+  @Test public void graphsSharingAModuleClassUseTheirOwnModuleInstances() {
+    ObjectGraph a = ObjectGraph.createWith(LOADER, new ModuleWithState("a"));
+    ObjectGraph bb = ObjectGraph.createWith(LOADER, new ModuleWithState("bb"));
+    assertThat(a.get(TestEntryPoint.class).s).isEqualTo("a");
+    assertThat(bb.get(TestEntryPoint.class).s).isEqualTo("bb");
+    assertThat(a.get(Counter.class).count).isEqualTo(1);
+    assertThat(bb.get(Counter.class).count).isEqualTo(2);
+    assertThat(LOADER.getModuleAdapter(ModuleWithState.class))
+        .isSameAs(LOADER.getModuleAdapter(ModuleWithState.class));
+  }
+
   static class ModuleMissingModuleAnnotation {}
 
   @Module(includes = ModuleMissingModuleAnnotation.class)
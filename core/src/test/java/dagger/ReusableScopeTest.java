@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class ReusableScopeTest {
+  @Reusable static class Parser {
+    @Inject Parser() {}
+  }
+
+  static class Handler {
+    @Inject Provider<Parser> parser;
+    @Inject Provider<String> name;
+  }
+
+  @Module(injects = Handler.class)
+  static class HandlerModule {
+    final CountDownLatch bothProviding;
+    final AtomicInteger names = new AtomicInteger();
+
+    HandlerModule(int racingThreads) {
+      bothProviding = new CountDownLatch(racingThreads);
+    }
+
+    @Provides @Reusable String provideName() {
+      bothProviding.countDown();
+      try {
+        if (!bothProviding.await(10, TimeUnit.SECONDS)) {
+          throw new AssertionError("Blocked by another thread");
+        }
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      return "name" + names.incrementAndGet();
+    }
+  }
+
+  @Test public void instancesAreReused() {
+    Handler handler = ObjectGraph.createWith(new TestingLoader(), new HandlerModule(1))
+        .get(Handler.class);
+    assertThat(handler.parser.get()).isSameAs(handler.parser.get());
+    assertThat(handler.name.get()).isEqualTo("name1");
+    assertThat(handler.name.get()).isEqualTo("name1");
+  }
+
+  @Test public void racingThreadsDoNotWait() throws Exception {
+    HandlerModule module = new HandlerModule(2);
+    final Handler handler = ObjectGraph.createWith(new TestingLoader(), module)
+        .get(Handler.class);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Callable<String> get = new Callable<String>() {
+        @Override public String call() {
+          return handler.name.get();
+        }
+      };
+      Future<String> first = executor.submit(get);
+      Future<String> second = executor.submit(get);
+      assertThat(first.get()).isSameAs(second.get());
+      assertThat(module.names.get()).isEqualTo(2);
+      assertThat(handler.name.get()).isSameAs(first.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void reusableIsNotACustomScope() {
+    try {
+      new ScopeContext(Reusable.class);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
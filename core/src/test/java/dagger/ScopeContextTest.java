@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import dagger.internal.TestingModuleAdapter;
+import java.lang.annotation.Retention;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Scope;
+import javax.inject.Singleton;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class ScopeContextTest {
+  @Scope @Retention(RUNTIME) @interface RequestScoped {}
+
+  @Scope @Retention(RUNTIME) @interface SessionScoped {}
+
+  @RequestScoped static class Request {
+    @Inject Request() {}
+  }
+
+  static class Handler {
+    @Inject Provider<Request> request;
+    @Inject Provider<String> user;
+  }
+
+  @Module(injects = Handler.class)
+  static class HandlerModule {
+    final AtomicInteger users = new AtomicInteger();
+
+    @Provides @SessionScoped String provideUser() {
+      return "user" + users.incrementAndGet();
+    }
+  }
+
+  public static final class HandlerModule$$ModuleAdapter
+      extends TestingModuleAdapter<HandlerModule> {
+    public HandlerModule$$ModuleAdapter() {
+      super(HandlerModule.class, HandlerModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  @Test public void instancesArePerContext() {
+    Handler handler = ObjectGraph.builder().scopeContexts().create(new HandlerModule())
+        .get(Handler.class);
+    ScopeContext first = new ScopeContext(RequestScoped.class);
+    first.enter();
+    Request firstRequest;
+    try {
+      firstRequest = handler.request.get();
+      assertThat(handler.request.get()).isSameAs(firstRequest);
+    } finally {
+      first.exit();
+    }
+
+    ScopeContext second = new ScopeContext(RequestScoped.class);
+    second.enter();
+    try {
+      assertThat(handler.request.get()).isNotSameAs(firstRequest);
+    } finally {
+      second.exit();
+    }
+
+    first.enter();
+    try {
+      assertThat(handler.request.get()).isSameAs(firstRequest);
+    } finally {
+      first.exit();
+    }
+  }
+
+  @Test public void providesMethodsAreScoped() {
+    Handler handler = ObjectGraph.builder().scopeContexts().create(new HandlerModule())
+        .get(Handler.class);
+    ScopeContext session = new ScopeContext(SessionScoped.class);
+    session.enter();
+    try {
+      assertThat(handler.user.get()).isEqualTo("user1");
+      assertThat(handler.user.get()).isEqualTo("user1");
+    } finally {
+      session.exit();
+    }
+    session = new ScopeContext(SessionScoped.class);
+    session.enter();
+    try {
+      assertThat(handler.user.get()).isEqualTo("user2");
+    } finally {
+      session.exit();
+    }
+  }
+
+  @Test public void nestedContextsOfDifferentScopes() {
+    Handler handler = ObjectGraph.builder().scopeContexts().create(new HandlerModule())
+        .get(Handler.class);
+    ScopeContext session = new ScopeContext(SessionScoped.class);
+    ScopeContext request = new ScopeContext(RequestScoped.class);
+    session.enter();
+    request.enter();
+    try {
+      assertThat(ScopeContext.current(SessionScoped.class)).isSameAs(session);
+      assertThat(ScopeContext.current(RequestScoped.class)).isSameAs(request);
+      assertThat(handler.user.get()).isEqualTo("user1");
+      assertThat(handler.request.get()).isNotNull();
+    } finally {
+      request.exit();
+      session.exit();
+    }
+  }
+
+  @Test public void noContextEntered() {
+    Handler handler = ObjectGraph.builder().scopeContexts().create(new HandlerModule())
+        .get(Handler.class);
+    try {
+      handler.request.get();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void customScopesAreIgnoredUnlessSelected() {
+    Handler handler = ObjectGraph.createWith(new TestingLoader(), new HandlerModule())
+        .get(Handler.class);
+    assertThat(handler.request.get()).isNotSameAs(handler.request.get());
+    assertThat(handler.user.get()).isEqualTo("user1");
+    assertThat(handler.user.get()).isEqualTo("user2");
+  }
+
+  @Test public void otherKeysProceedWhileAnInstanceIsCreated() throws Exception {
+    final ScopeContext request = new ScopeContext(RequestScoped.class);
+    final Object key = new Object();
+    final CountDownLatch creating = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Object[] created = new Object[1];
+    Thread creator = new Thread() {
+      @Override public void run() {
+        created[0] = request.get(key, new Provider<Object>() {
+          @Override public Object get() {
+            creating.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+            return new Object();
+          }
+        });
+      }
+    };
+    creator.start();
+    creating.await();
+
+    assertThat(request.get(new Object(), new Provider<String>() {
+      @Override public String get() {
+        return "other";
+      }
+    })).isEqualTo("other");
+
+    final Object[] awaited = new Object[1];
+    Thread waiter = new Thread() {
+      @Override public void run() {
+        awaited[0] = request.get(key, new Provider<Object>() {
+          @Override public Object get() {
+            throw new AssertionError();
+          }
+        });
+      }
+    };
+    waiter.start();
+    release.countDown();
+    creator.join();
+    waiter.join();
+    assertThat(created[0]).isNotNull();
+    assertThat(awaited[0]).isSameAs(created[0]);
+  }
+
+  @Test public void failedCreationsAreRetried() {
+    ScopeContext request = new ScopeContext(RequestScoped.class);
+    Object key = new Object();
+    try {
+      request.get(key, new Provider<String>() {
+        @Override public String get() {
+          throw new UnsupportedOperationException();
+        }
+      });
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    assertThat(request.get(key, new Provider<String>() {
+      @Override public String get() {
+        return "retried";
+      }
+    })).isEqualTo("retried");
+  }
+
+  @Test public void exitMustBeInnermost() {
+    ScopeContext session = new ScopeContext(SessionScoped.class);
+    ScopeContext request = new ScopeContext(RequestScoped.class);
+    session.enter();
+    request.enter();
+    try {
+      session.exit();
+      fail();
+    } catch (IllegalStateException expected) {
+    } finally {
+      request.exit();
+      session.exit();
+    }
+  }
+
+  @Test public void singletonIsNotACustomScope() {
+    try {
+      new ScopeContext(Singleton.class);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void manyBindingsInOneContext() {
+    ScopeContext request = new ScopeContext(RequestScoped.class);
+    Object[] keys = new Object[100];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new Object();
+      final int value = i;
+      request.get(keys[i], new Provider<Integer>() {
+        @Override public Integer get() {
+          return value;
+        }
+      });
+    }
+    for (int i = 0; i < keys.length; i++) {
+      assertThat(request.get(keys[i], new Provider<Integer>() {
+        @Override public Integer get() {
+          throw new AssertionError();
+        }
+      })).isEqualTo(i);
+    }
+  }
+}
@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -124,6 +125,73 @@ public final class SetBindingTest {
     assertEquals(set(100, 201), ep.objects2);
   }
 
+  @Test public void multiValueBindings_WithOnlySingletonsAreReused() {
+    final AtomicInteger singletonCounter = new AtomicInteger(100);
+    class TestEntryPoint {
+      @Inject Set<Integer> objects1;
+      @Inject Set<Integer> objects2;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=SET) @Singleton Integer a() { return singletonCounter.getAndIncrement(); }
+      @Provides(type=SET_VALUES) @Singleton Set<Integer> b() {
+        return set(singletonCounter.getAndIncrement(), 100);
+      }
+    }
+
+    TestEntryPoint ep = injectWithModule(new TestEntryPoint(), new TestModule());
+    assertEquals(set(100, 101), ep.objects1);
+    assertThat(ep.objects2).isSameAs(ep.objects1);
+  }
+
+  @Test public void multiValueBindings_ProvidersAreLazy() {
+    final AtomicInteger counter = new AtomicInteger(100);
+    class TestEntryPoint {
+      @Inject Set<Provider<Integer>> providers;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=SET) @Singleton Integer a() { return counter.getAndIncrement(); }
+      @Provides(type=SET) Integer b() { return counter.getAndIncrement(); }
+    }
+
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    TestEntryPoint ep = graph.inject(new TestEntryPoint());
+    assertThat(ep.providers).hasSize(2);
+    assertEquals(100, counter.get());
+
+    Set<Integer> values = new LinkedHashSet<Integer>();
+    for (Provider<Integer> provider : ep.providers) {
+      values.add(provider.get());
+    }
+    assertEquals(set(100, 101), values);
+
+    TestEntryPoint ep2 = graph.inject(new TestEntryPoint());
+    assertThat(ep2.providers).isSameAs(ep.providers);
+  }
+
+  @Test public void multiValueBindings_ProvidersOfSetValues() {
+    class TestEntryPoint {
+      @Inject @Named("foo") Set<Provider<String>> providers;
+    }
+
+    @Module(injects = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=SET) @Named("foo") String a() { return "a"; }
+      @Provides(type=SET_VALUES) @Named("foo") Set<String> b() { return set("b", "c"); }
+      @Provides(type=SET_VALUES) @Named("foo") Set<String> c() { return emptySet(); }
+    }
+
+    TestEntryPoint ep = injectWithModule(new TestEntryPoint(), new TestModule());
+    Set<String> values = new LinkedHashSet<String>();
+    for (Provider<String> provider : ep.providers) {
+      values.add(provider.get());
+    }
+    assertEquals(set("a", "b", "c"), values);
+  }
+
   @Test public void multiValueBindings_WithSingletonsAcrossMultipleInjectableTypes() {
     final AtomicInteger singletonCounter = new AtomicInteger(100);
     final AtomicInteger defaultCounter = new AtomicInteger(200);
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class TemplateTest {
+  @Singleton
+  static class Application {
+    @Inject Application() {}
+  }
+
+  static class Service {
+    @Inject Application application;
+  }
+
+  static class Handler {
+    @Inject String requestId;
+    @Inject Service service;
+    @Inject Session session;
+  }
+
+  @Singleton
+  static class Session {
+    @Inject Service service;
+  }
+
+  @Module(injects = Application.class)
+  static class ApplicationModule {
+  }
+
+  @Module(addsTo = ApplicationModule.class, injects = { Handler.class, Session.class },
+      includes = DefaultsModule.class)
+  static class RequestModule {
+    private final String requestId;
+
+    RequestModule(String requestId) {
+      this.requestId = requestId;
+    }
+
+    @Provides String provideRequestId() {
+      return requestId;
+    }
+  }
+
+  @Module(addsTo = ApplicationModule.class, injects = Integer.class, complete = false)
+  static class DefaultsModule {
+    private final int limit;
+
+    DefaultsModule() {
+      this(10);
+    }
+
+    DefaultsModule(int limit) {
+      this.limit = limit;
+    }
+
+    @Provides Integer provideLimit() {
+      return limit;
+    }
+  }
+
+  private ObjectGraph application;
+  private ObjectGraph.Template template;
+
+  @Before public void setUp() {
+    application = ObjectGraph.createWith(new TestingLoader(), new ApplicationModule());
+    template = application.template(RequestModule.class);
+  }
+
+  @Test public void graphsUseTheirOwnModules() {
+    ObjectGraph request1 = template.create(new RequestModule("1"));
+    ObjectGraph request2 = template.create(new RequestModule("2"));
+    assertThat(request1.get(Handler.class).requestId).isEqualTo("1");
+    assertThat(request2.get(Handler.class).requestId).isEqualTo("2");
+  }
+
+  @Test public void singletonsAreOnePerGraph() {
+    ObjectGraph request1 = template.create(new RequestModule("1"));
+    ObjectGraph request2 = template.create(new RequestModule("2"));
+    assertThat(request1.get(Session.class)).isSameAs(request1.get(Handler.class).session);
+    assertThat(request1.get(Session.class)).isNotSameAs(request2.get(Session.class));
+    assertThat(request1.get(Handler.class).service.application)
+        .isSameAs(request2.get(Handler.class).service.application)
+        .isSameAs(application.get(Application.class));
+  }
+
+  @Test public void modulesNotGivenAreCreated() {
+    assertThat(template.create(new RequestModule("1")).get(Integer.class)).isEqualTo(10);
+    assertThat(template.create(new RequestModule("1"), new DefaultsModule(5)).get(Integer.class))
+        .isEqualTo(5);
+  }
+
+  @Test public void graphsCanBeExtended() {
+    ObjectGraph request = template.create(new RequestModule("1"));
+    ObjectGraph extension = request.plus(new ExtensionModule());
+    assertThat(extension.get(Handler.class).requestId).isEqualTo("1");
+  }
+
+  @Test public void moduleNotInTemplateIsRejected() {
+    try {
+      template.create(new ApplicationModule());
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Module(addsTo = RequestModule.class, injects = Handler.class)
+  static class ExtensionModule {
+  }
+}
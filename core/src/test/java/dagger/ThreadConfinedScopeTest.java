@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class ThreadConfinedScopeTest {
+  @PerThread static class Formatter {
+    @Inject Formatter() {}
+  }
+
+  static class Handler {
+    @Inject Provider<Formatter> formatter;
+    @Inject Provider<String> name;
+  }
+
+  @Module(injects = Handler.class)
+  static class HandlerModule {
+    final AtomicInteger names = new AtomicInteger();
+
+    @Provides @PerThread String provideName() {
+      return "name" + names.incrementAndGet();
+    }
+  }
+
+  @Test public void instancesArePerThread() throws Exception {
+    final Handler handler = ObjectGraph.createWith(new TestingLoader(), new HandlerModule())
+        .get(Handler.class);
+    Formatter formatter = handler.formatter.get();
+    assertThat(handler.formatter.get()).isSameAs(formatter);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Callable<Formatter> get = new Callable<Formatter>() {
+        @Override public Formatter call() {
+          return handler.formatter.get();
+        }
+      };
+      Formatter other = executor.submit(get).get();
+      assertThat(other).isNotSameAs(formatter);
+      assertThat(executor.submit(get).get()).isSameAs(other);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void providesMethodsArePerThread() throws Exception {
+    final Handler handler = ObjectGraph.createWith(new TestingLoader(), new HandlerModule())
+        .get(Handler.class);
+    assertThat(handler.name.get()).isEqualTo("name1");
+    assertThat(handler.name.get()).isEqualTo("name1");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThat(executor.submit(new Callable<String>() {
+        @Override public String call() {
+          return handler.name.get();
+        }
+      }).get()).isEqualTo("name2");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void instancesArePerGraph() {
+    Handler first = ObjectGraph.createWith(new TestingLoader(), new HandlerModule())
+        .get(Handler.class);
+    Handler second = ObjectGraph.createWith(new TestingLoader(), new HandlerModule())
+        .get(Handler.class);
+    assertThat(first.formatter.get()).isNotSameAs(second.formatter.get());
+  }
+
+  @PerThread static class Parser {
+    @Inject Parser() {}
+  }
+
+  static class ChildHandler {
+    @Inject Provider<Parser> parser;
+  }
+
+  @Module(injects = ChildHandler.class, addsTo = HandlerModule.class)
+  static class ChildModule {
+  }
+
+  @Test public void siblingGraphsDoNotShareInstances() {
+    ObjectGraph root = ObjectGraph.createWith(new TestingLoader(), new HandlerModule());
+    ChildHandler first = root.plus(new ChildModule()).get(ChildHandler.class);
+    ChildHandler second = root.plus(new ChildModule()).get(ChildHandler.class);
+    assertThat(first.parser.get()).isSameAs(first.parser.get());
+    assertThat(first.parser.get()).isNotSameAs(second.parser.get());
+  }
+
+  @Test public void releasedInstancesAreCreatedAgainOnEveryThread() throws Exception {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new HandlerModule());
+    final Handler handler = graph.get(Handler.class);
+    Formatter formatter = handler.formatter.get();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Callable<Formatter> get = new Callable<Formatter>() {
+        @Override public Formatter call() {
+          return handler.formatter.get();
+        }
+      };
+      Formatter other = executor.submit(get).get();
+      graph.releasePerThreadInstances();
+      assertThat(handler.formatter.get()).isNotSameAs(formatter);
+      assertThat(executor.submit(get).get()).isNotSameAs(other);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void perThreadIsNotACustomScope() {
+    try {
+      new ScopeContext(PerThread.class);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
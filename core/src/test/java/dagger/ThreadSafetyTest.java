@@ -27,6 +27,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -92,6 +93,59 @@ public final class ThreadSafetyTest {
     }
   }
 
+  @Singleton static class SharedDependency {
+    @Inject SharedDependency() {
+    }
+  }
+
+  static class Leaf {
+    @Inject SharedDependency shared;
+    @Inject Provider<SharedDependency> sharedProvider;
+  }
+
+  static class Left {
+    @Inject Leaf leaf;
+    @Inject SharedDependency shared;
+  }
+
+  static class Right {
+    @Inject Lazy<Leaf> leaf;
+    @Inject Left left;
+  }
+
+  @Module(injects = { Left.class, Right.class, Leaf.class })
+  static class ColdModule {
+  }
+
+  @Test public void concurrentColdLookups() throws Exception {
+    final List<Future<SharedDependency>> futures = new ArrayList<Future<SharedDependency>>();
+    final ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new ColdModule());
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      final int index = i;
+      futures.add(es.submit(new Callable<SharedDependency>() {
+        @Override public SharedDependency call() throws Exception {
+          latch.countDown();
+          latch.await();
+          switch (index % 3) {
+            case 0:
+              return graph.get(Left.class).leaf.sharedProvider.get();
+            case 1:
+              return graph.get(Right.class).leaf.get().shared;
+            default:
+              return graph.get(Leaf.class).shared;
+          }
+        }
+      }));
+    }
+    latch.countDown();
+    SharedDependency shared = graph.get(Left.class).shared;
+    for (Future<SharedDependency> future : futures) {
+      assertThat(future.get(1, TimeUnit.SECONDS))
+          .overridingErrorMessage("Linking failure - singleton bound more than once")
+          .isSameAs(shared);
+    }
+  }
+
   @Test public void concurrentLazyAccess() throws Exception {
     final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
     final ObjectGraph graph =
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.TestingLoader;
+import dagger.internal.TestingModuleAdapter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class WarmUpTest {
+  private final AtomicInteger executions = new AtomicInteger();
+  private final Executor executor = new Executor() {
+    @Override public void execute(Runnable command) {
+      executions.incrementAndGet();
+      command.run();
+    }
+  };
+
+  static class Dependency {
+    @Inject Dependency() {
+    }
+  }
+
+  static class EntryPoint {
+    @Inject Dependency dependency;
+    @Inject String string;
+  }
+
+  @Module(injects = EntryPoint.class)
+  static class TestModule {
+    @Provides String provideString() {
+      return "warm";
+    }
+  }
+
+  /** A reflective module that will be loaded in place of a generated module for this test. */
+  public static final class TestModule$$ModuleAdapter extends TestingModuleAdapter<TestModule> {
+    public TestModule$$ModuleAdapter() {
+      super(TestModule.class, TestModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  @Test public void warmUpLinksGraph() throws Exception {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    assertThat(graph.warmUp(executor).get()).isSameAs(graph);
+    EntryPoint entryPoint = graph.get(EntryPoint.class);
+    assertThat(entryPoint.dependency).isNotNull();
+    assertThat(entryPoint.string).isEqualTo("warm");
+  }
+
+  @Test public void warmUpIsOnlyStartedOnce() {
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new TestModule());
+    Future<ObjectGraph> future = graph.warmUp(executor);
+    assertThat(graph.warmUp(executor)).isSameAs(future);
+    assertThat(executions.get()).isEqualTo(1);
+  }
+
+  @Test public void warmUpReportsLinkingProblems() throws Exception {
+    class MissingString {
+      @Inject String string;
+    }
+    @Module(injects = MissingString.class)
+    class IncompleteModule {
+    }
+    ObjectGraph graph = ObjectGraph.createWith(new TestingLoader(), new IncompleteModule());
+    try {
+      graph.warmUp(executor).get();
+      fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test public void createAsync() throws Exception {
+    Future<ObjectGraph> future = ObjectGraph.createAsync(executor, new TestModule());
+    assertThat(executions.get()).isEqualTo(1);
+    EntryPoint entryPoint = future.get().get(EntryPoint.class);
+    assertThat(entryPoint.string).isEqualTo("warm");
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.internal.BindingKey.Kind;
+import java.lang.ref.WeakReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class BindingKeyTest {
+  @Test public void keysAreInterned() {
+    assertThat(BindingKey.get("java.lang.String"))
+        .isSameAs(BindingKey.get(new String("java.lang.String")));
+  }
+
+  @Test public void unusedKeysCanBeCollected() throws Exception {
+    String name = "com.example.Discarded" + System.nanoTime();
+    WeakReference<BindingKey> reference = new WeakReference<BindingKey>(BindingKey.get(name));
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNull();
+    assertThat(BindingKey.find(name)).isNull();
+    assertThat(BindingKey.get(name).name).isEqualTo(name);
+  }
+
+  @Test public void plainKey() {
+    BindingKey key = BindingKey.get("java.lang.String");
+    assertThat(key.kind).isEqualTo(Kind.PLAIN);
+    assertThat(key.className).isEqualTo("java.lang.String");
+    assertThat(key.qualifier).isNull();
+    assertThat(key.delegate).isNull();
+  }
+
+  @Test public void membersKey() {
+    BindingKey key = BindingKey.get("members/java.lang.String");
+    assertThat(key.kind).isEqualTo(Kind.MEMBERS);
+    assertThat(key.className).isEqualTo("java.lang.String");
+  }
+
+  @Test public void qualifiedKey() {
+    BindingKey key = BindingKey.get("@javax.inject.Named(value=foo)/java.lang.String");
+    assertThat(key.kind).isEqualTo(Kind.PLAIN);
+    assertThat(key.qualifier).isEqualTo("@javax.inject.Named(value=foo)");
+    assertThat(key.className).isEqualTo("java.lang.String");
+  }
+
+  @Test public void genericKeyHasNoClassName() {
+    assertThat(BindingKey.get("java.util.List<java.lang.String>").className).isNull();
+  }
+
+  @Test public void providerKeyDelegatesToProvidedType() {
+    BindingKey key =
+        BindingKey.get("@javax.inject.Named(value=foo)/javax.inject.Provider<java.lang.String>");
+    assertThat(key.kind).isEqualTo(Kind.PROVIDER);
+    assertThat(key.delegate)
+        .isSameAs(BindingKey.get("@javax.inject.Named(value=foo)/java.lang.String"));
+  }
+
+  @Test public void lazyKeyDelegatesToLazyType() {
+    BindingKey key = BindingKey.get("dagger.Lazy<java.lang.String>");
+    assertThat(key.kind).isEqualTo(Kind.LAZY);
+    assertThat(key.delegate).isSameAs(BindingKey.get("java.lang.String"));
+  }
+
+  @Test public void membersInjectorKeyDelegatesToMembersKey() {
+    BindingKey key = BindingKey.get("dagger.MembersInjector<java.lang.String>");
+    assertThat(key.kind).isEqualTo(Kind.MEMBERS_INJECTOR);
+    assertThat(key.delegate).isSameAs(BindingKey.get("members/java.lang.String"));
+  }
+
+  @Test public void providerSetKeyDelegatesToSetKey() {
+    BindingKey key = BindingKey.get("@javax.inject.Named(value=foo)/"
+        + "java.util.Set<javax.inject.Provider<java.util.List<java.lang.String>>>");
+    assertThat(key.kind).isEqualTo(Kind.PROVIDER_SET);
+    assertThat(key.delegate).isSameAs(BindingKey.get(
+        "@javax.inject.Named(value=foo)/java.util.Set<java.util.List<java.lang.String>>"));
+  }
+
+  @Test public void mapKeyDelegatesToMapOfProvidersKey() {
+    BindingKey key = BindingKey.get("java.util.Map<java.lang.String, java.util.List<Foo>>");
+    assertThat(key.kind).isEqualTo(Kind.MAP);
+    assertThat(key.delegate).isSameAs(BindingKey.get(
+        "java.util.Map<java.lang.String, javax.inject.Provider<java.util.List<Foo>>>"));
+    assertThat(key.delegate.kind).isEqualTo(Kind.PROVIDER_MAP);
+    assertThat(key.delegate.delegate).isSameAs(BindingKey.get("java.util.Set<java.util.Map$Entry"
+        + "<java.lang.String, javax.inject.Provider<java.util.List<Foo>>>>"));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class CompactSetTest {
+  @Test public void keepsInsertionOrderAndDropsDuplicates() {
+    Set<String> set = new CompactSet.Builder<String>(2)
+        .add("b").add("a").add("b").add("c").add("a").build();
+    assertThat(set).hasSize(3);
+    assertThat(Arrays.asList(set.toArray())).containsExactly("b", "a", "c");
+  }
+
+  @Test public void largeSetsAreHashed() {
+    CompactSet.Builder<Integer> builder = new CompactSet.Builder<Integer>(1);
+    for (int i = 0; i < 500; i++) {
+      builder.add(i);
+      builder.add(i / 2);
+    }
+    Set<Integer> set = builder.build();
+    assertThat(set).hasSize(500);
+    Iterator<Integer> iterator = set.iterator();
+    for (int i = 0; i < 500; i++) {
+      assertThat(set.contains(i)).isTrue();
+      assertThat(iterator.next()).isEqualTo(i);
+    }
+    assertThat(set.contains(500)).isFalse();
+    assertThat(set.contains(null)).isFalse();
+  }
+
+  @Test public void permitsNull() {
+    Set<String> set = new CompactSet.Builder<String>(20).add(null).add("a").add(null).build();
+    assertThat(set).hasSize(2);
+    assertThat(set.contains(null)).isTrue();
+  }
+
+  @Test public void equalsOtherSets() {
+    Set<String> set = new CompactSet.Builder<String>(3).add("a").add("b").build();
+    assertThat(set).isEqualTo(new HashSet<String>(Arrays.asList("b", "a")));
+    assertThat(set.hashCode()).isEqualTo("a".hashCode() + "b".hashCode());
+  }
+
+  @Test public void isImmutable() {
+    Set<String> set = new CompactSet.Builder<String>(1).add("a").build();
+    try {
+      set.add("b");
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+    try {
+      Iterator<String> iterator = set.iterator();
+      iterator.next();
+      iterator.remove();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+}
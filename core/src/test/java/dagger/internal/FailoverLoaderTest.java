@@ -19,12 +19,16 @@ package dagger.internal;
 import dagger.Module;
 import dagger.ObjectGraph;
 import dagger.Provides;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
 import javax.inject.Inject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * A test case to deal with fall-back to reflection where an inject adapter has not
@@ -54,4 +58,188 @@ public final class FailoverLoaderTest {
     ObjectGraph.create(new TestModule()).inject(entryPoint);
     assertThat(entryPoint.a).isEqualTo("a");
   }
+
+  @Module
+  static class OtherModule {
+  }
+
+  static final class OtherModule$$ModuleAdapter extends TestingModuleAdapter<OtherModule> {
+    public OtherModule$$ModuleAdapter() {
+      super(OtherModule.class, OtherModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  @Test public void cachesAdaptersUntilCleared() {
+    FailoverLoader loader = new FailoverLoader();
+    ModuleAdapter<TestModule> adapter = loader.getModuleAdapter(TestModule.class);
+    assertThat(loader.getModuleAdapter(TestModule.class)).isSameAs(adapter);
+    loader.clearCaches();
+    assertThat(loader.getModuleAdapter(TestModule.class)).isNotSameAs(adapter);
+  }
+
+  @Test public void adaptersOfTheApplicationSurviveGarbageCollection() throws Exception {
+    FailoverLoader loader = new FailoverLoader();
+    WeakReference<ModuleAdapter<?>> reference =
+        new WeakReference<ModuleAdapter<?>>(loader.getModuleAdapter(TestModule.class));
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNotNull();
+    assertThat(loader.getModuleAdapter(TestModule.class)).isSameAs(reference.get());
+  }
+
+  @Test public void boundedCachesEvict() {
+    FailoverLoader loader = new FailoverLoader(1);
+    ModuleAdapter<TestModule> adapter = loader.getModuleAdapter(TestModule.class);
+    loader.getModuleAdapter(OtherModule.class);
+    assertThat(loader.getModuleAdapter(TestModule.class)).isNotSameAs(adapter);
+  }
+
+  @Test public void reflectionFallbacksAreCounted() {
+    FailoverLoader loader = new FailoverLoader();
+    ObjectGraph.createWith(loader, new TestModule()).inject(new EntryPoint());
+    ObjectGraph.createWith(loader, new TestModule()).inject(new EntryPoint());
+
+    FailoverLoader.Fallback fallback =
+        loader.reflectionFallbacks().get(EntryPoint.class.getName());
+    assertThat(fallback.key).isEqualTo(Keys.getMembersKey(EntryPoint.class));
+    assertThat(fallback.requiredBy).isNotNull();
+    assertThat(fallback.count).isEqualTo(2);
+    assertThat(loader.reflectionFallbacks()).hasSize(1);
+  }
+
+  @Test public void generatedOnlyLoaderRejectsReflection() {
+    FailoverLoader loader = new FailoverLoader(Integer.MAX_VALUE, true);
+    ObjectGraph graph = ObjectGraph.createWith(loader, new TestModule());
+    try {
+      graph.inject(new EntryPoint());
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains(EntryPoint.class.getName())
+          .contains("has no generated inject adapter");
+    }
+    assertThat(loader.reflectionFallbacks().containsKey(EntryPoint.class.getName())).isTrue();
+  }
+
+  @Module
+  static class UngeneratedModule {
+  }
+
+  @Test public void generatedCodeOnlyGraphsFailWhenCreated() {
+    try {
+      ObjectGraph.builder().generatedCodeOnly().create(new TestModule());
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains(EntryPoint.class.getName())
+          .contains("has no generated inject adapter");
+    }
+    assertThat(FailoverLoader.sharedGeneratedOnly().reflectionFallbacks()
+        .containsKey(EntryPoint.class.getName())).isTrue();
+
+    try {
+      ObjectGraph.builder().generatedCodeOnly().create(new UngeneratedModule());
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains(UngeneratedModule.class.getName())
+          .contains("could not be loaded");
+    }
+  }
+
+  @Module
+  static class RegisteredModule {
+  }
+
+  static final class RegisteredModuleAdapter extends TestingModuleAdapter<RegisteredModule> {
+    public RegisteredModuleAdapter() {
+      super(RegisteredModule.class, RegisteredModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  /**
+   * Registers an adapter that has no class by that name, so it can only be created by this
+   * registry. Listed in the module adapter registry index of the test resources.
+   */
+  static final class Registry extends AdapterRegistry {
+    public Registry() {
+      super(RegisteredModule.class.getName() + "$$ModuleAdapter");
+    }
+
+    @Override protected Object newAdapter(int index) {
+      if (index != 0) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return new RegisteredModuleAdapter();
+    }
+  }
+
+  @Test public void registeredAdaptersAreCreatedByTheirRegistry() {
+    FailoverLoader loader = new FailoverLoader();
+    assertThat(loader.getModuleAdapter(RegisteredModule.class))
+        .isInstanceOf(RegisteredModuleAdapter.class);
+  }
+
+  @Module(injects = LeakedEntryPoint.class)
+  public static class LeakedModule {
+    @Provides String aString() {
+      return "a";
+    }
+  }
+
+  public static final class LeakedModule$$ModuleAdapter
+      extends TestingModuleAdapter<LeakedModule> {
+    public LeakedModule$$ModuleAdapter() {
+      super(LeakedModule.class, LeakedModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  public static class LeakedEntryPoint {
+    @Inject public String a;
+  }
+
+  /** Defines its own copy of the {@code Leaked} classes above, and delegates all others. */
+  static final class IsolatingClassLoader extends URLClassLoader {
+    private static final String PREFIX = FailoverLoaderTest.class.getName() + "$Leaked";
+
+    IsolatingClassLoader() {
+      super(new URL[] { FailoverLoaderTest.class.getProtectionDomain().getCodeSource()
+          .getLocation() }, FailoverLoaderTest.class.getClassLoader());
+    }
+
+    @Override protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.startsWith(PREFIX)) {
+        return super.loadClass(name, resolve);
+      }
+      Class<?> result = findLoadedClass(name);
+      if (result == null) {
+        result = findClass(name);
+      }
+      if (resolve) {
+        resolveClass(result);
+      }
+      return result;
+    }
+  }
+
+  @Test public void sharedLoaderDoesNotKeepClassLoadersReachable() throws Exception {
+    WeakReference<ClassLoader> reference = injectWithThrowawayClassLoader();
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNull();
+  }
+
+  private static WeakReference<ClassLoader> injectWithThrowawayClassLoader() throws Exception {
+    ClassLoader classLoader = new IsolatingClassLoader();
+    Class<?> moduleClass = classLoader.loadClass(LeakedModule.class.getName());
+    Class<?> entryPointClass = classLoader.loadClass(LeakedEntryPoint.class.getName());
+    assertThat(moduleClass).isNotSameAs(LeakedModule.class);
+
+    ObjectGraph graph = ObjectGraph.create(moduleClass.newInstance());
+    assertThat(entryPointClass.getField("a").get(graph.get(entryPointClass))).isEqualTo("a");
+    FailoverLoader.shared().getModuleAdapter(moduleClass);
+    return new WeakReference<ClassLoader>(classLoader);
+  }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class FrozenBindingsTest {
+  @Test public void frozenBindingsMatchSource() {
+    Map<BindingKey, Binding<?>> source = new LinkedHashMap<BindingKey, Binding<?>>();
+    for (int i = 0; i < 100; i++) {
+      source.put(BindingKey.get("frozen.Type" + i), new StringBinding("frozen.Type" + i));
+    }
+    FrozenBindings frozen = new FrozenBindings(source, null);
+    assertThat(frozen).isEqualTo(source);
+    assertThat(frozen.get(BindingKey.get("frozen.Missing"))).isNull();
+    assertThat(frozen.get("frozen.Type0")).isNull(); // Only keys are looked up.
+  }
+
+  @Test(timeout = 5000) public void sizedFromTheBindingsCopied() {
+    final Map<BindingKey, Binding<?>> entries = new LinkedHashMap<BindingKey, Binding<?>>();
+    for (int i = 0; i < 50; i++) {
+      entries.put(BindingKey.get("frozen.Grown" + i), new StringBinding("frozen.Grown" + i));
+    }
+    // Reports the size from before the other entries were added, like a map that is growing.
+    Map<BindingKey, Binding<?>> growing = new AbstractMap<BindingKey, Binding<?>>() {
+      @Override public Set<Map.Entry<BindingKey, Binding<?>>> entrySet() {
+        return entries.entrySet();
+      }
+
+      @Override public int size() {
+        return 1;
+      }
+    };
+    FrozenBindings frozen = new FrozenBindings(growing, null);
+    assertThat(frozen).hasSize(50);
+    assertThat(frozen).isEqualTo(entries);
+  }
+
+  @Test public void bindingsAddedAfterFreezingAreKeptSeparately() {
+    BindingKey a = BindingKey.get("frozen.A");
+    BindingKey b = BindingKey.get("frozen.B");
+    Map<BindingKey, Binding<?>> source = new HashMap<BindingKey, Binding<?>>();
+    Binding<?> aBinding = new StringBinding("frozen.A");
+    source.put(a, aBinding);
+    FrozenBindings frozen = new FrozenBindings(source, null);
+
+    assertThat(frozen.putIfAbsent(a, new StringBinding("frozen.A"))).isSameAs(aBinding);
+    Binding<?> bBinding = new StringBinding("frozen.B");
+    assertThat(frozen.putIfAbsent(b, bBinding)).isNull();
+    assertThat(frozen.get(b)).isSameAs(bBinding);
+    assertThat(frozen).hasSize(2);
+    assertThat(frozen.keySet()).containsOnly(a, b);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void frozenBindingsCannotBeReplaced() {
+    BindingKey a = BindingKey.get("frozen.A");
+    Map<BindingKey, Binding<?>> source = new HashMap<BindingKey, Binding<?>>();
+    source.put(a, new StringBinding("frozen.A"));
+    new FrozenBindings(source, null).put(a, new StringBinding("frozen.A"));
+  }
+
+  private static class StringBinding extends Binding<String> {
+    StringBinding(String key) {
+      super(key, null, false, "test");
+    }
+  }
+}
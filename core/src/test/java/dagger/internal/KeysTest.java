@@ -16,18 +16,21 @@
 package dagger.internal;
 
 import dagger.Lazy;
+import dagger.MapKey;
 import dagger.MembersInjector;
 import dagger.Provides;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.inject.Named;
 import javax.inject.Provider;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import static dagger.Provides.Type.MAP;
 import static dagger.Provides.Type.SET;
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -128,6 +131,40 @@ public final class KeysTest {
     assertThat(Keys.getLazyKey(fieldKey("providerOfTypeAnnotated"))).isNull();
   }
 
+  @Named("/@") Set<Provider<String>> providerSetAnnotated;
+  @Named("/@") Set<String> setAnnotated;
+  @Test public void testGetProviderSetKey() throws NoSuchFieldException {
+    assertThat(Keys.getProviderSetKey(fieldKey("providerSetAnnotated")))
+        .isEqualTo(fieldKey("setAnnotated"));
+  }
+
+  @Test public void testGetProviderSetKey_WrongKeyType() throws NoSuchFieldException {
+    assertThat(Keys.getProviderSetKey(fieldKey("setAnnotated"))).isNull();
+    assertThat(Keys.getProviderSetKey(fieldKey("providerOfTypeAnnotated"))).isNull();
+  }
+
+  @Named("/@") Map<String, List<String>> mapAnnotated;
+  @Named("/@") Map<String, Provider<List<String>>> mapOfProvidersAnnotated;
+  @Named("/@") Set<Map.Entry<String, Provider<List<String>>>> mapEntriesAnnotated;
+  @Test public void testGetMapKeys() throws NoSuchFieldException {
+    assertThat(Keys.getMapOfProvidersKey(fieldKey("mapAnnotated")))
+        .isEqualTo(fieldKey("mapOfProvidersAnnotated"));
+    assertThat(Keys.getMapEntriesKey(fieldKey("mapOfProvidersAnnotated")))
+        .isEqualTo(fieldKey("mapEntriesAnnotated"));
+    assertThat(Keys.getMapOfProvidersKey(fieldKey("mapOfProvidersAnnotated"))).isNull();
+    assertThat(Keys.getMapEntriesKey(fieldKey("mapAnnotated"))).isNull();
+    assertThat(Keys.getMapOfProvidersKey(fieldKey("setAnnotated"))).isNull();
+  }
+
+  @Named("/@")
+  @Provides(type=MAP) @MapKey("foo") List<String> mapValueProvides() { return null; }
+
+  @Test public void testGetMapEntriesKey() throws NoSuchMethodException, NoSuchFieldException {
+    Method method = KeysTest.class.getDeclaredMethod("mapValueProvides", new Class<?>[]{});
+    assertThat(Keys.getMapEntriesKey(method.getGenericReturnType(), method.getAnnotations(),
+        method)).isEqualTo(fieldKey("mapEntriesAnnotated"));
+  }
+
   @Provides(type=SET) String elementProvides() { return "foo"; }
 
   @Test public void testGetElementKey_NoQualifier() throws NoSuchMethodException {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.internal.SyntheticGraphLoader.Shape;
+
+/**
+ * Measures how long it takes to link synthetic graphs of JIT bindings. Run its
+ * {@code main} method from the test classpath; it isn't run as part of the build.
+ */
+public final class LinkerBenchmark {
+  private static final int[] SIZES = { 1000, 5000, 10000, 50000 };
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    System.out.println("shape\tbindings\tattaches\tbest ms");
+    for (Shape shape : Shape.values()) {
+      for (int size : SIZES) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+          link(shape, size);
+        }
+        long best = Long.MAX_VALUE;
+        int attaches = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+          long start = System.nanoTime();
+          attaches = link(shape, size);
+          best = Math.min(best, System.nanoTime() - start);
+        }
+        if (attaches != size) {
+          throw new AssertionError(shape + " " + size + ": " + attaches + " attaches");
+        }
+        System.out.println(shape + "\t" + size + "\t" + attaches + "\t"
+            + String.format("%.2f", best / 1e6));
+      }
+    }
+  }
+
+  /**
+   * Links the graph from its root and returns the number of attaches required, which is one per
+   * binding.
+   */
+  private static int link(Shape shape, int size) {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(shape, size);
+    Linker linker = new Linker(null, loader, new ThrowingErrorHandler());
+    String rootKey = SyntheticGraphLoader.key(0);
+    ClassLoader classLoader = LinkerBenchmark.class.getClassLoader();
+    synchronized (linker) {
+      linker.requestBinding(rootKey, "benchmark", classLoader);
+      linker.linkRequested();
+      if (!linker.requestBinding(rootKey, "benchmark", classLoader).isLinked()) {
+        throw new AssertionError();
+      }
+    }
+    return loader.attachCount();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.internal.SyntheticGraphLoader.Shape;
+
+/**
+ * Measures how long it takes a nested linker to look up bindings inherited from its ancestors,
+ * for nesting depths 1 to 10. Run its {@code main} method from the test classpath; it isn't run
+ * as part of the build.
+ */
+public final class LinkerDepthBenchmark {
+  private static final int MAX_DEPTH = 10;
+  private static final int BINDINGS_PER_LINKER = 100;
+  private static final int LOOKUPS = 1000000;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    System.out.println("depth\thit ns/op\tmiss ns/op");
+    for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+      Linker linker = nestedLinker(depth);
+      BindingKey hit = BindingKey.get(SyntheticGraphLoader.key(0));
+      BindingKey miss = BindingKey.get(SyntheticGraphLoader.key(-1));
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        lookUp(linker, hit);
+        lookUp(linker, miss);
+      }
+      long bestHit = Long.MAX_VALUE;
+      long bestMiss = Long.MAX_VALUE;
+      for (int i = 0; i < ROUNDS; i++) {
+        bestHit = Math.min(bestHit, lookUp(linker, hit));
+        bestMiss = Math.min(bestMiss, lookUp(linker, miss));
+      }
+      System.out.println(depth + "\t" + String.format("%.1f", (double) bestHit / LOOKUPS)
+          + "\t" + String.format("%.1f", (double) bestMiss / LOOKUPS));
+    }
+  }
+
+  /**
+   * Returns an unlinked linker with {@code depth} fully linked ancestors. Each ancestor binds
+   * its own nodes, and the top-most one binds node 0.
+   */
+  private static Linker nestedLinker(int depth) {
+    ClassLoader classLoader = LinkerDepthBenchmark.class.getClassLoader();
+    Linker linker = null;
+    for (int level = 0; level < depth; level++) {
+      linker = new Linker(linker, new SyntheticGraphLoader(Shape.WIDE, BINDINGS_PER_LINKER),
+          new ThrowingErrorHandler());
+      synchronized (linker) {
+        for (int i = 0; i < BINDINGS_PER_LINKER; i++) {
+          int node = level * BINDINGS_PER_LINKER + i;
+          linker.requestBinding(SyntheticGraphLoader.key(node), "benchmark", classLoader);
+        }
+        linker.linkAll();
+      }
+    }
+    return new Linker(linker, new SyntheticGraphLoader(Shape.WIDE, 0),
+        new ThrowingErrorHandler());
+  }
+
+  /** Returns the nanoseconds taken to look up {@code key} {@link #LOOKUPS} times. */
+  private static long lookUp(Linker linker, BindingKey key) {
+    int found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < LOOKUPS; i++) {
+      if (linker.findBinding(key) != null) {
+        found++;
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    if (found != 0 && found != LOOKUPS) {
+      throw new AssertionError();
+    }
+    return elapsed;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.internal.SyntheticGraphLoader.Shape;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class LinkerTest {
+  private static final int SIZE = 1000;
+
+  @Test public void deepGraphAttachesEachBindingOnce() {
+    assertLinkedWithOneAttachPerBinding(Shape.DEEP);
+  }
+
+  @Test public void wideGraphAttachesEachBindingOnce() {
+    assertLinkedWithOneAttachPerBinding(Shape.WIDE);
+  }
+
+  @Test public void treeGraphAttachesEachBindingOnce() {
+    assertLinkedWithOneAttachPerBinding(Shape.TREE);
+  }
+
+  @Test public void missingKeyIsReportedOnce() {
+    final List<String> errors = new ArrayList<String>();
+    Linker linker = new Linker(null, new TestingLoader(), new Linker.ErrorHandler() {
+      @Override public void handleErrors(List<String> list) {
+        errors.addAll(list);
+      }
+    });
+    synchronized (linker) {
+      for (int i = 0; i < 10; i++) {
+        linker.requestBinding("java.util.List<java.lang.String>", "requester" + i,
+            getClass().getClassLoader());
+      }
+      linker.linkRequested();
+    }
+    assertThat(errors).hasSize(1);
+  }
+
+  @Test public void lazyBindingsOfLockingLinkersUseLocks() {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(Shape.DEEP, 3);
+    Linker linker = new Linker(null, loader, new ThrowingErrorHandler(), false,
+        new Scoping(true, false));
+    String key = "dagger.Lazy<" + SyntheticGraphLoader.key(0) + ">";
+    synchronized (linker) {
+      linker.requestBinding(key, "test", getClass().getClassLoader());
+      linker.linkRequested();
+    }
+    Object lazy = linker.findBinding(BindingKey.get(key)).get();
+    assertThat(lazy).isInstanceOf(LockingLazy.class);
+  }
+
+  @Test public void bindingIsLibraryOnlyIfEveryRequesterAllowsIt() {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(Shape.DEEP, 3);
+    Linker linker = new Linker(null, loader, new ThrowingErrorHandler());
+    String key = SyntheticGraphLoader.key(0);
+    ClassLoader classLoader = getClass().getClassLoader();
+    synchronized (linker) {
+      linker.requestBinding(key, "first", classLoader, true, false);
+      linker.requestBinding(key, "second", classLoader, true, true);
+      linker.linkRequested();
+    }
+    assertThat(linker.findBinding(BindingKey.get(key)).library()).isFalse();
+  }
+
+  @Test public void nestedLinkerSeesBindingsAddedToAncestorsAfterFlattening() {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(Shape.DEEP, 10);
+    ClassLoader classLoader = getClass().getClassLoader();
+    Linker root = new Linker(null, loader, new ThrowingErrorHandler());
+    synchronized (root) {
+      root.requestBinding(SyntheticGraphLoader.key(0), "test", classLoader);
+      root.linkRequested();
+      root.linkAll();
+    }
+    Linker child = new Linker(root, loader, new ThrowingErrorHandler());
+    synchronized (child) {
+      child.linkAll();
+    }
+    Linker grandchild = new Linker(child, loader, new ThrowingErrorHandler());
+
+    BindingKey inherited = BindingKey.get(SyntheticGraphLoader.key(5));
+    assertThat(grandchild.findBinding(inherited)).isSameAs(root.findBinding(inherited));
+    BindingKey added = BindingKey.get(SyntheticGraphLoader.key(20));
+    assertThat(grandchild.findBinding(added)).isNull();
+
+    synchronized (root) {
+      root.requestBinding(added.name, "test", classLoader);
+      root.linkRequested();
+    }
+    assertThat(root.findBinding(added)).isNotNull();
+    assertThat(grandchild.findBinding(added)).isSameAs(root.findBinding(added));
+  }
+
+  @Test public void siblingLinkersShareBindingsThatDependOnlyOnAncestors() {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(Shape.DEEP, 30);
+    Linker root = linkedRoot(loader, 25);
+    Linker child1 = new Linker(root, loader, new ThrowingErrorHandler(), true);
+    Linker child2 = new Linker(root, loader, new ThrowingErrorHandler(), true);
+
+    Binding<?> binding = link(child1, 24);
+    int attachCount = loader.attachCount();
+    assertThat(link(child2, 24)).isSameAs(binding);
+    assertThat(loader.attachCount()).isEqualTo(attachCount);
+    // The root linker itself doesn't use bindings shared by its children.
+    assertThat(root.findBinding(BindingKey.get(SyntheticGraphLoader.key(24)))).isNull();
+  }
+
+  @Test public void siblingWithItsOwnDependencyDoesNotShareBindings() {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(Shape.DEEP, 30);
+    Linker root = linkedRoot(loader, 25);
+    Linker child1 = new Linker(root, loader, new ThrowingErrorHandler(), true);
+    Binding<?> shared = link(child1, 24);
+
+    Linker child2 = new Linker(root, loader, new ThrowingErrorHandler(), true);
+    String key = SyntheticGraphLoader.key(25);
+    final Binding<?> own = loader.getAtInjectBinding(key, key, getClass().getClassLoader(), false);
+    child2.installBindings(new BindingsGroup() {
+      {
+        put(own.provideKey, own);
+      }
+
+      @Override public Binding<?> contributeSetBinding(String key, SetBinding<?> value) {
+        throw new UnsupportedOperationException();
+      }
+    });
+    Binding<?> binding = link(child2, 24);
+    assertThat(binding).isNotSameAs(shared);
+    Set<Binding<?>> dependencies = new HashSet<Binding<?>>();
+    binding.getDependencies(dependencies, dependencies);
+    assertThat(dependencies).containsOnly(own);
+  }
+
+  /** Returns a fully linked linker that has linked {@code node} and its dependencies. */
+  private Linker linkedRoot(SyntheticGraphLoader loader, int node) {
+    Linker root = new Linker(null, loader, new ThrowingErrorHandler(), true);
+    root.requestBinding(SyntheticGraphLoader.key(node), "test", getClass().getClassLoader());
+    root.linkAll();
+    return root;
+  }
+
+  /** Links {@code node} in {@code linker} and returns its binding. */
+  private Binding<?> link(Linker linker, int node) {
+    String key = SyntheticGraphLoader.key(node);
+    ClassLoader classLoader = getClass().getClassLoader();
+    Binding<?> binding = linker.requestBinding(key, "test", classLoader);
+    if (binding == null || !binding.isLinked()) {
+      linker.linkRequested();
+      binding = linker.requestBinding(key, "test", classLoader);
+    }
+    assertThat(binding.isLinked()).isTrue();
+    return binding;
+  }
+
+  private void assertLinkedWithOneAttachPerBinding(Shape shape) {
+    SyntheticGraphLoader loader = new SyntheticGraphLoader(shape, SIZE);
+    Linker linker = new Linker(null, loader, new ThrowingErrorHandler());
+    String rootKey = SyntheticGraphLoader.key(0);
+    ClassLoader classLoader = getClass().getClassLoader();
+    synchronized (linker) {
+      assertThat(linker.requestBinding(rootKey, "test", classLoader)).isNull();
+      linker.linkRequested();
+      Binding<?> root = linker.requestBinding(rootKey, "test", classLoader);
+      assertThat(root.isLinked()).isTrue();
+      assertThat(linker.linkAll()).hasSize(SIZE);
+    }
+    assertThat(loader.attachCount()).isEqualTo(SIZE);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Lazy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Provider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.truth0.Truth.ASSERT;
+
+/**
+ * Tests {@link LockingLazy}.
+ */
+@RunWith(JUnit4.class)
+public class LockingLazyTest {
+  @Test public void get() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicInteger count = new AtomicInteger();
+    final Lazy<Integer> lazy = new LockingLazy<Integer>(new Provider<Integer>() {
+      @Override public Integer get() {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return count.incrementAndGet();
+      }
+    }, false);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Callable<Integer> get = new Callable<Integer>() {
+        @Override public Integer call() {
+          return lazy.get();
+        }
+      };
+      Future<?>[] futures = new Future<?>[4];
+      for (int i = 0; i < futures.length; i++) {
+        futures[i] = executor.submit(get);
+      }
+      latch.countDown();
+      for (Future<?> future : futures) {
+        ASSERT.that(future.get()).isEqualTo(1);
+      }
+      ASSERT.that(count.get()).is(1);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void memoizesNull() {
+    final AtomicInteger count = new AtomicInteger();
+    Lazy<Object> lazy = new LockingLazy<Object>(new Provider<Object>() {
+      @Override public Object get() {
+        count.incrementAndGet();
+        return null;
+      }
+    }, true);
+    assertNull(lazy.get());
+    assertNull(lazy.get());
+    ASSERT.that(count.get()).is(1);
+  }
+
+  @Test public void get_nullPointerException() {
+    Lazy<Object> lazy = new LockingLazy<Object>(new Provider<Object>() {
+      @Override public Object get() {
+        return null;
+      }
+    }, false);
+    try {
+      lazy.get();
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+}
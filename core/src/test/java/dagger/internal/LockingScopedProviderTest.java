@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.inject.Provider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.fail;
+import static org.truth0.Truth.ASSERT;
+
+/**
+ * Tests {@link LockingScopedProvider}.
+ */
+@RunWith(JUnit4.class)
+public class LockingScopedProviderTest {
+  @Test public void get_nullPointerException() {
+    Provider<Object> scopedProvider = new LockingScopedProvider<Object>(new Factory<Object>() {
+      @Override public Object get() {
+        return null;
+      }
+    });
+    try {
+      scopedProvider.get();
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void get() {
+    Provider<Integer> scopedProvider = new LockingScopedProvider<Integer>(new Factory<Integer>() {
+      int i = 0;
+
+      @Override public Integer get() {
+        return i++;
+      }
+    });
+    ASSERT.that(scopedProvider.get()).is(0);
+    ASSERT.that(scopedProvider.get()).is(0);
+    ASSERT.that(scopedProvider.get()).is(0);
+  }
+
+  @Test public void reentrantGet() {
+    final AtomicReference<Provider<Integer>> self = new AtomicReference<Provider<Integer>>();
+    self.set(new LockingScopedProvider<Integer>(new Factory<Integer>() {
+      int i = 0;
+
+      @Override public Integer get() {
+        return i++ == 0 ? self.get().get() + 10 : i;
+      }
+    }));
+    ASSERT.that(self.get().get()).is(12);
+    ASSERT.that(self.get().get()).is(12);
+  }
+}
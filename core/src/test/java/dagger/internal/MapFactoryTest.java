@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Provider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertSame;
+import static org.truth0.Truth.ASSERT;
+
+@RunWith(JUnit4.class)
+public class MapFactoryTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void duplicateKey() {
+    MapFactory.Builder<Integer> builder =
+        MapFactory.<Integer>builder(2).put("a", InstanceFactory.create(1));
+    thrown.expect(IllegalStateException.class);
+    builder.put("a", InstanceFactory.create(2));
+  }
+
+  @Test
+  public void providerReturnsNull() {
+    Factory<Map<String, Integer>> factory = MapFactory.<Integer>builder(1)
+        .put("a", new Provider<Integer>() {
+          @Override public Integer get() {
+            return null;
+          }
+        })
+        .build();
+    thrown.expect(NullPointerException.class);
+    factory.get();
+  }
+
+  @Test
+  public void invokesProvidersEveryTime() {
+    Factory<Map<String, Integer>> factory = MapFactory.<Integer>builder(2)
+        .put("a", incrementingIntegerProvider(0))
+        .put("b", incrementingIntegerProvider(10))
+        .build();
+    Map<String, Integer> first = factory.get();
+    ASSERT.that(first.keySet()).iteratesAs("a", "b");
+    ASSERT.that(first.values()).iteratesAs(1, 11);
+    ASSERT.that(factory.get().values()).iteratesAs(2, 12);
+  }
+
+  @Test
+  public void constantProvidersAreCached() {
+    Factory<Map<String, Integer>> factory = MapFactory.<Integer>builder(2)
+        .put("a", InstanceFactory.create(1))
+        .put("b", ScopedProvider.create(incrementingIntegerProvider(1)))
+        .build();
+    assertSame(factory.get(), factory.get());
+    ASSERT.that(factory.get().values()).iteratesAs(1, 2);
+  }
+
+  @Test
+  public void providersOf() {
+    Provider<Integer> a = incrementingIntegerProvider(0);
+    Provider<Integer> b = incrementingIntegerProvider(10);
+    MapFactory<Integer> factory = MapFactory.<Integer>builder(2).put("a", a).put("b", b).build();
+    Factory<Map<String, Provider<Integer>>> providers = MapFactory.providersOf(factory);
+    assertSame(providers.get(), providers.get());
+    assertSame(a, providers.get().get("a"));
+    assertSame(b, providers.get().get("b"));
+  }
+
+  private static Factory<Integer> incrementingIntegerProvider(int seed) {
+    final AtomicInteger counter = new AtomicInteger(seed);
+    return new Factory<Integer>() {
+      @Override
+      public Integer get() {
+        return counter.incrementAndGet();
+      }
+    };
+  }
+}
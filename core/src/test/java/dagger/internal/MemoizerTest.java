@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class MemoizerTest {
+  @Test public void createsEachKeyOnceUnderContention() throws Exception {
+    final AtomicInteger creations = new AtomicInteger();
+    final CountDownLatch creating = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Memoizer<String, Object> memoizer = new Memoizer<String, Object>() {
+      @Override Object create(String key) {
+        creations.incrementAndGet();
+        creating.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return new Object();
+      }
+    };
+
+    final Object[] results = new Object[8];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override public void run() {
+          results[index] = memoizer.get("key");
+        }
+      };
+      threads[i].start();
+    }
+    creating.await();
+    Thread.sleep(50); // Let the other threads find the creation in progress.
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(creations.get()).isEqualTo(1);
+    for (Object result : results) {
+      assertThat(result).isSameAs(results[0]);
+    }
+  }
+
+  @Test public void failedCreationIsRetried() {
+    final AtomicInteger creations = new AtomicInteger();
+    Memoizer<String, String> memoizer = new Memoizer<String, String>() {
+      @Override String create(String key) {
+        if (creations.incrementAndGet() == 1) {
+          throw new IllegalStateException("first");
+        }
+        return key;
+      }
+    };
+    try {
+      memoizer.get("key");
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertThat(memoizer.get("key")).isEqualTo("key");
+    assertThat(memoizer.get("key")).isEqualTo("key");
+    assertThat(creations.get()).isEqualTo(2);
+  }
+
+  @Test public void weakKeysAreComparedByIdentity() {
+    Memoizer<String, Object> memoizer = new Memoizer<String, Object>(Integer.MAX_VALUE, true) {
+      @Override Object create(String key) {
+        return new Object();
+      }
+    };
+    String key = new String("key");
+    Object result = memoizer.get(key);
+    assertThat(memoizer.get(key)).isSameAs(result);
+    assertThat(memoizer.get(new String("key"))).isNotSameAs(result);
+  }
+
+  @Test public void weakKeysCanBeCollected() throws Exception {
+    Memoizer<Object, String> memoizer = new Memoizer<Object, String>(Integer.MAX_VALUE, true) {
+      @Override String create(Object key) {
+        return "value";
+      }
+    };
+    Object key = new Object();
+    memoizer.get(key);
+    WeakReference<Object> reference = new WeakReference<Object>(key);
+    key = null;
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNull();
+  }
+
+  @Test public void weakValuesAreCreatedAgainOnceCollected() throws Exception {
+    final AtomicInteger creations = new AtomicInteger();
+    Memoizer<String, Object> memoizer =
+        new Memoizer<String, Object>(Integer.MAX_VALUE, false, true) {
+          @Override Object create(String key) {
+            creations.incrementAndGet();
+            return new Object();
+          }
+        };
+    Object value = memoizer.get("key");
+    assertThat(memoizer.get("key")).isSameAs(value);
+    WeakReference<Object> reference = new WeakReference<Object>(value);
+    value = null;
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNull();
+    assertThat(memoizer.get("key")).isNotNull();
+    assertThat(creations.get()).isEqualTo(2);
+  }
+}
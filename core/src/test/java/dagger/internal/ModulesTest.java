@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Module;
+import dagger.internal.Modules.ModuleWithAdapter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public final class ModulesTest {
+  @Module
+  static class IncludedModule {
+  }
+
+  @Module(includes = IncludedModule.class)
+  static class RootModule {
+  }
+
+  /** Loads reflective adapters and counts them. */
+  static final class CountingLoader extends Loader {
+    final AtomicInteger adapters = new AtomicInteger();
+
+    @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<T> type) {
+      adapters.incrementAndGet();
+      return TestingModuleAdapter.create(type);
+    }
+
+    @Override public Binding<?> getAtInjectBinding(String key, String className,
+        ClassLoader classLoader, boolean mustHaveInjections) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test public void includeClosuresAreCachedBySeedClasses() {
+    CountingLoader loader = new CountingLoader();
+    List<ModuleWithAdapter> first = Modules.loadModules(loader, new Object[] { RootModule.class });
+    assertThat(first).hasSize(2);
+    assertThat(first.get(1).getModuleAdapter().moduleClass).isEqualTo(IncludedModule.class);
+    assertThat(loader.adapters.get()).isEqualTo(2);
+
+    List<ModuleWithAdapter> second = Modules.loadModules(loader, new Object[] { new RootModule() });
+    assertThat(second.get(1).getModuleAdapter()).isSameAs(first.get(1).getModuleAdapter());
+    assertThat(loader.adapters.get()).isEqualTo(2);
+
+    loader.clearCaches();
+    Modules.loadModules(loader, new Object[] { RootModule.class });
+    assertThat(loader.adapters.get()).isEqualTo(4);
+  }
+
+  @Test public void laterSeedsOfTheSameModuleWin() {
+    RootModule module = new RootModule();
+    List<ModuleWithAdapter> modules = Modules.loadModules(new CountingLoader(),
+        new Object[] { RootModule.class, new RootModule(), module });
+    assertThat(modules.get(0).getModule()).isSameAs(module);
+
+    modules = Modules.loadModules(new CountingLoader(),
+        new Object[] { module, RootModule.class });
+    assertThat(modules.get(0).getModule()).isNotSameAs(module);
+  }
+
+  static class CountingModule {
+    static final AtomicInteger instances = new AtomicInteger();
+
+    CountingModule() {
+      instances.incrementAndGet();
+    }
+  }
+
+  static final class CountingModuleAdapter extends ModuleAdapter<CountingModule> {
+    CountingModuleAdapter() {
+      super(CountingModule.class, new String[0], new Class<?>[0], false, new Class<?>[0], true,
+          true);
+    }
+
+    @Override protected CountingModule newModule() {
+      return new CountingModule();
+    }
+  }
+
+  @Test public void modulesAreInstantiatedOnlyWhenFirstNeeded() {
+    CountingModule.instances.set(0);
+    List<ModuleWithAdapter> modules = Modules.instantiate(
+        Collections.<ModuleAdapter<?>>singletonList(new CountingModuleAdapter()),
+        new Object[1]);
+    assertThat(CountingModule.instances.get()).isEqualTo(0);
+    Object module = modules.get(0).getModule();
+    assertThat(modules.get(0).getModule()).isSameAs(module);
+    assertThat(CountingModule.instances.get()).isEqualTo(1);
+  }
+
+  @Test public void modulesAreInstantiatedOnceWithLocks() {
+    CountingModule.instances.set(0);
+    List<ModuleWithAdapter> modules = Modules.instantiate(
+        Collections.<ModuleAdapter<?>>singletonList(new CountingModuleAdapter()),
+        new Object[1], new Scoping(true, false));
+    Object module = modules.get(0).getModule();
+    assertThat(modules.get(0).getModule()).isSameAs(module);
+    assertThat(CountingModule.instances.get()).isEqualTo(1);
+  }
+}
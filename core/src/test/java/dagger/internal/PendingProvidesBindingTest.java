@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Module;
+import dagger.ObjectGraph;
+import dagger.Provides;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public final class PendingProvidesBindingTest {
+  private static final String STRING = Keys.get(String.class);
+  private static final String OBJECT = Keys.get(Object.class);
+  private static final String INTEGER = Keys.get(Integer.class);
+
+  /** The keys of the bindings created by {@link LazyModule$$ModuleAdapter}, in order. */
+  static final List<String> created = new CopyOnWriteArrayList<String>();
+
+  @Before public void setUp() {
+    created.clear();
+    LazyModule.instances.set(0);
+  }
+
+  static class Consumer {
+    @Inject String string;
+    @Inject Object singleton;
+  }
+
+  static class LazyModule {
+    static final AtomicInteger instances = new AtomicInteger();
+
+    LazyModule() {
+      instances.incrementAndGet();
+    }
+
+    String string() { return "a"; }
+    Object singleton() { return new Object(); }
+    Integer integer() { return 1; }
+  }
+
+  /** Creates its bindings on demand, like a generated adapter. */
+  static final class LazyModule$$ModuleAdapter extends ModuleAdapter<LazyModule> {
+    public LazyModule$$ModuleAdapter() {
+      super(LazyModule.class, new String[] { Keys.getMembersKey(Consumer.class) },
+          new Class<?>[0], false, new Class<?>[0], false, false,
+          new String[] { STRING, OBJECT, INTEGER },
+          new String[] { "string", "singleton", "integer" });
+    }
+
+    @Override protected LazyModule newModule() {
+      return new LazyModule();
+    }
+
+    @Override protected Binding<?> getBinding(int index, final LazyModule module) {
+      created.add(providesKeys[index]);
+      switch (index) {
+        case 0:
+          return new ProvidesBinding<String>(STRING, false, "LazyModule", "string") {
+            @Override public String get() {
+              return module.string();
+            }
+          };
+        case 1:
+          return new ProvidesBinding<Object>(OBJECT, true, "LazyModule", "singleton") {
+            @Override public Object get() {
+              return module.singleton();
+            }
+          };
+        case 2:
+          return new ProvidesBinding<Integer>(INTEGER, false, "LazyModule", "integer") {
+            @Override public Integer get() {
+              return module.integer();
+            }
+          };
+        default: throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+    }
+  }
+
+  @Test public void unrequestedBindingsAreNotCreated() {
+    Consumer consumer = ObjectGraph.create(new LazyModule()).inject(new Consumer());
+    assertThat(consumer.string).isEqualTo("a");
+    assertThat(created).containsOnly(STRING, OBJECT);
+  }
+
+  @Test public void modulesAreInstantiatedWhenTheirBindingsAreFirstRequested() {
+    ObjectGraph graph = ObjectGraph.create(LazyModule.class);
+    assertThat(LazyModule.instances.get()).isEqualTo(0);
+    graph.inject(new Consumer());
+    graph.inject(new Consumer());
+    assertThat(LazyModule.instances.get()).isEqualTo(1);
+  }
+
+  @Test public void linkingDoesNotInstantiateModules() {
+    ObjectGraph graph = ObjectGraph.create(LazyModule.class);
+    try {
+      graph.validate();
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("unused");
+    }
+    assertThat(created).contains(STRING, OBJECT, INTEGER);
+    assertThat(LazyModule.instances.get()).isEqualTo(0);
+    assertThat(graph.inject(new Consumer()).string).isEqualTo("a");
+    assertThat(LazyModule.instances.get()).isEqualTo(1);
+  }
+
+  @Test public void validateChecksBindingsThatWereNeverRequested() {
+    try {
+      ObjectGraph.create(new LazyModule()).validate();
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("unused").contains("LazyModule.integer()");
+    }
+    assertThat(created).containsOnly(STRING, OBJECT, INTEGER);
+  }
+
+  static class Child {
+    @Inject Object singleton;
+  }
+
+  @Module(addsTo = LazyModule.class, injects = Child.class)
+  static class ChildModule {
+  }
+
+  static final class ChildModule$$ModuleAdapter extends TestingModuleAdapter<ChildModule> {
+    public ChildModule$$ModuleAdapter() {
+      super(ChildModule.class, ChildModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  @Test public void childGraphsShareTheirParentsPendingBindings() {
+    ObjectGraph parent = ObjectGraph.create(new LazyModule());
+    Child child1 = parent.plus(new ChildModule()).get(Child.class);
+    Child child2 = parent.plus(new ChildModule()).get(Child.class);
+    assertThat(child1.singleton).isSameAs(child2.singleton);
+    assertThat(parent.inject(new Consumer()).singleton).isSameAs(child1.singleton);
+    assertThat(created).containsOnly(OBJECT, STRING);
+  }
+
+  @Module(overrides = true, library = true)
+  static class OverridingModule {
+    @Provides String string() { return "b"; }
+  }
+
+  static final class OverridingModule$$ModuleAdapter
+      extends TestingModuleAdapter<OverridingModule> {
+    public OverridingModule$$ModuleAdapter() {
+      super(OverridingModule.class, OverridingModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  @Test public void overridesReplacePendingBindings() {
+    Consumer consumer =
+        ObjectGraph.create(new LazyModule(), new OverridingModule()).inject(new Consumer());
+    assertThat(consumer.string).isEqualTo("b");
+    assertThat(created).containsOnly(OBJECT);
+  }
+
+  @Module(library = true)
+  static class DuplicateModule {
+    @Provides String string() { return "b"; }
+  }
+
+  static final class DuplicateModule$$ModuleAdapter extends TestingModuleAdapter<DuplicateModule> {
+    public DuplicateModule$$ModuleAdapter() {
+      super(DuplicateModule.class, DuplicateModule.class.getAnnotation(Module.class));
+    }
+  }
+
+  @Test public void duplicatesOfPendingBindingsAreRejected() {
+    try {
+      ObjectGraph.create(new LazyModule(), new DuplicateModule());
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("Duplicate").contains("LazyModule.string()");
+    }
+    assertThat(created).isEmpty(); // Described without creating the binding.
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Provider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.fail;
+import static org.truth0.Truth.ASSERT;
+
+/**
+ * Tests {@link ReusableProvider}.
+ */
+@RunWith(JUnit4.class)
+public class ReusableProviderTest {
+  @Test public void create_nullPointerException() {
+    try {
+      ReusableProvider.create(null);
+      fail();
+    } catch (NullPointerException expected) { }
+  }
+
+  @Test public void get_nullPointerException() {
+    Provider<Object> provider = ReusableProvider.create(new Factory<Object>() {
+      @Override public Object get() {
+        return null;
+      }
+    });
+    try {
+      provider.get();
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void get() {
+    Provider<Integer> provider = ReusableProvider.create(new Factory<Integer>() {
+      int i = 0;
+
+      @Override public Integer get() {
+        return i++;
+      }
+    });
+    ASSERT.that(provider.get()).is(0);
+    ASSERT.that(provider.get()).is(0);
+    ASSERT.that(provider.get()).is(0);
+  }
+
+  @Test public void racingThreadsDoNotWait() throws Exception {
+    final CountDownLatch bothProviding = new CountDownLatch(2);
+    final AtomicInteger count = new AtomicInteger();
+    final Provider<Integer> provider = ReusableProvider.create(new Factory<Integer>() {
+      @Override public Integer get() {
+        bothProviding.countDown();
+        try {
+          if (!bothProviding.await(10, TimeUnit.SECONDS)) {
+            throw new AssertionError("Blocked by the other thread");
+          }
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return count.incrementAndGet();
+      }
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Callable<Integer> get = new Callable<Integer>() {
+        @Override public Integer call() {
+          return provider.get();
+        }
+      };
+      Future<Integer> first = executor.submit(get);
+      Future<Integer> second = executor.submit(get);
+      ASSERT.that(first.get()).isEqualTo(second.get());
+      ASSERT.that(count.get()).is(2);
+      ASSERT.that(provider.get()).isEqualTo(first.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
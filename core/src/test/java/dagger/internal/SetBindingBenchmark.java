@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.Collections;
+import java.util.Set;
+import javax.inject.Provider;
+
+/**
+ * Measures how long it takes to provide sets with 1 to 500 contributors, with and without
+ * scoped contributors. Run its {@code main} method from the test classpath; it isn't run as part
+ * of the build.
+ */
+public final class SetBindingBenchmark {
+  private static final int[] SIZES = { 1, 10, 50, 100, 500 };
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int ROUNDS = 5;
+  private static final int CALLS = 100000;
+  private static final String SET_KEY = "java.util.Set<java.lang.Integer>";
+  private static final String ELEMENT_KEY = "java.lang.Integer";
+
+  /** Keeps results reachable so the calls aren't optimized away. */
+  private static int sink;
+
+  public static void main(String[] args) {
+    System.out.println("provider\tcontributors\tscoped\tbest ns/get");
+    for (int size : SIZES) {
+      for (boolean scoped : new boolean[] { false, true }) {
+        print("SetBinding", size, scoped, setBinding(size, scoped));
+        print("SetFactory", size, scoped, setFactory(size, scoped));
+      }
+    }
+  }
+
+  private static void print(String name, int size, boolean scoped, Provider<Set<Integer>> set) {
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      provide(set);
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      provide(set);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.println(name + "\t" + size + "\t" + scoped + "\t"
+        + String.format("%.1f", (double) best / CALLS));
+  }
+
+  private static void provide(Provider<Set<Integer>> set) {
+    for (int i = 0; i < CALLS; i++) {
+      sink += set.get().size();
+    }
+  }
+
+  @SuppressWarnings("unchecked") // The set binding is installed for SET_KEY.
+  private static Provider<Set<Integer>> setBinding(int size, boolean scoped) {
+    BindingsGroup bindings = new BindingsGroup() {
+      @Override public Binding<?> contributeSetBinding(String key, SetBinding<?> value) {
+        return super.put(key, value);
+      }
+    };
+    for (int i = 0; i < size; i++) {
+      final Integer element = i;
+      SetBinding.add(bindings, SET_KEY,
+          new ProvidesBinding<Integer>(ELEMENT_KEY, scoped, "Benchmark", "element" + i) {
+            @Override public Integer get() {
+              return new Integer(element);
+            }
+          });
+    }
+    return (SetBinding<Integer>) bindings.get(SET_KEY);
+  }
+
+  @SuppressWarnings("unchecked") // Arrays of a generic type can't be created directly.
+  private static Provider<Set<Integer>> setFactory(int size, boolean scoped) {
+    Provider<Set<Integer>>[] providers = new Provider[size];
+    for (int i = 0; i < size; i++) {
+      final Integer element = i;
+      Factory<Set<Integer>> factory = new Factory<Set<Integer>>() {
+        @Override public Set<Integer> get() {
+          return Collections.singleton(new Integer(element));
+        }
+      };
+      providers[i] = scoped ? ScopedProvider.create(factory) : factory;
+    }
+    Provider<Set<Integer>>[] rest = new Provider[size - 1];
+    System.arraycopy(providers, 1, rest, 0, size - 1);
+    return SetFactory.create(providers[0], rest);
+  }
+}
@@ -19,6 +19,7 @@ import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Range;
 import dagger.Factory;
+import dagger.Provides;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -99,6 +100,56 @@ public class SetFactoryTest {
     ASSERT.that(factory.get()).has().exactly(2, 12, 22);
   }
 
+  @Test
+  public void reusesSetOfScopedProviders() {
+    Factory<Set<Integer>> factory = SetFactory.create(
+        ScopedProvider.create(incrementingIntegerFactory(0)),
+        SetFactory.create(ScopedProvider.create(incrementingIntegerFactory(10))));
+    Set<Integer> first = factory.get();
+    ASSERT.that(first).has().exactly(0, 10);
+    ASSERT.that(factory.get() == first).isTrue();
+  }
+
+  @Test
+  public void reusesSetOfReusableProviders() {
+    Factory<Set<Integer>> factory = SetFactory.create(
+        ReusableProvider.create(incrementingIntegerFactory(0)),
+        ScopedProvider.create(incrementingIntegerFactory(10)));
+    Set<Integer> first = factory.get();
+    ASSERT.that(first).has().exactly(0, 10);
+    ASSERT.that(factory.get() == first).isTrue();
+  }
+
+  @Test
+  public void providersOfElementsAreLazy() {
+    AtomicInteger value = new AtomicInteger(0);
+    Factory<Set<Integer>> setFactory = SetFactory.create(
+        countingProvider(value),
+        InstanceFactory.<Set<Integer>>create(ImmutableSet.of(5, 6)));
+    Factory<Set<Provider<Integer>>> factory =
+        SetFactory.providersOf(setFactory, Provides.Type.SET, Provides.Type.SET_VALUES);
+    Set<Provider<Integer>> providers = factory.get();
+    ASSERT.that(value.get()).is(0);
+    Set<Integer> values = new LinkedHashSet<Integer>();
+    for (Provider<Integer> provider : providers) {
+      values.add(provider.get());
+    }
+    ASSERT.that(values).iteratesAs(0, 5, 6);
+    ASSERT.that(factory.get() == providers).isTrue();
+  }
+
+  @Test
+  public void providersOfRequiresASetFactory() {
+    thrown.expect(IllegalArgumentException.class);
+    SetFactory.providersOf(incrementingIntegerProvider(0), Provides.Type.SET);
+  }
+
+  @Test
+  public void providersOfRequiresEveryContributionType() {
+    thrown.expect(IllegalArgumentException.class);
+    SetFactory.providersOf(SetFactory.create(incrementingIntegerProvider(0)));
+  }
+
   @Test
   public void iterationOrder() {
     Factory<Set<Integer>> factory = SetFactory.create(
@@ -108,6 +159,15 @@ public class SetFactoryTest {
     ASSERT.that(factory.get()).iteratesAs(5, 6, 7, 8, 9, 3, 4, 0, 1, 2);
   }
 
+  private static Provider<Set<Integer>> countingProvider(final AtomicInteger value) {
+    return new Provider<Set<Integer>>() {
+      @Override
+      public Set<Integer> get() {
+        return ImmutableSet.of(value.getAndIncrement());
+      }
+    };
+  }
+
   private static Provider<Set<Integer>> incrementingIntegerProvider(int seed) {
     final AtomicInteger value = new AtomicInteger(seed);
     return new Provider<Set<Integer>>() {
@@ -118,6 +178,16 @@ public class SetFactoryTest {
     };
   }
 
+  private static Factory<Set<Integer>> incrementingIntegerFactory(int seed) {
+    final AtomicInteger value = new AtomicInteger(seed);
+    return new Factory<Set<Integer>>() {
+      @Override
+      public Set<Integer> get() {
+        return ImmutableSet.of(value.getAndIncrement());
+      }
+    };
+  }
+
   private static Provider<Set<Integer>> integerSetProvider(Range<Integer> range) {
     final ContiguousSet<Integer> set = ContiguousSet.create(range, integers());
     return new Provider<Set<Integer>>() {
@@ -68,6 +68,13 @@ public final class SingletonBindingTest {
     assertThat(singletonBinding.isCycleFree()).isTrue();
   }
 
+  @Test public void testLockingScopingGuardsSingletonsWithLocks() {
+    Binding<String> locking = Linker.scope(new StringBinding(), new Scoping(true, false));
+    assertThat(locking.getClass().getSimpleName()).isEqualTo("LockingSingletonBinding");
+    Binding<String> monitors = Linker.scope(new StringBinding(), new Scoping(false, false));
+    assertThat(monitors.getClass().getSimpleName()).isEqualTo("SingletonBinding");
+  }
+
   private static class StringBinding extends Binding<String> {
     private StringBinding() {
       super("dummy", "dummy", true, "dummy"); // 3rd arg true => singleton
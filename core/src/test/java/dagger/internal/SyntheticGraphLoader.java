@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A test-only loader that creates JIT bindings for synthetic keys {@code synthetic.Node0} through
+ * {@code synthetic.Node(size - 1)}, wired together in a given {@link Shape}.
+ */
+final class SyntheticGraphLoader extends Loader {
+  enum Shape {
+    /** Each node depends on the next one, forming one long chain. */
+    DEEP {
+      @Override int[] dependencies(int node, int size) {
+        return node + 1 < size ? new int[] { node + 1 } : new int[0];
+      }
+    },
+    /** The first node depends on every other node. */
+    WIDE {
+      @Override int[] dependencies(int node, int size) {
+        if (node != 0) {
+          return new int[0];
+        }
+        int[] result = new int[size - 1];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = i + 1;
+        }
+        return result;
+      }
+    },
+    /** Each node depends on two children, forming a balanced binary tree. */
+    TREE {
+      @Override int[] dependencies(int node, int size) {
+        int left = node * 2 + 1;
+        int right = left + 1;
+        return right < size ? new int[] { left, right }
+            : left < size ? new int[] { left }
+            : new int[0];
+      }
+    };
+
+    abstract int[] dependencies(int node, int size);
+  }
+
+  private static final String PREFIX = "synthetic.Node";
+
+  private final Shape shape;
+  private final int size;
+  private int attachCount;
+
+  SyntheticGraphLoader(Shape shape, int size) {
+    this.shape = shape;
+    this.size = size;
+  }
+
+  static String key(int node) {
+    return PREFIX + node;
+  }
+
+  /** Returns the number of calls to {@link Binding#attach} made on this loader's bindings. */
+  int attachCount() {
+    return attachCount;
+  }
+
+  @Override public Binding<?> getAtInjectBinding(
+      String key, String className, ClassLoader classLoader, boolean mustHaveInjections) {
+    int node = Integer.parseInt(className.substring(PREFIX.length()));
+    return new NodeBinding(node, shape.dependencies(node, size));
+  }
+
+  @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<T> moduleClass) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
+    throw new UnsupportedOperationException();
+  }
+
+  private final class NodeBinding extends Binding<Object> {
+    private final int[] dependencyNodes;
+    private final Binding<?>[] dependencies;
+
+    NodeBinding(int node, int[] dependencyNodes) {
+      super(key(node), null, NOT_SINGLETON, key(node));
+      this.dependencyNodes = dependencyNodes;
+      this.dependencies = new Binding<?>[dependencyNodes.length];
+    }
+
+    @Override public void attach(Linker linker) {
+      attachCount++;
+      for (int i = 0; i < dependencies.length; i++) {
+        dependencies[i] = linker.requestBinding(key(dependencyNodes[i]), provideKey,
+            SyntheticGraphLoader.class.getClassLoader());
+      }
+    }
+
+    @Override public Object get() {
+      return provideKey;
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      Collections.addAll(get, dependencies);
+    }
+  }
+}
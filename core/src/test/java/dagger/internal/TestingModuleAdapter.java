@@ -16,8 +16,10 @@
 package dagger.internal;
 
 import dagger.Lazy;
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
+import dagger.internal.loaders.ReflectiveAtInjectBinding;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
@@ -89,6 +91,21 @@ public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
             case SET_VALUES:
               handleSetBindings(bindings, module, method, key, key, library);
               break;
+            case MAP:
+              MapKey mapKey = method.getAnnotation(MapKey.class);
+              if (mapKey == null) {
+                throw new IllegalStateException(
+                    "@Provides(type = MAP) method must have a @MapKey: "
+                    + c.getName()
+                    + "."
+                    + method.getName());
+              }
+              String entriesKey = Keys.getMapEntriesKey(method.getGenericReturnType(),
+                  method.getAnnotations(), method);
+              MapBinding.add(bindings, entriesKey, mapKey.value(),
+                  new ReflectiveProvidesBinding<M>(
+                      method, key, moduleClass.getName(), module, library));
+              break;
             default:
               throw new AssertionError("Unknown @Provides type " + provides.type());
           }
@@ -162,6 +179,10 @@ public class TestingModuleAdapter<M> extends ModuleAdapter<M> {
       this.instance = instance;
       method.setAccessible(true);
       setLibrary(library);
+      Class<? extends Annotation> scope = ReflectiveAtInjectBinding.getCustomScope(method);
+      if (scope != null) {
+        setScope(scope);
+      }
     }
 
     @Override public void attach(Linker linker) {
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import dagger.Factory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.inject.Provider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.fail;
+import static org.truth0.Truth.ASSERT;
+
+/**
+ * Tests {@link ThreadConfinedProvider}.
+ */
+@RunWith(JUnit4.class)
+public class ThreadConfinedProviderTest {
+  @Test public void create_nullPointerException() {
+    try {
+      ThreadConfinedProvider.create(null);
+      fail();
+    } catch (NullPointerException expected) { }
+  }
+
+  @Test public void get_nullPointerException() {
+    Provider<Object> provider = ThreadConfinedProvider.create(new Factory<Object>() {
+      @Override public Object get() {
+        return null;
+      }
+    });
+    try {
+      provider.get();
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void get() throws Exception {
+    final Provider<Integer> provider = ThreadConfinedProvider.create(new Factory<Integer>() {
+      int i = 0;
+
+      @Override public synchronized Integer get() {
+        return i++;
+      }
+    });
+    ASSERT.that(provider.get()).is(0);
+    ASSERT.that(provider.get()).is(0);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Callable<Integer> get = new Callable<Integer>() {
+        @Override public Integer call() {
+          return provider.get();
+        }
+      };
+      ASSERT.that(executor.submit(get).get()).is(1);
+      ASSERT.that(executor.submit(get).get()).is(1);
+    } finally {
+      executor.shutdown();
+    }
+    ASSERT.that(provider.get()).is(0);
+  }
+
+  @Test public void release() throws Exception {
+    final ThreadConfinedProvider<Integer> provider = new ThreadConfinedProvider<Integer>(
+        new Factory<Integer>() {
+          int i = 0;
+
+          @Override public synchronized Integer get() {
+            return i++;
+          }
+        });
+    ASSERT.that(provider.get()).is(0);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Callable<Integer> get = new Callable<Integer>() {
+        @Override public Integer call() {
+          return provider.get();
+        }
+      };
+      ASSERT.that(executor.submit(get).get()).is(1);
+      provider.release();
+      ASSERT.that(executor.submit(get).get()).is(2);
+      ASSERT.that(provider.get()).is(3);
+      ASSERT.that(executor.submit(get).get()).is(2);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}